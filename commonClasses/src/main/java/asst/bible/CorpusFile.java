@@ -0,0 +1,292 @@
+package asst.bible;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** All of the book files of an input folder packed into one file, so that
+ * the whole Bible is loaded with one open and one memory map instead of
+ * one open per book.
+ *
+ * <p>The file holds, in order:</p>
+ * <pre>
+ * header      "KJBCORP" and a version byte, book count, line count
+ * book table  per book: file name length and UTF-8 bytes, first line,
+ *             line count
+ * line table  per line: packed VerseRef, or VerseRef.NONE if the line
+ *             does not start with a reference
+ * offsets     line count + 1 offsets of the lines in the text
+ * text        UTF-8 bytes of each whole line without its line end
+ * </pre>
+ *
+ * <p>Lines are kept exactly as they were read, reference and all, so a
+ * book read from the corpus is the same as the book read from its file
+ * with <code>Files.readAllLines</code>.  A CorpusFile never changes once it
+ * is open so it may be shared by threads.</p>
+ * @author Material Gain
+ * @since 2026 10
+ */
+public class CorpusFile {
+  /** First bytes of every corpus file */
+  public static final byte[] MAGIC = {'K', 'J', 'B', 'C', 'O', 'R', 'P', 1};
+
+  /** Name of the file each book was packed from, such as 40MAT.TXT */
+  private final List<String> bookNames;
+  /** Book number of each book name */
+  private final Map<String, Integer> bookIndex = new HashMap<String, Integer>();
+  /** First line of each book */
+  private final int[] firstLine;
+  /** Number of lines in each book */
+  private final int[] lineCount;
+  /** Packed reference of each line */
+  private final int[] refs;
+  /** Where each line starts in the text, with one more for the end */
+  private final int[] offsets;
+  /** The lines, read only and shared; readers work on duplicates */
+  private final ByteBuffer text;
+
+  private CorpusFile(ByteBuffer buffer) throws IOException {
+    if (buffer.remaining() < MAGIC.length + 8) {
+      throw new IOException("Not a corpus file");
+    }
+    for (byte b : MAGIC) {
+      if (buffer.get() != b) { throw new IOException("Not a corpus file"); }
+    }
+    int books = buffer.getInt();
+    int lines = buffer.getInt();
+    /* Each book takes at least 10 bytes and each line 8, with 4 for the end */
+    if ((books < 0) || (lines < 0)
+	|| (10L * books + 8L * lines + 4 > buffer.remaining())) {
+      throw new IOException("Corpus file is corrupt: " + books + " books, " + lines + " lines");
+    }
+    List<String> names = new ArrayList<String>(books);
+    firstLine = new int[books];
+    lineCount = new int[books];
+    try {
+      int next = 0;
+      for (int i = 0; i < books; i++) {
+	byte[] name = new byte[buffer.getShort() & 0xffff];
+	buffer.get(name);
+	names.add(new String(name, StandardCharsets.UTF_8));
+	bookIndex.put(names.get(i), i);
+	firstLine[i] = buffer.getInt();
+	lineCount[i] = buffer.getInt();
+	if ((firstLine[i] != next) || (lineCount[i] < 0) || (lineCount[i] > lines - next)) {
+	  throw new IOException("Corpus file is corrupt: bad line table for " + names.get(i));
+	}
+	next += lineCount[i];
+      }
+      if (next != lines) {
+	throw new IOException("Corpus file is corrupt: the books hold " + next + " of "
+	    + lines + " lines");
+      }
+      bookNames = Collections.unmodifiableList(names);
+      refs = new int[lines];
+      buffer.asIntBuffer().get(refs);
+      buffer.position(buffer.position() + 4 * lines);
+      offsets = new int[lines + 1];
+      buffer.asIntBuffer().get(offsets);
+      buffer.position(buffer.position() + 4 * (lines + 1));
+    } catch (BufferUnderflowException e) {
+      throw new IOException("Corpus file is truncated");
+    }
+    text = buffer.slice();
+    /* A line must lie within the text so that reading it cannot fail */
+    int last = 0;
+    for (int offset : offsets) {
+      if ((offset < last) || (offset > text.limit())) {
+	throw new IOException("Corpus file is truncated or corrupt: line offset " + offset);
+      }
+      last = offset;
+    }
+  }
+
+  /** Map a corpus file into memory
+   * @param corpus file written by {@link #pack}
+   * @return the open corpus
+   * @throws IOException if the file cannot be read or is not a corpus, or
+   * is truncated or corrupt
+   */
+  public static CorpusFile open(Path corpus) throws IOException {
+    try (FileChannel channel = FileChannel.open(corpus, StandardOpenOption.READ)) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      return new CorpusFile(buffer);
+    }
+  }
+
+  /** Pack the book files of a folder into a corpus file.  Files are taken
+   * in alphabetical order as the tools take them, and explanation.txt,
+   * which describes a folder rather than being a book, is left out.
+   * @param inputDir folder of .txt book files
+   * @param corpus file to write
+   * @return number of books packed
+   * @throws IOException if a book cannot be read or the corpus written
+   */
+  public static int pack(Path inputDir, Path corpus) throws IOException {
+    List<Path> files = new ArrayList<Path>();
+    java.util.stream.Stream<Path> stream = Files.list(inputDir);
+    try {
+      stream.filter(p -> p.toString().toLowerCase().endsWith(".txt"))
+      .filter(p -> !"explanation.txt".equals(p.getFileName().toString()))
+      .forEach(files::add);
+    } finally {
+      stream.close();
+    }
+    files.sort((a, b) -> a.getFileName().toString().compareTo(b.getFileName().toString()));
+
+    ByteArrayOutputStream bookTable = new ByteArrayOutputStream();
+    DataOutputStream books = new DataOutputStream(bookTable);
+    ByteArrayOutputStream lineText = new ByteArrayOutputStream();
+    List<Integer> refs = new ArrayList<Integer>();
+    List<Integer> offsets = new ArrayList<Integer>();
+    for (Path file : files) {
+      String name = file.getFileName().toString();
+      int book = VerseRef.registerBook(name);
+      List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+      byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+      books.writeShort(nameBytes.length);
+      books.write(nameBytes);
+      books.writeInt(refs.size());
+      books.writeInt(lines.size());
+      for (String line : lines) {
+	int ix = line.indexOf("  ");
+	refs.add((ix > 4) ? VerseRef.parse(book, line.subSequence(0, ix)) : VerseRef.NONE);
+	offsets.add(lineText.size());
+	lineText.write(line.getBytes(StandardCharsets.UTF_8));
+      }
+    }
+    offsets.add(lineText.size());
+
+    ByteArrayOutputStream whole = new ByteArrayOutputStream(lineText.size()
+	+ bookTable.size() + 8 * refs.size() + 32);
+    DataOutputStream out = new DataOutputStream(whole);
+    out.write(MAGIC);
+    out.writeInt(files.size());
+    out.writeInt(refs.size());
+    bookTable.writeTo(out);
+    for (int ref : refs) { out.writeInt(ref); }
+    for (int offset : offsets) { out.writeInt(offset); }
+    lineText.writeTo(out);
+    out.flush();
+    Files.write(corpus, whole.toByteArray());
+    return files.size();
+  }
+
+  /**
+   * @return names of the files the books were packed from, in order
+   */
+  public List<String> getBookNames() {
+    return bookNames;
+  }
+
+  /**
+   * @param bookName file name such as 40MAT.TXT
+   * @return the lines of the book, decoded as they are read, or null if
+   * there is no such book
+   */
+  public List<String> getLines(String bookName) {
+    Integer book = bookIndex.get(bookName);
+    if (book == null) { return null; }
+    final int first = firstLine[book];
+    final int count = lineCount[book];
+    return new AbstractList<String>() {
+      @Override
+      public String get(int index) {
+	if ((index < 0) || (index >= count)) {
+	  throw new IndexOutOfBoundsException("Line " + index + " of " + count);
+	}
+	return getLine(first + index);
+      }
+
+      @Override
+      public int size() {
+	return count;
+      }
+    };
+  }
+
+  /**
+   * @param bookName file name such as 40MAT.TXT
+   * @return the UTF-8 bytes of each line of the book, read only and not
+   * decoded, or null if there is no such book.  Each buffer runs from its
+   * position to its limit.
+   */
+  public List<ByteBuffer> getLineBytes(String bookName) {
+    Integer book = bookIndex.get(bookName);
+    if (book == null) { return null; }
+    List<ByteBuffer> lines = new ArrayList<ByteBuffer>(lineCount[book]);
+    for (int line = firstLine[book]; line < firstLine[book] + lineCount[book]; line++) {
+      ByteBuffer view = text.asReadOnlyBuffer();
+      view.limit(offsets[line + 1]);
+      view.position(offsets[line]);
+      lines.add(view);
+    }
+    return lines;
+  }
+
+  /**
+   * @return number of lines in all of the books
+   */
+  public int getLineCount() {
+    return refs.length;
+  }
+
+  /**
+   * @param line line number in the whole corpus
+   * @return the line
+   */
+  public String getLine(int line) {
+    byte[] bytes = new byte[offsets[line + 1] - offsets[line]];
+    ByteBuffer view = text.duplicate();
+    view.position(offsets[line]);
+    view.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * @param line line number in the whole corpus
+   * @return packed reference of the line, VerseRef.NONE if it has none
+   */
+  public int getVerseRef(int line) {
+    return refs[line];
+  }
+
+  /** Find a verse without reading any text
+   * @param ref packed reference
+   * @return line number in the whole corpus, or -1 if the verse is not
+   * in the corpus
+   */
+  public int findVerse(int ref) {
+    for (int book = 0; book < firstLine.length; book++) {
+      int low = firstLine[book];
+      int high = low + lineCount[book] - 1;
+      if ((high < low) || (VerseRef.book(refs[low]) != VerseRef.book(ref))) { continue; }
+      /* Verses are in order within a book */
+      while (low <= high) {
+	int mid = (low + high) >>> 1;
+	if (refs[mid] < ref) {
+	  low = mid + 1;
+	} else if (refs[mid] > ref) {
+	  high = mid - 1;
+	} else {
+	  return mid;
+	}
+      }
+    }
+    return -1;
+  }
+}
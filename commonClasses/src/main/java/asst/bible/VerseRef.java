@@ -0,0 +1,232 @@
+package asst.bible;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/** Book, chapter and verse packed into one int so that verse references
+ * can be kept in int arrays and compared as numbers.  Sorting packed
+ * references puts them in canonical order: by book number, then chapter,
+ * then verse.  A verse or chapter of 0 stands for a whole chapter or a
+ * whole book.  -1 means "no reference".
+ *
+ * <p>Verse lines start with a 3-character book abbreviation, a space and
+ * chapter:verse, as in "MAT 1:18", and the book number comes from the
+ * name of the file, as in 40MAT.TXT.  The abbreviation of each book
+ * number is remembered as books are seen so that references can be
+ * turned back into text.</p>
+ * @author Material Gain
+ * @since 2026 10
+ */
+public class VerseRef {
+  /** Returned when text does not hold a verse reference */
+  public static final int NONE = -1;
+  /** Books are numbered 1 to 99 as in the file names */
+  public static final int MAX_BOOK = 99;
+
+  /** Abbreviation of each book number */
+  private static final AtomicReferenceArray<String> abbrevs =
+      new AtomicReferenceArray<String>(MAX_BOOK + 1);
+  /** Book number of each abbreviation */
+  private static final ConcurrentHashMap<String, Integer> bookNumbers =
+      new ConcurrentHashMap<String, Integer>();
+
+  /** Pack a reference
+   * @param book book number 1 to 99
+   * @param chapter chapter number 0 to 255, 0 for a whole book
+   * @param verse verse number 0 to 255, 0 for a whole chapter
+   * @return packed reference
+   * @throws IllegalArgumentException if a number is out of range
+   */
+  public static int pack(int book, int chapter, int verse) {
+    if ((book < 1) || (book > MAX_BOOK) || (chapter < 0) || (chapter > 255)
+	|| (verse < 0) || (verse > 255)) {
+      throw new IllegalArgumentException("No verse " + book + " " + chapter + ":" + verse);
+    }
+    return (book << 16) | (chapter << 8) | verse;
+  }
+
+  /**
+   * @param ref packed reference
+   * @return the book number
+   */
+  public static int book(int ref) {
+    return ref >>> 16;
+  }
+
+  /**
+   * @param ref packed reference
+   * @return the chapter number
+   */
+  public static int chapter(int ref) {
+    return (ref >>> 8) & 0xff;
+  }
+
+  /**
+   * @param ref packed reference
+   * @return the verse number
+   */
+  public static int verse(int ref) {
+    return ref & 0xff;
+  }
+
+  /** Remember the abbreviation for a book number
+   * @param book book number
+   * @param abbrev abbreviation used at the start of each verse line
+   */
+  public static void registerBook(int book, String abbrev) {
+    if ((book < 1) || (book > MAX_BOOK)) { return; }
+    if (abbrev.equals(abbrevs.get(book))) { return; }
+    abbrevs.set(book, abbrev);
+    bookNumbers.put(abbrev, book);
+  }
+
+  /** Remember the book number and abbreviation given by a chapter file
+   * name such as 40MAT.TXT.  Other names are ignored.
+   * @param fileName name of a file in the input folder
+   * @return book number or 0 if the name does not name a book
+   */
+  public static int registerBook(String fileName) {
+    int dot = fileName.indexOf('.');
+    if ((dot < 3) || !Character.isDigit(fileName.charAt(0))
+	|| !Character.isDigit(fileName.charAt(1))) {
+      return 0;
+    }
+    int book = Integer.parseInt(fileName.substring(0, 2));
+    registerBook(book, fileName.substring(2, dot));
+    return book;
+  }
+
+  /**
+   * @param book book number
+   * @return abbreviation of the book or null if it has not been seen
+   */
+  public static String abbrev(int book) {
+    if ((book < 0) || (book > MAX_BOOK)) { return null; }
+    return abbrevs.get(book);
+  }
+
+  /**
+   * @param abbrev book abbreviation such as MAT
+   * @return book number or 0 if the abbreviation has not been seen
+   */
+  public static int bookNumber(String abbrev) {
+    Integer book = bookNumbers.get(abbrev);
+    return (book == null) ? 0 : book;
+  }
+
+  /** Parse the chapter:verse which follows the book abbreviation
+   * @param book book number
+   * @param text text such as "MAT 1:18"
+   * @param from index of the first digit of the chapter
+   * @return packed reference or NONE if there is no chapter:verse
+   * which ends the text
+   */
+  private static int parseChapterVerse(int book, CharSequence text, int from) {
+    int chapter = 0;
+    int ix = from;
+    while ((ix < text.length()) && Character.isDigit(text.charAt(ix))) {
+      chapter = chapter * 10 + (text.charAt(ix++) - '0');
+    }
+    if ((ix == from) || (ix >= text.length()) || (text.charAt(ix) != ':')) {
+      return NONE;
+    }
+    int verseStart = ++ix;
+    int verse = 0;
+    while ((ix < text.length()) && Character.isDigit(text.charAt(ix))) {
+      verse = verse * 10 + (text.charAt(ix++) - '0');
+    }
+    if ((ix == verseStart) || (ix != text.length())
+	|| (chapter > 255) || (verse > 255)) {
+      return NONE;
+    }
+    return pack(book, chapter, verse);
+  }
+
+  /** Parse the reference at the start of a verse line of a known book.
+   * The abbreviation is remembered for the book.
+   * @param book book number, from the file name
+   * @param bookChapVerse reference such as "MAT 1:18"
+   * @return packed reference or NONE if the text is not a reference
+   */
+  public static int parse(int book, CharSequence bookChapVerse) {
+    int space = indexOf(bookChapVerse, ' ');
+    if ((space <= 0) || (book < 1) || (book > MAX_BOOK)) { return NONE; }
+    int ref = parseChapterVerse(book, bookChapVerse, space + 1);
+    if ((ref != NONE) && (abbrevs.get(book) == null)) {
+      registerBook(book, bookChapVerse.subSequence(0, space).toString());
+    }
+    return ref;
+  }
+
+  /** Parse the reference at the start of a verse line of a known book
+   * @param bkno 2-digit book number, from the file name
+   * @param bookChapVerse reference such as "MAT 1:18"
+   * @return packed reference or NONE if the text is not a reference
+   */
+  public static int parse(String bkno, CharSequence bookChapVerse) {
+    if ((bkno == null) || (bkno.length() != 2) || !Character.isDigit(bkno.charAt(0))
+	|| !Character.isDigit(bkno.charAt(1))) {
+      return NONE;
+    }
+    return parse(Integer.parseInt(bkno), bookChapVerse);
+  }
+
+  /** Parse a reference such as "MAT 1:18" whose book has already been
+   * seen, or one with its book number in front such as "40MAT 1:18".
+   * @param text reference
+   * @return packed reference or NONE if the text is not a reference
+   */
+  public static int parse(String text) {
+    text = text.trim();
+    if ((text.length() > 2) && Character.isDigit(text.charAt(0))
+	&& Character.isDigit(text.charAt(1))) {
+      return parse(text.substring(0, 2), text.substring(2));
+    }
+    int space = text.indexOf(' ');
+    if (space <= 0) { return NONE; }
+    int book = bookNumber(text.substring(0, space));
+    if (book == 0) { return NONE; }
+    return parseChapterVerse(book, text, space + 1);
+  }
+
+  private static int indexOf(CharSequence text, char ch) {
+    for (int i = 0; i < text.length(); i++) {
+      if (text.charAt(i) == ch) { return i; }
+    }
+    return -1;
+  }
+
+  /**
+   * @param ref packed reference
+   * @return reference as it appears at the start of a verse line, such
+   * as "MAT 1:18"
+   * @throws IllegalArgumentException if the book has not been registered
+   */
+  public static String format(int ref) {
+    String abbrev = abbrev(book(ref));
+    if (abbrev == null) {
+      throw new IllegalArgumentException("Book " + book(ref) + " has not been registered");
+    }
+    return abbrev + " " + chapter(ref) + ":" + verse(ref);
+  }
+
+  /**
+   * @param ref packed reference
+   * @return the 2-digit book number followed by the reference, as in
+   * "40MAT 1:18", which is how explanation.txt lists changed verses
+   * @throws IllegalArgumentException if the book has not been registered
+   */
+  public static String toChange(int ref) {
+    int book = book(ref);
+    return ((book < 10) ? "0" : "") + book + format(ref);
+  }
+
+  /**
+   * @param ref packed reference
+   * @return name of the bookmark on the verse, as in "40MAT_1:18"
+   * @throws IllegalArgumentException if the book has not been registered
+   */
+  public static String toBookmark(int ref) {
+    return toChange(ref).replace(' ', '_');
+  }
+}
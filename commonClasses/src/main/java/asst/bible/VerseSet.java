@@ -0,0 +1,87 @@
+package asst.bible;
+
+import java.util.Arrays;
+
+/** Sorted set of packed verse references kept in an int array.  Verses
+ * are nearly always added in canonical order, which just appends, and
+ * membership is a binary search, so a set of thousands of verses costs
+ * a few bytes per verse and no objects.
+ * @author Material Gain
+ * @since 2026 10
+ */
+public class VerseSet {
+  private int[] refs;
+  private int size = 0;
+
+  /** Obligatory constructor. */
+  public VerseSet() {
+    refs = new int[8];
+  }
+
+  /** Add a reference
+   * @param ref packed reference
+   * @return true if it was not already in the set
+   */
+  public boolean add(int ref) {
+    if ((size > 0) && (refs[size - 1] >= ref)) {
+      if (refs[size - 1] == ref) { return false; }
+      int ix = Arrays.binarySearch(refs, 0, size, ref);
+      if (ix >= 0) { return false; }
+      ix = -ix - 1;
+      grow();
+      System.arraycopy(refs, ix, refs, ix + 1, size - ix);
+      refs[ix] = ref;
+      size++;
+      return true;
+    }
+    grow();
+    refs[size++] = ref;
+    return true;
+  }
+
+  private void grow() {
+    if (size == refs.length) { refs = Arrays.copyOf(refs, size * 2); }
+  }
+
+  /** Remove a reference
+   * @param ref packed reference
+   * @return true if it was in the set
+   */
+  public boolean remove(int ref) {
+    int ix = Arrays.binarySearch(refs, 0, size, ref);
+    if (ix < 0) { return false; }
+    System.arraycopy(refs, ix + 1, refs, ix, size - ix - 1);
+    size--;
+    return true;
+  }
+
+  /** Add every reference in another set
+   * @param other set whose references are added
+   */
+  public void addAll(VerseSet other) {
+    for (int i = 0; i < other.size; i++) { add(other.refs[i]); }
+  }
+
+  /**
+   * @param ref packed reference
+   * @return true if the reference is in the set
+   */
+  public boolean contains(int ref) {
+    return Arrays.binarySearch(refs, 0, size, ref) >= 0;
+  }
+
+  /**
+   * @param ix position in canonical order
+   * @return the reference at that position
+   */
+  public int get(int ix) {
+    return refs[ix];
+  }
+
+  /**
+   * @return number of references in the set
+   */
+  public int size() {
+    return size;
+  }
+}
@@ -0,0 +1,214 @@
+package asst.common;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+
+import asst.hssf.SSU;
+
+/** Content hashes of the inputs which went into the files of an output
+ * folder, kept in a small text file in that folder so that the next run
+ * can tell which outputs are already up to date and leave them alone.
+ *
+ * <p>Each line of the file is key=hash.  The keys are chosen by the
+ * program which owns the manifest, such as "in.40MAT.TXT" or "rules".
+ * The file is rewritten only if a hash changed, so an up to date output
+ * folder keeps all of its timestamps.  Puts are synchronized so that
+ * threads may record the files they write.</p>
+ * @author Material Gain
+ * @since 2026 10
+ */
+public class BuildManifest {
+  /** Where the manifest is kept */
+  private final Path file;
+  /** Hashes read from the file */
+  private final Map<String, String> previous = new TreeMap<String, String>();
+  /** Hashes as they are now */
+  private final Map<String, String> current = new TreeMap<String, String>();
+
+  /** Read a manifest.  A manifest which is missing or cannot be read is
+   * empty, which means that nothing is up to date.
+   * @param file where the manifest is kept
+   */
+  public BuildManifest(Path file) {
+    this.file = file;
+    try {
+      if (Files.isReadable(file)) {
+	for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+	  int ix = line.lastIndexOf('=');
+	  if ((ix <= 0) || line.startsWith("#")) { continue; }
+	  previous.put(line.substring(0, ix), line.substring(ix + 1));
+	}
+      }
+    } catch (IOException e) {
+      previous.clear();
+    }
+    current.putAll(previous);
+  }
+
+  /**
+   * @param key name of an input
+   * @return the hash recorded by the last run, or null if there is none
+   */
+  public synchronized String get(String key) {
+    return previous.get(key);
+  }
+
+  /** Tell whether an input is the same as it was on the last run
+   * @param key name of an input
+   * @param hash its hash now
+   * @return true if the last run recorded the same hash
+   */
+  public synchronized boolean matches(String key, String hash) {
+    return hash.equals(previous.get(key));
+  }
+
+  /** Record the hash of an input for the next run
+   * @param key name of an input
+   * @param hash its hash now
+   */
+  public synchronized void put(String key, String hash) {
+    current.put(key, hash);
+  }
+
+  /** Forget an input, so that whatever depends on it is rebuilt next time
+   * @param key name of an input
+   */
+  public synchronized void remove(String key) {
+    current.remove(key);
+  }
+
+  /** Forget every input, so that only those put from now on are kept.
+   * This is for a program whose one output depends on all its inputs.
+   */
+  public synchronized void clear() {
+    current.clear();
+  }
+
+  /**
+   * @return true if the inputs and their hashes are exactly those of the
+   * last run
+   */
+  public synchronized boolean isUnchanged() {
+    return current.equals(previous);
+  }
+
+  /** Write the manifest if anything in it changed
+   * @return true if the file was written
+   * @throws IOException if it cannot be written
+   */
+  public synchronized boolean save() throws IOException {
+    if (current.equals(previous) && Files.exists(file)) { return false; }
+    List<String> lines = new ArrayList<String>(current.size());
+    for (Map.Entry<String, String> e : current.entrySet()) {
+      lines.add(e.getKey() + "=" + e.getValue());
+    }
+    Files.write(file, lines, StandardCharsets.UTF_8);
+    previous.clear();
+    previous.putAll(current);
+    return true;
+  }
+
+  /** @return a new SHA-256 digest */
+  public static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is missing", e);
+    }
+  }
+
+  /**
+   * @param digest digest with everything added
+   * @return the digest in hex
+   */
+  public static String toHex(MessageDigest digest) {
+    StringBuilder sb = new StringBuilder(64);
+    for (byte b : digest.digest()) {
+      sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+    }
+    return sb.toString();
+  }
+
+  /**
+   * @param file a file
+   * @return hash of its bytes
+   * @throws IOException if it cannot be read
+   */
+  public static String hashFile(Path file) throws IOException {
+    return hashBytes(Files.readAllBytes(file));
+  }
+
+  /**
+   * @param bytes content of a file already read
+   * @return hash of the bytes
+   */
+  public static String hashBytes(byte[] bytes) {
+    MessageDigest digest = newDigest();
+    digest.update(bytes);
+    return toHex(digest);
+  }
+
+  /**
+   * @param lines lines of text
+   * @return hash of the lines, each ended by a newline
+   */
+  public static String hashLines(List<String> lines) {
+    MessageDigest digest = newDigest();
+    for (String line : lines) {
+      digest.update(line.getBytes(StandardCharsets.UTF_8));
+      digest.update((byte)'\n');
+    }
+    return toHex(digest);
+  }
+
+  /** Hash lines which are still UTF-8 bytes, giving the same hash as
+   * {@link #hashLines} gives for the lines decoded.
+   * @param lines bytes of each line from its position to its limit,
+   * without its line end.  The buffers are not moved.
+   * @return hash of the lines, each ended by a newline
+   */
+  public static String hashBuffers(List<ByteBuffer> lines) {
+    MessageDigest digest = newDigest();
+    for (ByteBuffer line : lines) {
+      digest.update(line.duplicate());
+      digest.update((byte)'\n');
+    }
+    return toHex(digest);
+  }
+
+  /** Hash a sheet as its cells are displayed.  Comment rows, whose first
+   * cell starts with #, do not count.
+   * @param sheet a sheet, may be null
+   * @return hash of the sheet
+   */
+  public static String hashSheet(Sheet sheet) {
+    MessageDigest digest = newDigest();
+    if (sheet == null) { return toHex(digest); }
+    for (int i = sheet.getFirstRowNum(); i <= sheet.getLastRowNum(); i++) {
+      Row row = sheet.getRow(i);
+      if (row == null) { continue; }
+      if ((row.getCell(0) != null) && (SSU.getFormattedCell(0, row) == null)) {
+	continue; // comment row
+      }
+      for (int c = 0; c < row.getLastCellNum(); c++) {
+	String cell = SSU.getFormattedCell(c, row);
+	if (cell != null) { digest.update(cell.getBytes(StandardCharsets.UTF_8)); }
+	digest.update((byte)'\t');
+      }
+      digest.update((byte)'\n');
+    }
+    return toHex(digest);
+  }
+}
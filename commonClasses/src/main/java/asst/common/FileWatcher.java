@@ -0,0 +1,111 @@
+package asst.common;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/** Wait for some files to change, for the +watch mode of a program which
+ * stays running and builds its output again whenever its input changes.
+ *
+ * <p>A WatchService watches folders, not files, so the folder of each
+ * watched file is watched and events for other files in it are ignored.
+ * A spreadsheet or word processor usually saves by writing a temporary
+ * file and renaming it, and an editor may save a folder of books one at a
+ * time, so after the first change {@link #await} keeps collecting changes
+ * until none have come for a while.</p>
+ * @author Material Gain
+ * @since 2026 10
+ */
+public class FileWatcher implements Closeable {
+  private final WatchService service;
+  /** Folder of each registered key */
+  private final Map<WatchKey, Path> folders = new HashMap<WatchKey, Path>();
+  /** Files which are watched one by one */
+  private final Set<Path> files = new HashSet<Path>();
+  /** Folders whose files are all watched, with the ending they must have */
+  private final Map<Path, String> suffixes = new HashMap<Path, String>();
+
+  /** Obligatory constructor.
+   * @throws IOException if the file system cannot watch files
+   */
+  public FileWatcher() throws IOException {
+    service = FileSystems.getDefault().newWatchService();
+  }
+
+  private void register(Path folder) throws IOException {
+    if (folders.containsValue(folder)) { return; }
+    WatchKey key = folder.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+	StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+    folders.put(key, folder);
+  }
+
+  /** Watch one file
+   * @param file the file, which need not exist yet but whose folder must
+   * @throws IOException if its folder cannot be watched
+   */
+  public void watchFile(Path file) throws IOException {
+    file = file.toAbsolutePath().normalize();
+    register(file.getParent());
+    files.add(file);
+  }
+
+  /** Watch the files in a folder whose names end a certain way
+   * @param folder the folder
+   * @param suffix ending such as ".txt", compared ignoring case
+   * @throws IOException if the folder cannot be watched
+   */
+  public void watchFolder(Path folder, String suffix) throws IOException {
+    folder = folder.toAbsolutePath().normalize();
+    register(folder);
+    suffixes.put(folder, suffix.toLowerCase());
+  }
+
+  /** Wait until at least one watched file changes and then until no more
+   * change for a while.
+   * @param quietMillis how long nothing must change before returning
+   * @return the watched files which changed, in name order.  If events
+   * were lost the watched folders and files are all returned.
+   * @throws InterruptedException if the thread is interrupted while waiting
+   */
+  public Set<Path> await(long quietMillis) throws InterruptedException {
+    Set<Path> changed = new TreeSet<Path>();
+    WatchKey key = service.take();
+    while (key != null) {
+      Path folder = folders.get(key);
+      for (WatchEvent<?> event : key.pollEvents()) {
+	if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+	  changed.addAll(files);
+	  changed.addAll(suffixes.keySet());
+	  continue;
+	}
+	Path file = folder.resolve((Path)event.context());
+	if (isWatched(file)) { changed.add(file); }
+      }
+      key.reset();
+      key = changed.isEmpty() ? service.take() : service.poll(quietMillis, TimeUnit.MILLISECONDS);
+    }
+    return changed;
+  }
+
+  private boolean isWatched(Path file) {
+    if (files.contains(file)) { return true; }
+    String suffix = suffixes.get(file.getParent());
+    return (suffix != null) && file.getFileName().toString().toLowerCase().endsWith(suffix);
+  }
+
+  @Override
+  public void close() throws IOException {
+    service.close();
+  }
+}
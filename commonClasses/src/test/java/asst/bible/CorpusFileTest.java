@@ -0,0 +1,113 @@
+package asst.bible;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CorpusFileTest {
+  @TempDir
+  Path dir;
+
+  static final String[] mat = {
+      "MAT 1:1  The book of the generation of Jesus Christ",
+      "MAT 1:2  Abraham begat Isaac",
+      "MAT 2:1  Now when Jesus was born in Bethlehem",
+  };
+  /** Not all ASCII */
+  static final String[] mrk = {
+      "MRK 1:1  The beginning of the gospel — of Jesus Christ",
+      "Ελληνικά without a reference",
+  };
+
+  Path corpus;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    Path in = dir.resolve("in");
+    Files.createDirectories(in);
+    Files.write(in.resolve("40MAT.TXT"), Arrays.asList(mat), StandardCharsets.UTF_8);
+    Files.write(in.resolve("41MRK.TXT"), Arrays.asList(mrk), StandardCharsets.UTF_8);
+    Files.write(in.resolve("42LUK.TXT"), new byte[0]);
+    Files.write(in.resolve("explanation.txt"), Arrays.asList("0"), StandardCharsets.UTF_8);
+    corpus = dir.resolve("books.corpus");
+    assertEquals(3, CorpusFile.pack(in, corpus));
+  }
+
+  @Test
+  void testRoundTrip() throws Exception {
+    CorpusFile books = CorpusFile.open(corpus);
+    assertEquals(Arrays.asList("40MAT.TXT", "41MRK.TXT", "42LUK.TXT"), books.getBookNames());
+    assertEquals(5, books.getLineCount());
+    assertEquals(Arrays.asList(mat), books.getLines("40MAT.TXT"));
+    assertEquals(Arrays.asList(mrk), books.getLines("41MRK.TXT"));
+
+    List<ByteBuffer> bytes = books.getLineBytes("41MRK.TXT");
+    assertEquals(2, bytes.size());
+    byte[] line = new byte[bytes.get(1).remaining()];
+    bytes.get(1).get(line);
+    assertEquals(mrk[1], new String(line, StandardCharsets.UTF_8));
+    assertThrows(IndexOutOfBoundsException.class, () -> books.getLines("40MAT.TXT").get(3));
+  }
+
+  @Test
+  void testEmptyAndMissingBooks() throws Exception {
+    CorpusFile books = CorpusFile.open(corpus);
+    assertTrue(books.getLines("42LUK.TXT").isEmpty());
+    assertTrue(books.getLineBytes("42LUK.TXT").isEmpty());
+    assertNull(books.getLines("43JHN.TXT"));
+    assertNull(books.getLineBytes("43JHN.TXT"));
+    assertEquals(-1, books.findVerse(VerseRef.pack(42, 1, 1)));
+    assertEquals(-1, books.findVerse(VerseRef.pack(43, 1, 1)));
+  }
+
+  @Test
+  void testFindVerse() throws Exception {
+    CorpusFile books = CorpusFile.open(corpus);
+    assertEquals(0, books.findVerse(VerseRef.pack(40, 1, 1)));
+    assertEquals(2, books.findVerse(VerseRef.pack(40, 2, 1)));
+    assertEquals(3, books.findVerse(VerseRef.pack(41, 1, 1)));
+    assertEquals(-1, books.findVerse(VerseRef.pack(40, 1, 3)));
+    assertEquals(VerseRef.pack(40, 1, 2), books.getVerseRef(1));
+    assertEquals(VerseRef.NONE, books.getVerseRef(4), "no reference");
+    assertEquals(mat[2], books.getLine(2));
+  }
+
+  @Test
+  void testTruncatedOrCorrupt() throws Exception {
+    byte[] whole = Files.readAllBytes(corpus);
+    Path bad = dir.resolve("bad.corpus");
+    /* Every cut short of the whole file is an IOException, not an index exception */
+    for (int size = 0; size < whole.length; size++) {
+      Files.write(bad, Arrays.copyOf(whole, size));
+      String message = "size " + size;
+      assertThrows(IOException.class, () -> CorpusFile.open(bad), message);
+    }
+
+    byte[] wrong = whole.clone();
+    wrong[0] = 'X';
+    Files.write(bad, wrong);
+    assertThrows(IOException.class, () -> CorpusFile.open(bad));
+
+    /* A line count larger than the book table holds */
+    wrong = whole.clone();
+    ByteBuffer.wrap(wrong).putInt(CorpusFile.MAGIC.length + 4, 6);
+    Files.write(bad, wrong);
+    assertThrows(IOException.class, () -> CorpusFile.open(bad));
+
+    /* A book count larger than the file */
+    wrong = whole.clone();
+    ByteBuffer.wrap(wrong).putInt(CorpusFile.MAGIC.length, 1 << 20);
+    Files.write(bad, wrong);
+    assertThrows(IOException.class, () -> CorpusFile.open(bad));
+  }
+}
@@ -0,0 +1,77 @@
+package asst.bible;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class VerseRefTest {
+  @BeforeAll
+  static void registerBooks() {
+    assertEquals(40, VerseRef.registerBook("40MAT.TXT"));
+    assertEquals(1, VerseRef.registerBook("01GEN.TXT"));
+  }
+
+  @Test
+  void testPackAndUnpack() {
+    int ref = VerseRef.pack(40, 12, 255);
+    assertEquals(40, VerseRef.book(ref));
+    assertEquals(12, VerseRef.chapter(ref));
+    assertEquals(255, VerseRef.verse(ref));
+    assertEquals((40 << 16) | (12 << 8) | 255, ref);
+    assertTrue(VerseRef.pack(40, 2, 1) > VerseRef.pack(40, 1, 255), "canonical order");
+    assertTrue(VerseRef.pack(41, 1, 1) > VerseRef.pack(40, 255, 255));
+    assertEquals(VerseRef.pack(40, 1, 0) & ~0xff, VerseRef.pack(40, 1, 0), "whole chapter");
+
+    assertThrows(IllegalArgumentException.class, () -> VerseRef.pack(40, 1, 256));
+    assertThrows(IllegalArgumentException.class, () -> VerseRef.pack(40, 256, 1));
+    assertThrows(IllegalArgumentException.class, () -> VerseRef.pack(0, 1, 1));
+    assertThrows(IllegalArgumentException.class, () -> VerseRef.pack(VerseRef.MAX_BOOK + 1, 1, 1));
+  }
+
+  @Test
+  void testParse() {
+    int ref = VerseRef.pack(40, 1, 18);
+    assertEquals(ref, VerseRef.parse("MAT 1:18"));
+    assertEquals(ref, VerseRef.parse("40MAT 1:18"));
+    assertEquals(ref, VerseRef.parse(" 40MAT 1:18 "));
+    assertEquals(ref, VerseRef.parse(40, "MAT 1:18"));
+    assertEquals(ref, VerseRef.parse("40", "MAT 1:18"));
+    assertEquals(VerseRef.pack(1, 50, 26), VerseRef.parse("GEN 50:26"));
+
+    assertEquals(VerseRef.NONE, VerseRef.parse("MAT 1:256"), "verse above 255");
+    assertEquals(VerseRef.NONE, VerseRef.parse("MAT 256:1"), "chapter above 255");
+    assertEquals(VerseRef.NONE, VerseRef.parse("MAT 1:18."));
+    assertEquals(VerseRef.NONE, VerseRef.parse("MAT 1"));
+    assertEquals(VerseRef.NONE, VerseRef.parse("MAT :1"));
+    assertEquals(VerseRef.NONE, VerseRef.parse("MAT"));
+    assertEquals(VerseRef.NONE, VerseRef.parse(""));
+    assertEquals(VerseRef.NONE, VerseRef.parse("4", "MAT 1:1"));
+    assertEquals(VerseRef.NONE, VerseRef.parse(0, "MAT 1:1"));
+  }
+
+  @Test
+  void testUnregisteredBook() {
+    assertEquals(0, VerseRef.bookNumber("QQQ"));
+    assertNull(VerseRef.abbrev(98));
+    assertEquals(VerseRef.NONE, VerseRef.parse("QQQ 1:1"), "the book number is not known");
+    assertEquals(0, VerseRef.registerBook("explanation.txt"));
+    assertThrows(IllegalArgumentException.class, () -> VerseRef.format(VerseRef.pack(98, 1, 1)));
+    assertThrows(IllegalArgumentException.class, () -> VerseRef.toBookmark(VerseRef.pack(98, 1, 1)));
+
+    /* A reference with its book number registers the abbreviation */
+    assertEquals(VerseRef.pack(97, 2, 3), VerseRef.parse("97ZZZ 2:3"));
+    assertEquals(97, VerseRef.bookNumber("ZZZ"));
+    assertEquals(VerseRef.pack(97, 2, 4), VerseRef.parse("ZZZ 2:4"));
+  }
+
+  @Test
+  void testFormat() {
+    int ref = VerseRef.pack(40, 1, 18);
+    assertEquals("MAT 1:18", VerseRef.format(ref));
+    assertEquals("40MAT 1:18", VerseRef.toChange(ref));
+    assertEquals("40MAT_1:18", VerseRef.toBookmark(ref));
+    assertEquals("01GEN 50:26", VerseRef.toChange(VerseRef.pack(1, 50, 26)));
+    assertEquals(ref, VerseRef.parse(VerseRef.toChange(ref)), "round trip");
+  }
+}
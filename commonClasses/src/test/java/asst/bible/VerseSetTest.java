@@ -0,0 +1,80 @@
+package asst.bible;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class VerseSetTest {
+  @BeforeAll
+  static void registerBooks() {
+    VerseRef.registerBook("40MAT.TXT");
+    VerseRef.registerBook("41MRK.TXT");
+  }
+
+  static List<String> toChanges(VerseSet set) {
+    List<String> changes = new ArrayList<String>();
+    for (int i = 0; i < set.size(); i++) { changes.add(VerseRef.toChange(set.get(i))); }
+    return changes;
+  }
+
+  @Test
+  void testAddAndContains() {
+    VerseSet set = new VerseSet();
+    assertTrue(set.add(VerseRef.pack(40, 1, 1)));
+    assertTrue(set.add(VerseRef.pack(40, 1, 3)));
+    assertFalse(set.add(VerseRef.pack(40, 1, 3)), "last one again");
+    assertTrue(set.add(VerseRef.pack(40, 1, 2)), "out of order");
+    assertFalse(set.add(VerseRef.pack(40, 1, 1)), "earlier one again");
+    assertEquals(3, set.size());
+    assertTrue(set.contains(VerseRef.pack(40, 1, 2)));
+    assertFalse(set.contains(VerseRef.pack(40, 1, 4)));
+    assertFalse(set.contains(VerseRef.NONE));
+
+    assertTrue(set.remove(VerseRef.pack(40, 1, 1)));
+    assertFalse(set.remove(VerseRef.pack(40, 1, 1)));
+    assertEquals(Arrays.asList("40MAT 1:2", "40MAT 1:3"), toChanges(set));
+
+    /* Past the first array */
+    VerseSet big = new VerseSet();
+    for (int verse = 200; verse > 0; verse--) { big.add(VerseRef.pack(41, 1, verse)); }
+    big.addAll(set);
+    assertEquals(202, big.size());
+    assertEquals(VerseRef.pack(40, 1, 2), big.get(0));
+    assertEquals(VerseRef.pack(41, 1, 200), big.get(201));
+  }
+
+  /** The ledger used to keep changed verses in a TreeSet of strings.  The
+   * order is the same wherever a string comparison agrees with book,
+   * chapter and verse, and the set is the same everywhere. */
+  @Test
+  void testOrderMatchesStrings() {
+    String[] changes = {"41MRK 2:1", "40MAT 1:1", "40MAT 3:5", "41MRK 1:9", "40MAT 1:2",
+	"40MAT 3:5", "40MAT 2:7"};
+    TreeSet<String> old = new TreeSet<String>();
+    VerseSet set = new VerseSet();
+    for (String change : changes) {
+      old.add(change);
+      set.add(VerseRef.parse(change));
+    }
+    assertEquals(new ArrayList<String>(old), toChanges(set));
+    for (String change : changes) { assertTrue(set.contains(VerseRef.parse(change))); }
+
+    /* Where the strings compare digit by digit the set is still in canonical order */
+    old.clear();
+    set = new VerseSet();
+    for (String change : new String[] {"40MAT 1:10", "40MAT 1:2", "40MAT 10:1", "40MAT 9:1"}) {
+      old.add(change);
+      set.add(VerseRef.parse(change));
+    }
+    assertEquals(Arrays.asList("40MAT 10:1", "40MAT 1:10", "40MAT 1:2", "40MAT 9:1"),
+	new ArrayList<String>(old));
+    assertEquals(Arrays.asList("40MAT 1:2", "40MAT 1:10", "40MAT 9:1", "40MAT 10:1"), toChanges(set));
+    assertEquals(new TreeSet<String>(old), new TreeSet<String>(toChanges(set)), "same verses");
+  }
+}
@@ -0,0 +1,102 @@
+package asst.common;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FileWatcherTest {
+  @TempDir
+  Path dir;
+
+  static final long QUIET = 300;
+
+  FileWatcher watcher;
+  ExecutorService waiter;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    dir = dir.toAbsolutePath().normalize();
+    watcher = new FileWatcher();
+    waiter = Executors.newSingleThreadExecutor();
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    waiter.shutdownNow();
+    watcher.close();
+  }
+
+  private Future<Set<Path>> await() {
+    return waiter.submit(() -> watcher.await(QUIET));
+  }
+
+  @Test
+  void testFolder() throws Exception {
+    Path books = dir.resolve("books");
+    Files.createDirectories(books);
+    Files.write(books.resolve("40MAT.TXT"), "old".getBytes());
+    watcher.watchFolder(books, ".txt");
+
+    Future<Set<Path>> changes = await();
+    Files.write(books.resolve("notes.log"), "x".getBytes());
+    Thread.sleep(2 * QUIET);
+    assertFalse(changes.isDone(), "a file with another ending is ignored");
+
+    Files.write(books.resolve("40MAT.TXT"), "new".getBytes());
+    Files.write(books.resolve("41MRK.txt"), "created".getBytes());
+    assertEquals(new HashSet<Path>(Arrays.asList(books.resolve("40MAT.TXT"),
+	books.resolve("41MRK.txt"))), changes.get(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void testFile() throws Exception {
+    Path dictionary = dir.resolve("dict.xlsx");
+    watcher.watchFile(dictionary);
+
+    Future<Set<Path>> changes = await();
+    Files.write(dir.resolve("other.xlsx"), "x".getBytes());
+    Thread.sleep(2 * QUIET);
+    assertFalse(changes.isDone(), "another file in the folder is ignored");
+
+    /* Saved as a temporary file which is renamed */
+    Path temp = dir.resolve("dict.tmp");
+    Files.write(temp, "saved".getBytes());
+    Files.move(temp, dictionary);
+    assertEquals(new HashSet<Path>(Arrays.asList(dictionary)), changes.get(10, TimeUnit.SECONDS));
+
+    changes = await();
+    Files.write(dictionary, "modified".getBytes());
+    assertEquals(new HashSet<Path>(Arrays.asList(dictionary)), changes.get(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void testQuietPeriod() throws Exception {
+    watcher.watchFolder(dir, ".txt");
+    Future<Set<Path>> changes = await();
+    /* Changes closer together than the quiet period come back together */
+    Files.write(dir.resolve("40MAT.TXT"), "a".getBytes());
+    for (int i = 0; i < 3; i++) {
+      Thread.sleep(QUIET / 3);
+      assertFalse(changes.isDone(), "still waiting for the changes to stop");
+      Files.write(dir.resolve("4" + (i + 1) + "MRK.TXT"), "b".getBytes());
+    }
+    long last = System.nanoTime();
+    Set<Path> changed = changes.get(10, TimeUnit.SECONDS);
+    long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - last);
+    assertEquals(4, changed.size());
+    assertTrue(waited >= QUIET - 50, "returned " + waited + " ms after the last change");
+  }
+}
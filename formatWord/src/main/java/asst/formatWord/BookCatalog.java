@@ -0,0 +1,141 @@
+package asst.formatWord;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+
+import asst.bible.VerseRef;
+import asst.common.BuildManifest;
+import asst.hssf.SSU;
+import asst.hssf.WorkbookManager;
+
+/** What the document needs from the dictionary, read once so that the
+ * workbook can be closed before the document is made.  An XSSFWorkbook
+ * holds every sheet of the dictionary, which is a lot of memory to keep
+ * while the document is built.
+ *
+ * <p>Row n of the BookNames sheet is book n: its name, the chapter title
+ * with _ where the name goes, and an optional introduction.  The Footnotes
+ * and TOCVerses sheets are keyed by packed {@link VerseRef}, so the books
+ * must be registered with VerseRef before the catalog is loaded.</p>
+ *
+ * <p>A catalog does not change once it is loaded, so it can be read by
+ * any number of threads.</p>
+ * @author Material Gain
+ * @since 2026 10
+ */
+public class BookCatalog {
+  /** Name of each book by number */
+  private final String[] names = new String[VerseRef.MAX_BOOK + 1];
+  /** Chapter title of each book, with _ where the name goes */
+  private final String[] titles = new String[VerseRef.MAX_BOOK + 1];
+  /** Introduction of each book, empty if it has none */
+  private final String[] intros = new String[VerseRef.MAX_BOOK + 1];
+  /** The word a footnote follows, a space and the footnote, keyed by
+   * packed {@link VerseRef} */
+  public final Map<Integer, String> footnotes;
+  /** Verses which go into the table of contents, keyed by packed
+   * {@link VerseRef} */
+  public final Map<Integer, String> tocVerses;
+  /** Hash of each sheet in {@link FormatWordMain#hashed_sheets} for the
+   * build manifest */
+  public final Map<String, String> sheetHashes;
+
+  private BookCatalog(Map<Integer, String> footnotes, Map<Integer, String> tocVerses,
+      Map<String, String> sheetHashes) {
+    this.footnotes = Collections.unmodifiableMap(footnotes);
+    this.tocVerses = Collections.unmodifiableMap(tocVerses);
+    this.sheetHashes = Collections.unmodifiableMap(sheetHashes);
+  }
+
+  /** Read the catalog from the dictionary
+   * @param wm workbook manager with the dictionary open
+   * @return the catalog
+   */
+  public static BookCatalog load(WorkbookManager wm) {
+    Map<String, String> hashes = new HashMap<String, String>();
+    for (String sname : FormatWordMain.hashed_sheets) {
+      hashes.put(sname, BuildManifest.hashSheet(wm.pickSheet(sname)));
+    }
+    BookCatalog catalog = new BookCatalog(loadFootnotes(wm), loadTOCVerses(wm), hashes);
+    Sheet sheet = wm.pickSheet("BookNames");
+    for (int book = 1; book <= Math.min(VerseRef.MAX_BOOK, sheet.getLastRowNum()); book++) {
+      Row row = sheet.getRow(book);
+      if ((row == null) || (row.getCell(1) == null) || (row.getCell(2) == null)) { continue; }
+      catalog.names[book] = row.getCell(1).getStringCellValue();
+      catalog.titles[book] = row.getCell(2).getStringCellValue();
+      Cell cell = row.getCell(3);
+      catalog.intros[book] = (cell == null) ? "" : cell.getStringCellValue();
+    }
+    return catalog;
+  }
+
+  /** Read the TOCVerses sheet into a map of verse notes */
+  private static Map<Integer, String> loadTOCVerses(WorkbookManager wm) {
+    Map<Integer, String> tocVerses = new HashMap<Integer, String>();
+    Sheet tocs = wm.pickSheet("TocVerses");
+    for (int i = 1; i<=tocs.getLastRowNum(); i++) {
+      Row row = tocs.getRow(i);
+      String chapVerse = SSU.getFormattedCell(0, row);
+      if ((chapVerse == null) || chapVerse.startsWith("#")) { continue; }
+      int ref = VerseRef.parse(chapVerse);
+      if (ref == VerseRef.NONE) { continue; }
+      tocVerses.put(ref, SSU.getFormattedCell(1, row));
+    }
+    return tocVerses;
+  }
+
+  /** Read the footnote values from the footnote sheet */
+  private static Map<Integer, String> loadFootnotes(WorkbookManager wm) {
+    Map<Integer, String> footnotes = new HashMap<Integer, String>();
+    Sheet feet = wm.pickSheet("Footnotes");
+    for (int i = 1; i<=feet.getLastRowNum(); i++) {
+      Row row = feet.getRow(i);
+      String chapVerse = SSU.getFormattedCell(0, row);
+      if ((chapVerse == null) || chapVerse.startsWith("#")) { continue; }
+      int ref = VerseRef.parse(chapVerse);
+      if (ref == VerseRef.NONE) { continue; }
+      String value = SSU.getFormattedCell(1, row)
+	  + " " +SSU.getFormattedCell(2, row);
+      footnotes.put(ref, value);
+    }
+    return footnotes;
+  }
+
+  private void checkBook(int book) {
+    if ((book < 1) || (book > VerseRef.MAX_BOOK) || (names[book] == null)) {
+      throw new IllegalArgumentException("Book " + book + " is not in the BookNames sheet");
+    }
+  }
+
+  /**
+   * @param book book number
+   * @return name of the book
+   */
+  public String getBookName(int book) {
+    checkBook(book);
+    return names[book];
+  }
+
+  /**
+   * @param book book number
+   * @return title of the book's chapter, with its name in place of _
+   */
+  public String getChapterTitle(int book) {
+    checkBook(book);
+    return titles[book].replace("_", names[book]);
+  }
+
+  /**
+   * @param book book number
+   * @return introduction of the book's chapter, empty if it has none
+   */
+  public String getChapterIntro(int book) {
+    checkBook(book);
+    return intros[book];
+  }
+}
@@ -0,0 +1,74 @@
+package asst.formatWord;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import asst.bible.VerseRef;
+import asst.bible.VerseSet;
+
+/** The verses which explanation.txt lists as changed, read once before
+ * the chapters are made.  Whether a verse changed is looked up for every
+ * verse, so the changed verses are kept as a bit for each packed
+ * {@link VerseRef} as well as in canonical order for the lists of links.
+ *
+ * <p>The first line of the explanation tells how many verses changed.
+ * The second line is the underscore-separated list of verses that
+ * changed, such as "40MAT 1:1_40MAT 1:10_".  Each line after that names
+ * a word change, a colon, a space and the verses it changed, such as
+ * "anguish -> pain: 40MAT 1:1_40MAT 1:3_".</p>
+ * @author Material Gain
+ * @since 2026 10
+ */
+public class ChangeExplanation {
+  /** Every changed verse, one bit per packed reference */
+  private final BitSet changed = new BitSet();
+  /** Every changed verse in canonical order */
+  public final VerseSet verses = new VerseSet();
+  /** Name of each word change, such as "anguish -> pain" */
+  public final List<String> changeNames = new ArrayList<String>();
+  /** Verses changed by each word change, in the order of changeNames */
+  public final List<VerseSet> changeVerses = new ArrayList<VerseSet>();
+
+  /**
+   * @param lines the lines of explanation.txt
+   */
+  public ChangeExplanation(List<String> lines) {
+    if (lines.size() > 1) {
+      parseList(lines.get(1), verses);
+    }
+    for (int i = 0; i < verses.size(); i++) {
+      changed.set(verses.get(i));
+    }
+    for (int i = 2; i < lines.size(); i++) {
+      String line = lines.get(i);
+      int ix = line.indexOf(":");
+      if (ix < 0) { continue; }
+      VerseSet changeSet = new VerseSet();
+      parseList(line.substring(Math.min(ix + 2, line.length())), changeSet);
+      changeNames.add(line.substring(0, ix));
+      changeVerses.add(changeSet);
+    }
+  }
+
+  /** Add the verses of an underscore-separated list to a set.  Entries
+   * which are not verse references are left out.
+   * @param list list such as "40MAT 1:1_40MAT 1:10_"
+   * @param into where the verses go
+   */
+  static void parseList(String list, VerseSet into) {
+    for (String change : list.split("_")) {
+      if (change.isEmpty()) { continue; }
+      int ref = VerseRef.parse(change);
+      if (ref != VerseRef.NONE) { into.add(ref); }
+    }
+  }
+
+  /**
+   * @param ref packed reference
+   * @return true if the verse changed
+   */
+  public boolean isChanged(int ref) {
+    return (ref >= 0) && changed.get(ref);
+  }
+}
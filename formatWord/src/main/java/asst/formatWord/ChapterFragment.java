@@ -0,0 +1,199 @@
+package asst.formatWord;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFFootnote;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFRun;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTBookmark;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTFtnEdn;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTFtnEdnRef;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTMarkupRange;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTP;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTPPr;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTParaRPr;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTSectPr;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.STFtnEdn;
+
+import asst.formatWord.utils.WordDocxUtils;
+
+/** The paragraphs of one chapter, or of any other part of the document,
+ * made apart from the document so that the verses of chapters can be made
+ * at the same time on different threads.
+ * Each paragraph and footnote is its own XML fragment which is not yet
+ * in the document, and nothing in the document is changed until
+ * {@link #appendTo} copies the fragments into it or a
+ * {@link DocxStreamWriter} writes them out.
+ *
+ * <p>Bookmarks and footnotes must be numbered from 1 in the order they
+ * are in the document, which is not known while the chapters are being
+ * made.  They are left unnumbered and are numbered by {@link #number}
+ * when the chapter is put into the document, so the
+ * document is the same as one made a chapter at a time as long as the
+ * chapters are appended in order.</p>
+ *
+ * <p>A fragment is used by one thread at a time.  The document is only
+ * read while the fragment is made, to hand it to the paragraphs.</p>
+ * @author Material Gain
+ * @since 2026 10
+ */
+public class ChapterFragment {
+  /** The document the chapter is going into */
+  private final XWPFDocument doc;
+  /** Paragraphs in order */
+  final List<CTP> paragraphs = new ArrayList<CTP>();
+  /** Footnotes in order of their references */
+  final List<XWPFFootnote> footnotes = new ArrayList<XWPFFootnote>();
+  /** Reference to each footnote in the text */
+  private final List<CTFtnEdnRef> footnoteRefs = new ArrayList<CTFtnEdnRef>();
+  /** Start of each bookmark in order */
+  private final List<CTBookmark> bookmarkStarts = new ArrayList<CTBookmark>();
+  /** End of each bookmark in order */
+  private final List<CTMarkupRange> bookmarkEnds = new ArrayList<CTMarkupRange>();
+  /** Sections which get the chapter headers and footers */
+  final List<CTSectPr> headedSections = new ArrayList<CTSectPr>();
+  /** Chapter title in the headers of each of those sections */
+  final List<String> headerTitles = new ArrayList<String>();
+
+  /**
+   * @param doc the document the chapter is going into, which is not
+   * changed until the chapter is appended
+   */
+  public ChapterFragment(XWPFDocument doc) {
+    this.doc = doc;
+  }
+
+  /**
+   * @return a new paragraph at the end of the chapter
+   */
+  public XWPFParagraph createParagraph() {
+    CTP ctp = CTP.Factory.newInstance();
+    paragraphs.add(ctp);
+    return new XWPFParagraph(ctp, doc);
+  }
+
+  /**
+   * @return number of paragraphs in the chapter
+   */
+  public int size() {
+    return paragraphs.size();
+  }
+
+  /** Give a section the headers and footers of a chapter when the
+   * chapter is put into the document, since they are parts of the
+   * package rather than paragraphs
+   * @param sectPr section properties in a paragraph of this chapter
+   * @param chapTitle chapter title for the headers
+   */
+  public void addHeaders(CTSectPr sectPr, String chapTitle) {
+    headedSections.add(sectPr);
+    headerTitles.add(chapTitle);
+  }
+
+  /** Mark a paragraph with a bookmark, which is numbered when the chapter
+   * is appended
+   * @param para paragraph of this chapter
+   * @param bookmarkName name the change lists link to
+   */
+  public void setBookmark(XWPFParagraph para, String bookmarkName) {
+    /* The id is set first so that it comes before the name, as it does
+     * in a bookmark numbered as it is made */
+    CTBookmark bookmarkStart = para.getCTP().addNewBookmarkStart();
+    bookmarkStart.setId(BigInteger.ZERO);
+    bookmarkStart.setName(bookmarkName);
+    bookmarkStarts.add(bookmarkStart);
+    bookmarkEnds.add(para.getCTP().addNewBookmarkEnd());
+  }
+
+  /** Add text with a footnote reference at a position in it, as
+   * {@link WordDocxUtils#addFootnote(XWPFParagraph, XWPFDocument, String, int, String)}
+   * does, except that the footnote is numbered when the chapter is appended.
+   * @param para paragraph of this chapter
+   * @param text the text
+   * @param where position in the text where the reference goes, 0 for the
+   * beginning and text.length() or more for the end
+   * @param footnoteText the text of the footnote
+   */
+  public void addFootnote(XWPFParagraph para, String text, int where, String footnoteText) {
+    where = Math.max(0, Math.min(where, text.length()));
+    if (where > 0) {
+      para.createRun().setText((where < text.length()) ? text.substring(0, where) : text);
+    }
+    XWPFRun footnoteRun = para.createRun();
+    footnoteRun.setStyle("FootnoteReference");
+    footnoteRefs.add(footnoteRun.getCTR().addNewFootnoteReference());
+
+    CTFtnEdn note = CTFtnEdn.Factory.newInstance();
+    note.setType(STFtnEdn.NORMAL);
+    XWPFFootnote footnote = new XWPFFootnote(doc, note);
+    XWPFParagraph footnotePara = footnote.createParagraph();
+    footnotePara.setStyle("FootnoteText");
+    footnotePara.createRun().setText(footnoteText);
+    footnotes.add(footnote);
+
+    if ((where == 0) && (text.length() > 0)) {
+      para.createRun().setText(text);
+    } else if ((where > 0) && (where < text.length())) {
+      para.createRun().setText(text.substring(where));
+    }
+  }
+
+  /** Add a Heading2 paragraph of which only the heading text goes into
+   * the table of contents, as
+   * {@link WordDocxUtils#addSplitHeading2Para(XWPFDocument, String, String)} does.
+   * @param headingText text that will appear in the table of contents
+   * @param trailingText text after it which will not, may be empty
+   */
+  public void addSplitHeading2Para(String headingText, String trailingText) {
+    XWPFParagraph headingPara = createParagraph();
+    headingPara.setStyle("Heading2");
+    headingPara.createRun().setText(headingText);
+
+    if ((trailingText == null) || trailingText.isEmpty()) { return; }
+
+    /* The hidden paragraph mark is the style separator */
+    CTPPr pPr = headingPara.getCTP().isSetPPr() ? headingPara.getCTP().getPPr() : headingPara.getCTP().addNewPPr();
+    CTParaRPr rPr = pPr.addNewRPr();
+    rPr.addNewVanish();
+    rPr.addNewSpecVanish();
+
+    createParagraph().createRun().setText(" " + trailingText);
+  }
+
+  /** Number the bookmarks and footnotes of the chapter following those
+   * already in the document.  This is done once, as the chapter is put
+   * into the document.
+   */
+  public void number() {
+    for (int i = 0; i < bookmarkStarts.size(); i++) {
+      BigInteger id = BigInteger.valueOf(FormatWordMain.bookmarkCounter++);
+      bookmarkStarts.get(i).setId(id);
+      bookmarkEnds.get(i).setId(id);
+    }
+    for (int i = 0; i < footnotes.size(); i++) {
+      BigInteger id = BigInteger.valueOf(WordDocxUtils.nextFootnoteId());
+      footnoteRefs.get(i).setId(id);
+      footnotes.get(i).getCTFtnEdn().setId(id);
+    }
+  }
+
+  /** Number the chapter and copy it to the end of the document, with its
+   * headers and footers.  The chapter must not be appended twice.
+   * @param doc the document, which must be the one the chapter was made for
+   */
+  public void appendTo(XWPFDocument doc) {
+    number();
+    for (int i = 0; i < headedSections.size(); i++) {
+      FormatWordMain.addHeadersAndFooters(doc, headedSections.get(i), headerTitles.get(i));
+    }
+    for (XWPFFootnote footnote : footnotes) {
+      doc.createFootnote().getCTFtnEdn().set(footnote.getCTFtnEdn());
+    }
+    for (CTP ctp : paragraphs) {
+      doc.createParagraph().getCTP().set(ctp);
+    }
+  }
+}
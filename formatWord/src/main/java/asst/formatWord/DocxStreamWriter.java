@@ -0,0 +1,624 @@
+package asst.formatWord;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.apache.poi.xwpf.usermodel.XWPFFootnote;
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlObject;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTFtnEdn;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTHdrFtrRef;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTP;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTSectPr;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.STHdrFtr;
+
+/** Write a .docx a chapter at a time, so that the document is never all
+ * in memory.  An XWPFDocument keeps every paragraph, run and bookmark of
+ * the document until it is written, which for a whole Bible is several
+ * GB.  This writes each {@link ChapterFragment} into word/document.xml
+ * with a StAX writer as soon as it is appended and then lets it go.
+ *
+ * <p>Every part of the template is copied into the new file as it is,
+ * except for these, which are copied with the new content added:</p>
+ * <ul>
+ * <li>word/document.xml, whose body gets the chapters after what the
+ * template has in it and before its last section properties</li>
+ * <li>word/footnotes.xml, which gets the footnotes, or is added if the
+ * template has none and there are footnotes</li>
+ * <li>word/_rels/document.xml.rels and [Content_Types].xml, which get the
+ * new parts</li>
+ * </ul>
+ * <p>The headers and footers of each chapter are written as parts of
+ * their own after the body, from the chapter titles, and are named and
+ * numbered as XWPFHeaderFooterPolicy names and numbers them.  Only the
+ * footnotes, which there are as many of as rows in the Footnotes sheet,
+ * and the chapter titles are kept until the end.  With shared headers
+ * only the first chapter's are written and every chapter refers to them,
+ * as {@link FormatWordMain#addHeadersAndFooters} does.</p>
+ *
+ * <p>This is not safe for threads; the chapters are appended in order by
+ * one thread.</p>
+ * @author Material Gain
+ * @since 2026 10
+ */
+public class DocxStreamWriter implements Closeable {
+  /** Namespace of the WordprocessingML elements */
+  public static final String W_NS = "http://schemas.openxmlformats.org/wordprocessingml/2006/main";
+  /** Namespace of r:id attributes */
+  public static final String R_NS = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+  private static final String RELS_NS = "http://schemas.openxmlformats.org/package/2006/relationships";
+  private static final String TYPES_NS = "http://schemas.openxmlformats.org/package/2006/content-types";
+  private static final String CONTENT_TYPES = "[Content_Types].xml";
+  private static final String OFFICE_DOCUMENT = R_NS + "/officeDocument";
+  private static final String CONTENT_TYPE = "application/vnd.openxmlformats-officedocument.wordprocessingml.";
+
+  private static final XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+  private static final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+  static {
+    inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+  }
+
+  /** Write the content of a part before the end of its root element */
+  private interface Addition {
+    void write(XMLStreamWriter out, Map<String, String> prefixes) throws XMLStreamException;
+  }
+
+  /** Bytes of each part of the template by name */
+  private final Map<String, byte[]> parts = new LinkedHashMap<String, byte[]>();
+  private final ZipOutputStream zip;
+  /** Name of the main document part, word/document.xml */
+  private final String mainPart;
+  /** Folder of the main document part, word/ */
+  private final String folder;
+  /** Relationships of the main document part */
+  private final String relsPart;
+  /** Footnotes part of the template, or null if it has none */
+  private String footnotesPart = null;
+  /** The template's document, read as far as where the chapters go */
+  private final XMLStreamReader template;
+  /** The new document, written as far as the chapters appended so far */
+  private final XMLStreamWriter xml;
+  /** Prefix of each namespace declared on the root of the document */
+  private final Map<String, String> docPrefixes = new HashMap<String, String>();
+  /** Id, type and target of each relationship to add */
+  private final List<String[]> newRels = new ArrayList<String[]>();
+  /** Name and content type of each part to add */
+  private final List<String[]> newParts = new ArrayList<String[]>();
+  /** Name, "hdr" or "ftr", and chapter title of each header and footer */
+  private final List<String[]> headerParts = new ArrayList<String[]>();
+  /** Footnotes of the chapters in order */
+  private final List<CTFtnEdn> footnotes = new ArrayList<CTFtnEdn>();
+  private int nextRelId = 1;
+  private int nextHeader = 1;
+  private int nextFooter = 1;
+  /** True to use the same headers and footers for every chapter */
+  private final boolean sharedHeaders;
+  /** Relationship ids of the shared header and footers once they are made */
+  private String[] sharedIds = null;
+
+  /** Copy the template into the new file as far as where the chapters go
+   * @param templateBytes bytes of the .docx template
+   * @param out where the new .docx goes, which is closed by {@link #close}
+   * @throws IOException if the template cannot be read or the file written
+   */
+  public DocxStreamWriter(byte[] templateBytes, OutputStream out) throws IOException {
+    this(templateBytes, out, false);
+  }
+
+  /** Copy the template into the new file as far as where the chapters go
+   * @param templateBytes bytes of the .docx template
+   * @param out where the new .docx goes, which is closed by {@link #close}
+   * @param sharedHeaders true to make one header and one pair of
+   * footers which every chapter refers to
+   * @throws IOException if the template cannot be read or the file written
+   */
+  public DocxStreamWriter(byte[] templateBytes, OutputStream out, boolean sharedHeaders)
+      throws IOException {
+    this.sharedHeaders = sharedHeaders;
+    try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(templateBytes))) {
+      for (ZipEntry entry = in.getNextEntry(); entry != null; entry = in.getNextEntry()) {
+	parts.put(entry.getName(), readAll(in));
+      }
+    }
+    zip = new ZipOutputStream(out);
+    try {
+      String main = null;
+      for (String[] rel : readRels("_rels/.rels")) {
+	if (OFFICE_DOCUMENT.equals(rel[1])) { main = rel[2].startsWith("/") ? rel[2].substring(1) : rel[2]; }
+      }
+      mainPart = (main == null) ? "word/document.xml" : main;
+      folder = mainPart.substring(0, mainPart.lastIndexOf('/') + 1);
+      relsPart = folder + "_rels/" + mainPart.substring(folder.length()) + ".rels";
+      for (String[] rel : readRels(relsPart)) {
+	if (rel[0].matches("rId\\d+")) {
+	  nextRelId = Math.max(nextRelId, Integer.parseInt(rel[0].substring(3)) + 1);
+	}
+	if ((R_NS + "/footnotes").equals(rel[1])) { footnotesPart = folder + rel[2]; }
+      }
+      if (!parts.containsKey(mainPart)) {
+	throw new IOException("The template has no " + mainPart);
+      }
+      for (Map.Entry<String, byte[]> part : parts.entrySet()) {
+	String name = part.getKey();
+	if (name.equals(mainPart) || name.equals(relsPart) || name.equals(CONTENT_TYPES)
+	    || name.equals(footnotesPart)) { continue; }
+	zip.putNextEntry(new ZipEntry(name));
+	zip.write(part.getValue());
+	zip.closeEntry();
+      }
+
+      zip.putNextEntry(new ZipEntry(mainPart));
+      xml = outputFactory.createXMLStreamWriter(new FilterOutputStream(zip) {
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException { zip.write(b, off, len); }
+	@Override
+	public void close() { /* the zip stays open for the next part */ }
+      }, "UTF-8");
+      this.template = inputFactory.createXMLStreamReader(new ByteArrayInputStream(parts.get(mainPart)));
+      xml.writeStartDocument("UTF-8", "1.0");
+      copyToBodyEnd();
+    } catch (XMLStreamException e) {
+      throw new IOException("Cannot copy the template: " + e.getMessage(), e);
+    }
+  }
+
+  private static byte[] readAll(InputStream in) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    for (int n = in.read(buffer); n > 0; n = in.read(buffer)) { bytes.write(buffer, 0, n); }
+    return bytes.toByteArray();
+  }
+
+  /** Read the relationships of a part
+   * @param name name of the .rels part
+   * @return id, type and target of each, empty if there is no such part
+   */
+  private List<String[]> readRels(String name) throws XMLStreamException {
+    List<String[]> rels = new ArrayList<String[]>();
+    byte[] bytes = parts.get(name);
+    if (bytes == null) { return rels; }
+    XMLStreamReader in = inputFactory.createXMLStreamReader(new ByteArrayInputStream(bytes));
+    while (in.hasNext()) {
+      if ((in.next() == XMLStreamConstants.START_ELEMENT)
+	  && "Relationship".equals(in.getLocalName())) {
+	rels.add(new String[] {in.getAttributeValue(null, "Id"),
+	    in.getAttributeValue(null, "Type"), in.getAttributeValue(null, "Target")});
+      }
+    }
+    in.close();
+    return rels;
+  }
+
+  /** Copy the template's document up to the last section properties of
+   * its body, or the end of the body if it has none, which is where
+   * XWPFDocument.createParagraph puts new paragraphs
+   */
+  private void copyToBodyEnd() throws XMLStreamException {
+    int depth = 0;
+    boolean inBody = false;
+    while (template.hasNext()) {
+      int event = template.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+	if (inBody && (depth == 2) && isW("sectPr")) { return; }
+	depth++;
+	if ((depth == 2) && isW("body")) { inBody = true; }
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+	if (inBody && (depth == 2)) { return; }
+	depth--;
+      }
+      copyEvent(template, xml, (depth == 1) && (event == XMLStreamConstants.START_ELEMENT)
+	  ? docPrefixes : null);
+    }
+    throw new XMLStreamException("The template's document has no body");
+  }
+
+  private boolean isW(String localName) {
+    return W_NS.equals(template.getNamespaceURI()) && localName.equals(template.getLocalName());
+  }
+
+  /** Copy the event a reader is at.  The prefixes of the root element are
+   * put in rootPrefixes, and w and r are declared on it if they are not.
+   * @param rootPrefixes null unless the event is the start of the root
+   */
+  private static void copyEvent(XMLStreamReader in, XMLStreamWriter out,
+      Map<String, String> rootPrefixes) throws XMLStreamException {
+    switch (in.getEventType()) {
+    case XMLStreamConstants.START_ELEMENT:
+      out.writeStartElement(nonNull(in.getPrefix()), in.getLocalName(), nonNull(in.getNamespaceURI()));
+      for (int i = 0; i < in.getNamespaceCount(); i++) {
+	String prefix = nonNull(in.getNamespacePrefix(i));
+	if (prefix.isEmpty()) {
+	  out.writeDefaultNamespace(in.getNamespaceURI(i));
+	} else {
+	  out.writeNamespace(prefix, in.getNamespaceURI(i));
+	}
+	if (rootPrefixes != null) { rootPrefixes.put(in.getNamespaceURI(i), prefix); }
+      }
+      if (rootPrefixes != null) {
+	declare(out, rootPrefixes, "w", W_NS);
+	declare(out, rootPrefixes, "r", R_NS);
+      }
+      for (int i = 0; i < in.getAttributeCount(); i++) {
+	String prefix = nonNull(in.getAttributePrefix(i));
+	if (prefix.isEmpty()) {
+	  out.writeAttribute(in.getAttributeLocalName(i), in.getAttributeValue(i));
+	} else {
+	  out.writeAttribute(prefix, in.getAttributeNamespace(i), in.getAttributeLocalName(i),
+	      in.getAttributeValue(i));
+	}
+      }
+      break;
+    case XMLStreamConstants.END_ELEMENT:
+      out.writeEndElement();
+      break;
+    case XMLStreamConstants.CHARACTERS:
+    case XMLStreamConstants.SPACE:
+      out.writeCharacters(in.getText());
+      break;
+    case XMLStreamConstants.CDATA:
+      out.writeCData(in.getText());
+      break;
+    case XMLStreamConstants.COMMENT:
+      out.writeComment(in.getText());
+      break;
+    case XMLStreamConstants.PROCESSING_INSTRUCTION:
+      out.writeProcessingInstruction(in.getPITarget(), in.getPIData());
+      break;
+    default:
+      /* The document start is written by the caller and its end is not needed */
+    }
+  }
+
+  private static void declare(XMLStreamWriter out, Map<String, String> prefixes,
+      String prefix, String namespace) throws XMLStreamException {
+    if (prefixes.containsKey(namespace) || prefixes.containsValue(prefix)) { return; }
+    out.writeNamespace(prefix, namespace);
+    prefixes.put(namespace, prefix);
+  }
+
+  private static String nonNull(String s) {
+    return (s == null) ? "" : s;
+  }
+
+  /** Write part of the document and let it go.  Its bookmarks and
+   * footnotes are numbered, its sections get their headers and footers
+   * and its paragraphs are written into the body.
+   * @param part the next part of the document
+   * @throws IOException if it cannot be written
+   */
+  public void append(ChapterFragment part) throws IOException {
+    part.number();
+    try {
+      for (int i = 0; i < part.headedSections.size(); i++) {
+	addHeadersAndFooters(part.headedSections.get(i), part.headerTitles.get(i));
+      }
+      for (CTP ctp : part.paragraphs) {
+	writeFragment(ctp, "p", xml, docPrefixes);
+      }
+    } catch (XMLStreamException e) {
+      throw new IOException("Cannot write the document: " + e.getMessage(), e);
+    }
+    for (XWPFFootnote footnote : part.footnotes) {
+      footnotes.add(footnote.getCTFtnEdn());
+    }
+  }
+
+  /** Refer to the headers and footers of a chapter from its section, as
+   * {@link FormatWordMain#addHeadersAndFooters} does in an XWPFDocument
+   */
+  private void addHeadersAndFooters(CTSectPr sectPr, String chapTitle) {
+    if (!sharedHeaders) {
+      refer(sectPr.addNewHeaderReference(), STHdrFtr.EVEN, newHeader("hdr", chapTitle));
+      refer(sectPr.addNewHeaderReference(), STHdrFtr.DEFAULT, newHeader("hdr", chapTitle));
+      refer(sectPr.addNewFooterReference(), STHdrFtr.DEFAULT, newHeader("ftr", chapTitle));
+      refer(sectPr.addNewFooterReference(), STHdrFtr.EVEN, newHeader("ftr", chapTitle));
+      return;
+    }
+    if (sharedIds == null) {
+      /* One header for odd and even pages, whose null title is the field
+       * which shows the chapter title */
+      sharedIds = new String[] {newHeader("hdr", null), newHeader("ftr", null), newHeader("ftr", null)};
+    }
+    refer(sectPr.addNewHeaderReference(), STHdrFtr.DEFAULT, sharedIds[0]);
+    refer(sectPr.addNewHeaderReference(), STHdrFtr.EVEN, sharedIds[0]);
+    refer(sectPr.addNewFooterReference(), STHdrFtr.DEFAULT, sharedIds[1]);
+    refer(sectPr.addNewFooterReference(), STHdrFtr.EVEN, sharedIds[2]);
+  }
+
+  private static void refer(CTHdrFtrRef ref, STHdrFtr.Enum type, String id) {
+    ref.setType(type);
+    ref.setId(id);
+  }
+
+  /** Add a header or footer part, which is written when the document is closed
+   * @param kind hdr or ftr
+   * @param chapTitle title in a header, or null for the field which shows it
+   * @return id of its relationship
+   */
+  private String newHeader(String kind, String chapTitle) {
+    boolean header = "hdr".equals(kind);
+    String name;
+    do {
+      name = header ? "header" + nextHeader++ : "footer" + nextFooter++;
+    } while (parts.containsKey(folder + name + ".xml"));
+    String id = addPart(name + ".xml", header ? "header" : "footer");
+    headerParts.add(new String[] {folder + name + ".xml", kind, chapTitle});
+    return id;
+  }
+
+  /** Add a part next to the main document with a relationship to it
+   * @param target file name of the part
+   * @param kind header, footer or footnotes, which names its relationship
+   * and content types
+   * @return id of the relationship
+   */
+  private String addPart(String target, String kind) {
+    String id = "rId" + nextRelId++;
+    newRels.add(new String[] {id, R_NS + "/" + kind, target});
+    newParts.add(new String[] {"/" + folder + target, CONTENT_TYPE + kind + "+xml"});
+    return id;
+  }
+
+  /** Write a paragraph or footnote made apart from the document
+   * @param fragment its XML, which is not in a document
+   * @param localName name of its element in the w namespace
+   * @param out where it goes
+   * @param prefixes prefix of each namespace declared on the root of the part
+   */
+  static void writeFragment(XmlObject fragment, String localName, XMLStreamWriter out,
+      Map<String, String> prefixes) throws XMLStreamException {
+    out.writeStartElement(prefixes.get(W_NS), localName, W_NS);
+    try (XmlCursor c = fragment.newCursor()) {
+      /* An element is written once it is known whether it is empty */
+      QName pending = null;
+      List<QName> names = new ArrayList<QName>();
+      List<String> values = new ArrayList<String>();
+      int depth = 0;
+      for (XmlCursor.TokenType token = c.toNextToken(); !token.isEnddoc(); token = c.toNextToken()) {
+	if (token.isAttr()) {
+	  if (pending == null) {
+	    /* An attribute of the fragment itself */
+	    writeAttribute(out, prefixes, c.getName(), c.getTextValue());
+	  } else {
+	    names.add(c.getName());
+	    values.add(c.getTextValue());
+	  }
+	  continue;
+	}
+	if (token.isNamespace() || token.isComment() || token.isProcinst()) { continue; }
+	if (pending != null) {
+	  String prefix = prefixFor(prefixes, pending.getNamespaceURI());
+	  if (token.isEnd()) {
+	    out.writeEmptyElement(prefix, pending.getLocalPart(), pending.getNamespaceURI());
+	  } else {
+	    out.writeStartElement(prefix, pending.getLocalPart(), pending.getNamespaceURI());
+	  }
+	  for (int i = 0; i < names.size(); i++) {
+	    writeAttribute(out, prefixes, names.get(i), values.get(i));
+	  }
+	  names.clear();
+	  values.clear();
+	  boolean empty = token.isEnd();
+	  pending = null;
+	  if (empty) {
+	    depth--;
+	    continue;
+	  }
+	}
+	if (token.isStart()) {
+	  pending = c.getName();
+	  depth++;
+	} else if (token.isText()) {
+	  out.writeCharacters(c.getChars());
+	} else if (token.isEnd()) {
+	  if (depth == 0) { break; }
+	  out.writeEndElement();
+	  depth--;
+	}
+      }
+    }
+    out.writeEndElement();
+  }
+
+  private static void writeAttribute(XMLStreamWriter out, Map<String, String> prefixes,
+      QName name, String value) throws XMLStreamException {
+    if (name.getNamespaceURI().isEmpty()) {
+      out.writeAttribute(name.getLocalPart(), value);
+    } else {
+      out.writeAttribute(prefixFor(prefixes, name.getNamespaceURI()), name.getNamespaceURI(),
+	  name.getLocalPart(), value);
+    }
+  }
+
+  private static String prefixFor(Map<String, String> prefixes, String namespace)
+      throws XMLStreamException {
+    if (XMLConstants.XML_NS_URI.equals(namespace)) { return XMLConstants.XML_NS_PREFIX; }
+    String prefix = prefixes.get(namespace);
+    if (prefix == null) {
+      throw new XMLStreamException("No prefix is declared for " + namespace);
+    }
+    return prefix;
+  }
+
+  /** Finish the document and write the parts which refer to what was
+   * appended, then close the file
+   * @throws IOException if it cannot be written
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      /* The rest of the template's document after the chapters */
+      copyEvent(template, xml, null);
+      while (template.hasNext()) {
+	template.next();
+	copyEvent(template, xml, null);
+      }
+      xml.writeEndDocument();
+      xml.flush();
+      zip.closeEntry();
+
+      for (String[] part : headerParts) {
+	writePart(part[0], part[1], (out, prefixes) -> writeHeader(out, part[1], part[2]));
+      }
+      if (footnotesPart != null) {
+	copyPart(footnotesPart, this::writeFootnotes);
+      } else if (!footnotes.isEmpty()) {
+	String name = "footnotes.xml";
+	for (int n = 1; parts.containsKey(folder + name); n++) { name = "footnotes" + n + ".xml"; }
+	addPart(name, "footnotes");
+	writePart(folder + name, "footnotes", this::writeFootnotes);
+      }
+      copyPart(relsPart, (out, prefixes) -> {
+	for (String[] rel : newRels) {
+	  out.writeEmptyElement(nonNull(prefixes.get(RELS_NS)), "Relationship", RELS_NS);
+	  out.writeAttribute("Id", rel[0]);
+	  out.writeAttribute("Target", rel[2]);
+	  out.writeAttribute("Type", rel[1]);
+	}
+      });
+      copyPart(CONTENT_TYPES, (out, prefixes) -> {
+	for (String[] part : newParts) {
+	  out.writeEmptyElement(nonNull(prefixes.get(TYPES_NS)), "Override", TYPES_NS);
+	  out.writeAttribute("ContentType", part[1]);
+	  out.writeAttribute("PartName", part[0]);
+	}
+      });
+    } catch (XMLStreamException e) {
+      throw new IOException("Cannot finish the document: " + e.getMessage(), e);
+    } finally {
+      zip.close();
+    }
+  }
+
+  /** Give up on the document and close the file, which is left unfinished */
+  public void abort() {
+    try {
+      zip.close();
+    } catch (IOException e) {
+      System.out.println("ERR closing " + mainPart + ": " + e.getMessage());
+    }
+  }
+
+  private void writeFootnotes(XMLStreamWriter out, Map<String, String> prefixes)
+      throws XMLStreamException {
+    for (CTFtnEdn footnote : footnotes) {
+      writeFragment(footnote, "footnote", out, prefixes);
+    }
+  }
+
+  /** Write a header or footer of a chapter as FormatWordMain.addHeadersAndFooters makes it
+   * @param chapTitle title in a header, or null for the field which shows it */
+  private static void writeHeader(XMLStreamWriter out, String kind, String chapTitle)
+      throws XMLStreamException {
+    out.writeStartElement("w", "p", W_NS);
+    out.writeStartElement("w", "pPr", W_NS);
+    out.writeEmptyElement("w", "pStyle", W_NS);
+    out.writeAttribute("w", W_NS, "val", "hdr".equals(kind) ? "Header" : "Footer");
+    out.writeEndElement();
+    if ("hdr".equals(kind) && (chapTitle == null)) {
+      out.writeEmptyElement("w", "fldSimple", W_NS);
+      out.writeAttribute("w", W_NS, "instr", FormatWordMain.HEADER_FIELD);
+    } else if ("hdr".equals(kind)) {
+      writeRun(out, chapTitle);
+    } else {
+      writeRun(out, FormatWordMain.FOOTER_LEFT);
+      writeRun(out, null);
+      out.writeEmptyElement("w", "fldSimple", W_NS);
+      out.writeAttribute("w", W_NS, "instr", "PAGE");
+      writeRun(out, null);
+      writeRun(out, FormatWordMain.FOOTER_RIGHT);
+    }
+    out.writeEndElement();
+  }
+
+  /** Write a run of text, with xml:space="preserve" where XWPFRun.setText
+   * would put it, or a run with a tab if the text is null */
+  private static void writeRun(XMLStreamWriter out, String text) throws XMLStreamException {
+    out.writeStartElement("w", "r", W_NS);
+    if (text == null) {
+      out.writeEmptyElement("w", "tab", W_NS);
+    } else {
+      out.writeStartElement("w", "t", W_NS);
+      if (!text.isEmpty() && (Character.isWhitespace(text.charAt(0))
+	  || Character.isWhitespace(text.charAt(text.length() - 1)))) {
+	out.writeAttribute(XMLConstants.XML_NS_PREFIX, XMLConstants.XML_NS_URI, "space", "preserve");
+      }
+      out.writeCharacters(text);
+      out.writeEndElement();
+    }
+    out.writeEndElement();
+  }
+
+  /** Write a new part whose root is a w element */
+  private void writePart(String name, String rootName, Addition content)
+      throws IOException, XMLStreamException {
+    zip.putNextEntry(new ZipEntry(name));
+    XMLStreamWriter out = outputFactory.createXMLStreamWriter(zip, "UTF-8");
+    out.writeStartDocument("UTF-8", "1.0");
+    out.writeStartElement("w", rootName, W_NS);
+    out.writeNamespace("w", W_NS);
+    Map<String, String> prefixes = new HashMap<String, String>();
+    prefixes.put(W_NS, "w");
+    content.write(out, prefixes);
+    out.writeEndElement();
+    out.writeEndDocument();
+    out.flush();
+    zip.closeEntry();
+  }
+
+  /** Copy a part of the template with more content at the end of its root
+   * element */
+  private void copyPart(String name, Addition addition) throws IOException, XMLStreamException {
+    byte[] bytes = parts.get(name);
+    if (bytes == null) {
+      throw new IOException("The template has no " + name);
+    }
+    zip.putNextEntry(new ZipEntry(name));
+    XMLStreamWriter out = outputFactory.createXMLStreamWriter(zip, "UTF-8");
+    XMLStreamReader in = inputFactory.createXMLStreamReader(new ByteArrayInputStream(bytes));
+    Map<String, String> prefixes = new HashMap<String, String>();
+    out.writeStartDocument("UTF-8", "1.0");
+    int depth = 0;
+    while (in.hasNext()) {
+      int event = in.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+	depth++;
+	if (depth == 1) {
+	  for (int i = 0; i < in.getNamespaceCount(); i++) {
+	    prefixes.put(in.getNamespaceURI(i), nonNull(in.getNamespacePrefix(i)));
+	  }
+	}
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+	if (depth == 1) { addition.write(out, prefixes); }
+	depth--;
+      }
+      copyEvent(in, out, null);
+    }
+    in.close();
+    out.writeEndDocument();
+    out.flush();
+    zip.closeEntry();
+  }
+}
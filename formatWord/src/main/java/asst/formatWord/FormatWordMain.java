@@ -1,7 +1,7 @@
 package asst.formatWord;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.math.BigInteger;
@@ -15,10 +15,12 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
-import org.apache.poi.ss.usermodel.Cell;
-import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.apache.poi.xwpf.model.XWPFHeaderFooterPolicy;
 import org.apache.poi.xwpf.usermodel.ParagraphAlignment;
@@ -28,8 +30,8 @@ import org.apache.poi.xwpf.usermodel.XWPFFooter;
 import org.apache.poi.xwpf.usermodel.XWPFHeader;
 import org.apache.poi.xwpf.usermodel.XWPFParagraph;
 import org.apache.poi.xwpf.usermodel.XWPFRun;
-import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTBookmark;
 import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTColumns;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTHdrFtrRef;
 import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTJc;
 import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTP;
 import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTPPr;
@@ -37,13 +39,18 @@ import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTPageMar;
 import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTPageNumber;
 import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTPageSz;
 import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTSectPr;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.STHdrFtr;
 import org.openxmlformats.schemas.wordprocessingml.x2006.main.STJc;
 import org.openxmlformats.schemas.wordprocessingml.x2006.main.STSectionMark;
 
+import asst.bible.CorpusFile;
+import asst.bible.VerseRef;
+import asst.bible.VerseSet;
+import asst.common.BuildManifest;
 import asst.common.DescribeArgs;
+import asst.common.FileWatcher;
 import asst.common.MainArgs;
 import asst.formatWord.utils.WordDocxUtils;
-import asst.hssf.SSU;
 import asst.hssf.WorkbookManager;
 
 /** Read input files and change words in them as specified by the
@@ -66,6 +73,13 @@ public class FormatWordMain {
   private static final BigInteger MARGIN_HEADER = BigInteger.valueOf(720);  // 0.5 inch
   private static final BigInteger MARGIN_FOOTER = BigInteger.valueOf(720);  // 0.5 inch
 
+  /** Left side of every footer */
+  public static final String FOOTER_LEFT = "ye, you, your, yours: plural";
+  /** Right side of every footer, after the page number */
+  public static final String FOOTER_RIGHT = "thee, thou, thy, thine: singular";
+  /** Field in the shared headers which shows the last chapter title on the page */
+  public static final String HEADER_FIELD = " STYLEREF \"Heading 1\" ";
+
   static {
     argDescs.put("help", "If \"+help\" is specified, nothing else is run.");
     argDescs.put("doIt", "\"+doIt\" must be set to take any action."
@@ -81,6 +95,21 @@ public class FormatWordMain {
     argDescs.put("count", "Tells how many input files to process.");
     argDescs.put("templateFile", "Path to a .docx template file with predefined styles."
 	+ " The generated paragraphs are put at the end of this file.");
+    argDescs.put("corpus", "Path to a corpus file holding all the books, read instead of"
+	+ " the .txt files in inputPath when it is given.  explanation.txt is still"
+	+ " read from inputPath.");
+    argDescs.put("force", "\"+force\" builds the document even if nothing it is made"
+	+ " from changed since the last run into outputPath.");
+    argDescs.put("threads", "Number of chapters whose verses are made at the same time."
+	+ " The document is the same no matter how many threads are used.");
+    argDescs.put("stream", "\"+stream\" writes the document into the .docx a chapter at a time"
+	+ " as it is made instead of building all of it in memory first, so a whole Bible"
+	+ " needs little memory.  The template parts are copied as they are.");
+    argDescs.put("sharedHeaders", "\"+sharedHeaders\" makes one header and one pair"
+	+ " of footers which every chapter uses, instead of four new parts per chapter.  The"
+	+ " header shows the chapter title with a STYLEREF field on the Heading1 title.");
+    argDescs.put("watch", "\"+watch\" keeps running and builds the document again whenever"
+	+ " the dictionary, the template or a .txt file in inputPath changes.  Stop it with Ctrl-C.");
   }
   /** +help is the default value so that the program explains
    * the parameters if it is called with no arguments. */
@@ -92,6 +121,12 @@ public class FormatWordMain {
       "templateFile=/Sync/Biblical/KJV/Gentle/GentleKJBNT.docx",
       "firstFile=40MAT.TXT",
       "count=50",
+      "threads=1",
+      "-stream",
+      "-sharedHeaders",
+      "corpus=",
+      "-force",
+      "-watch",
       "+help",
   };
 
@@ -99,15 +134,17 @@ public class FormatWordMain {
   public static int footnoteCounter = 1;  // not thread safe
   /** Bookmarks must be created starting from 1 */
   public static int bookmarkCounter = 1;  // not thread safe
-  /** Record all the footnotes to be inserted */
-  public static Map<String, String> footnotes = new HashMap<String, String>();
-  /** Record the verses which go into the table of contents.*/
-  public static Map<String, String> tocVerses = new HashMap<String, String>();
-
-  /** String that lists all verses that changed in format ddBBB c:v
-   * like the book, chapter, and verse flags at the beginning of a
-   * verse in the electronic bible. */
-  public static String verseChangeList = null;
+  /** Book names, footnotes and table of contents verses from the
+   * dictionary, for the document being built */
+  public static BookCatalog catalog = null;
+  /** True to use the same headers and footers for every chapter */
+  public static boolean sharedHeaders = false;
+  /** References to the shared header and footers once they are made */
+  static CTSectPr sharedHeaderRefs = null;
+
+  /** The verses that changed, and those each word change changed, read
+   * from explanation.txt */
+  public static ChangeExplanation changes = null;
 
   /**  List of file names which are to be ignored.
    */
@@ -116,6 +153,17 @@ public class FormatWordMain {
     skip_files.add("explanation.txt");
   }
 
+  /** How long the input must stay the same before a +watch run starts */
+  static final long QUIET_MILLIS = 500;
+
+  /** Name of the manifest in the output folder */
+  public static final String MANIFEST = "formatWord.manifest";
+
+  /** Sheets whose content goes into the document */
+  public static final String [] hashed_sheets = {
+      "BookNames", "Footnotes", "TOCVerses"
+  };
+
   /** List all sheets that must be found in the Excel spreadsheet*/
   public static final String [] needed_sheets = {
       "WordChanges", "BookNames", "Footnotes",
@@ -138,12 +186,10 @@ public class FormatWordMain {
       System.exit(0);
     }
 
-    String inputPath = (String)carg.get("inputPath");
     String outputPath = (String)carg.get("outputPath");
     String dictionaryFile = (String)carg.get("dictionary");
     String templateFile = (String)carg.get("templateFile");
-    String firstFile = (String)carg.get("firstFile");
-    int count = carg.getInt("count");
+    boolean force = carg.getBoolean("force");
 
 
     Path outputPlace = Paths.get(outputPath);
@@ -178,45 +224,233 @@ public class FormatWordMain {
       System.exit(1);
     }
 
+    if (carg.getBoolean("watch")) {
+      watch(carg, force);
+      return;
+    }
+    /* The workbook is closed before the document is made */
+    BookCatalog bookCatalog = loadCatalog(carg, dictionaryFile);
+    if (bookCatalog == null) { System.exit(1); }
+    try {
+      if (!buildDocument(carg, bookCatalog, readTemplate(templateFile), force)) { System.exit(1); }
+    } catch (Exception e) {
+      System.out.println("ERROR " + e.getMessage());
+      System.exit(1);
+    }
+  }
+
+  /** Stay running and build the document again whenever the dictionary,
+   * the template or a book or the explanation in inputPath changes.  The
+   * catalog of the dictionary and the bytes of the template are kept
+   * between runs and read again only when their files change, or for the
+   * catalog when there is a new book.
+   * @param carg the command line arguments
+   * @param force true to build the document on the first run even if
+   * nothing changed
+   */
+  static void watch(MainArgs carg, boolean force) {
+    Path dictionary = Paths.get((String)carg.get("dictionary")).toAbsolutePath().normalize();
+    Path template = Paths.get((String)carg.get("templateFile")).toAbsolutePath().normalize();
+    String corpusPath = (String)carg.get("corpus");
+    BookCatalog bookCatalog = null;
+    byte[] templateBytes = null;
+    try (FileWatcher watcher = new FileWatcher()) {
+      watcher.watchFile(dictionary);
+      watcher.watchFile(template);
+      /* explanation.txt is always read from inputPath */
+      watcher.watchFolder(Paths.get((String)carg.get("inputPath")), ".txt");
+      if ((corpusPath != null) && !corpusPath.isEmpty()) {
+	watcher.watchFile(Paths.get(corpusPath));
+      }
+      Set<Path> changed = new HashSet<Path>();
+      while (true) {
+	try {
+	  /* The sheets refer to verses by book abbreviation, so they are
+	   * read again when there is a new book */
+	  if (registerBooks(carg) || (bookCatalog == null) || changed.contains(dictionary)) {
+	    bookCatalog = loadCatalog(carg, dictionary.toString());
+	  }
+	  if ((templateBytes == null) || changed.contains(template)) {
+	    templateBytes = readTemplate(template.toString());
+	  }
+	  if (bookCatalog != null) {
+	    buildDocument(carg, bookCatalog, templateBytes, force);
+	    force = false;
+	  }
+	} catch (Exception e) {
+	  System.out.println("ERROR " + e.getMessage());
+	}
+	System.out.println("Watching " + dictionary + ", " + template
+	    + " and the books for changes.");
+	changed = watcher.await(QUIET_MILLIS);
+	System.out.println("Changed: " + changed);
+      }
+    } catch (IOException e) {
+      System.out.println("ERR watching files: " + e.getMessage());
+      System.exit(1);
+    } catch (InterruptedException e) {
+      System.out.println("Stopped watching.");
+    }
+  }
+
+  /** Read what the document needs from the dictionary and close it.  The
+   * books are registered with {@link VerseRef} first, since the sheets
+   * refer to verses by book abbreviation.
+   * @param carg the command line arguments
+   * @param dictionaryFile path to the .xlsx file
+   * @return the catalog, or null after saying why it cannot be read
+   */
+  static BookCatalog loadCatalog(MainArgs carg, String dictionaryFile) {
+    WorkbookManager wm = openDictionary(dictionaryFile);
+    if (wm == null) { return null; }
+    try {
+      registerBooks(carg);
+      return BookCatalog.load(wm);
+    } catch (Exception e) {
+      System.out.println("ERROR " + e.getMessage());
+      return null;
+    } finally {
+      closeDictionary(wm);
+    }
+  }
+
+  /** Remember the abbreviation of each book in inputPath, or in the
+   * corpus if there is one, from the names of the books
+   * @param carg the command line arguments
+   * @return true if a book was not known before
+   * @throws IOException if the books cannot be listed
+   */
+  static boolean registerBooks(MainArgs carg) throws IOException {
+    String before = knownBooks();
+    String corpusPath = (String)carg.get("corpus");
+    if ((corpusPath != null) && !corpusPath.isEmpty()) {
+      for (String name : CorpusFile.open(Paths.get(corpusPath)).getBookNames()) {
+	VerseRef.registerBook(name);
+      }
+    } else {
+      Path inputDir = Paths.get((String)carg.get("inputPath"));
+      if (!Files.isDirectory(inputDir)) { return false; }
+      try (java.util.stream.Stream<Path> stream = Files.list(inputDir)) {
+	stream.forEach(p -> VerseRef.registerBook(p.getFileName().toString()));
+      }
+    }
+    return !before.equals(knownBooks());
+  }
+
+  /**
+   * @return the abbreviation of every book number, null if it is not known
+   */
+  private static String knownBooks() {
+    StringBuilder sb = new StringBuilder();
+    for (int book = 1; book <= VerseRef.MAX_BOOK; book++) {
+      sb.append(VerseRef.abbrev(book)).append(' ');
+    }
+    return sb.toString();
+  }
+
+  /** Open the dictionary and check that it has every sheet which is needed
+   * @param dictionaryFile path to the .xlsx file
+   * @return the workbook manager with the workbook open, or null after
+   * saying why it cannot be opened
+   */
+  static WorkbookManager openDictionary(String dictionaryFile) {
     WorkbookManager wm = new WorkbookManager();
     wm.fileName = dictionaryFile;
     File file = new File(wm.fileName);
-
-    XSSFWorkbook wb = null;
-    int verseCount = 0;
     try {
       if (!file.canRead()) {
 	throw new RuntimeException("File " + wm.fileName + " cannot be read.");
       }
       /* This reads the entire sheet into memory.  It becomes effectively
-       * a RAM cache. */
-      wb = new XSSFWorkbook(file);
-      wm.wb = wb;
+       * a RAM cache.  The package is opened read only so that closing it
+       * does not write the dictionary back, which would look like an edit
+       * to +watch. */
+      wm.wb = new XSSFWorkbook(OPCPackage.open(file, PackageAccess.READ));
       for (String sname : needed_sheets) {
 	if (wm.pickSheet(sname) == null) {
 	  System.out.println("Spreadsheet has no sheet named " + sname + ".");
-	  System.exit(1);
+	  closeDictionary(wm);
+	  return null;
 	}
       }
       wm.makeFormatters();
-      loadFootnotes(wm);
-      loadTOCVerses(wm);
+      return wm;
+    } catch (Exception e) {
+      System.out.println("ERROR " + e.getMessage());
+      closeDictionary(wm);
+      return null;
+    }
+  }
 
-      Path inputDir = Paths.get(inputPath);
-      if (!Files.isDirectory(inputDir)) {
-	System.err.println("Input path is not a directory: " + inputDir);
-	System.exit(1);
-      }
-      Path crefFile = inputDir.resolve("explanation.txt");
-      List<String> cref = Files.readAllLines(crefFile, StandardCharsets.UTF_8);
-      /* The first line of the explanation tells how many verses changed.
-       * The second line is the underscore-separated list of verses that changed. */
-      verseChangeList = cref.get(1);
+  /** Close the workbook of a dictionary
+   * @param wm workbook manager, may be null
+   */
+  static void closeDictionary(WorkbookManager wm) {
+    try {
+      if ((wm != null) && (wm.wb != null)) { wm.wb.close(); }
+    } catch (Exception e) {
+      System.out.println("ERR closing work book " + e.getMessage());
+    }
+  }
+
+  /**
+   * @param templateFile path to the .docx template
+   * @return the bytes of the template
+   * @throws IOException if it cannot be read
+   */
+  static byte[] readTemplate(String templateFile) throws IOException {
+    File templateFileObj = new File(templateFile);
+    if (!templateFileObj.canRead()) {
+      throw new RuntimeException("Template file " + templateFile + " cannot be read.");
+    }
+    return Files.readAllBytes(templateFileObj.toPath());
+  }
 
-      // PrintWriter explanationWriter = new PrintWriter(new FileWriter(new File(outputDir.toFile(), "explanation.txt")));
+  /** Build the document from the books named by the command line
+   * arguments unless nothing it is made from changed since the last run.
+   * The footnote and bookmark numbers and the verse maps start over, so
+   * the document is the same however many have been built before it.
+   * @param carg the command line arguments
+   * @param bookCatalog what the document needs from the dictionary
+   * @param template bytes of the .docx template
+   * @param force true to build the document even if it is up to date
+   * @return false after saying why the document could not be built
+   * @throws Exception if a file cannot be read or written
+   */
+  static boolean buildDocument(MainArgs carg, BookCatalog bookCatalog, byte[] template,
+      boolean force) throws Exception {
+    String inputPath = (String)carg.get("inputPath");
+    String outputPath = (String)carg.get("outputPath");
+    String firstFile = (String)carg.get("firstFile");
+    int count = carg.getInt("count");
+    String corpusPath = (String)carg.get("corpus");
+    int threads = Math.max(1, carg.getInt("threads"));
+    Path outputPlace = Paths.get(outputPath);
 
-      int processed = 0;
-      List<Path> txtFiles = new ArrayList<>();
+    footnoteCounter = 1;
+    bookmarkCounter = 1;
+    WordDocxUtils.resetCounters();
+    catalog = bookCatalog;
+    sharedHeaders = carg.getBoolean("sharedHeaders");
+    sharedHeaderRefs = null;
+    Path inputDir = Paths.get(inputPath);
+    if (!Files.isDirectory(inputDir)) {
+      System.err.println("Input path is not a directory: " + inputDir);
+      return false;
+    }
+    Path crefFile = inputDir.resolve("explanation.txt");
+    List<String> cref = Files.readAllLines(crefFile, StandardCharsets.UTF_8);
+    changes = new ChangeExplanation(cref);
+
+    // PrintWriter explanationWriter = new PrintWriter(new FileWriter(new File(outputDir.toFile(), "explanation.txt")));
+
+    List<Path> txtFiles = new ArrayList<>();
+    CorpusFile corpus = null;
+    if ((corpusPath != null) && !corpusPath.isEmpty()) {
+      /* Every book comes from one memory mapped file */
+      corpus = CorpusFile.open(Paths.get(corpusPath));
+      for (String name : corpus.getBookNames()) { txtFiles.add(inputDir.resolve(name)); }
+    } else {
       java.util.stream.Stream<Path> stream = Files.list(inputDir);
       try {
 	stream.filter(p -> p.toString().toLowerCase().endsWith(".txt"))
@@ -224,18 +458,78 @@ public class FormatWordMain {
       } finally {
 	stream.close();
       }
+    }
 
-      txtFiles.sort((a, b) -> a.getFileName().toString().compareTo(b.getFileName().toString()));
+    txtFiles.sort((a, b) -> a.getFileName().toString().compareTo(b.getFileName().toString()));
+    /* The book abbreviations in the sheets are numbered by the file
+     * names, so the books have to be known before the sheets are read. */
+    for (Path inputFile : txtFiles) {
+      VerseRef.registerBook(inputFile.getFileName().toString());
+    }
 
-      // Open template document to preserve styles
-      File templateFileObj = new File(templateFile);
-      if (!templateFileObj.canRead()) {
-	throw new RuntimeException("Template file " + templateFile + " cannot be read.");
+    boolean foundFirst = firstFile == null || firstFile.isEmpty();
+    List<Path> books = new ArrayList<>();
+    for (Path inputFile : txtFiles) {
+      String fileName = inputFile.getFileName().toString();
+      if (skip_files.contains(fileName)) { continue; }
+
+      if (!foundFirst) {
+	if (fileName.equals(firstFile)) {
+	  foundFirst = true;
+	} else {
+	  continue;
+	}
+      }
+
+      if (books.size() >= count) {
+	break;
+      }
+      books.add(inputFile);
+    }
+
+    /* The document is made from the template, the explanation, three
+     * sheets and the books, with the options which change what is in it.
+     * If none of them changed since the last run, the document from that
+     * run is still good.  +stream and threads= make the same document. */
+    String newDocName = "GentleKJNewTestament.docx";
+    BuildManifest manifest = new BuildManifest(outputPlace.resolve(MANIFEST));
+    manifest.clear();
+    manifest.put("template", BuildManifest.hashBytes(template));
+    manifest.put("explanation", BuildManifest.hashLines(cref));
+    manifest.put("sharedHeaders", String.valueOf(sharedHeaders));
+    for (String sname : hashed_sheets) {
+      manifest.put("sheet." + sname, bookCatalog.sheetHashes.get(sname));
+    }
+    List<List<String>> bookLines = new ArrayList<>();
+    for (Path inputFile : books) {
+      String fileName = inputFile.getFileName().toString();
+      List<String> lines = (corpus != null) ? corpus.getLines(fileName)
+	  : Files.readAllLines(inputFile, StandardCharsets.UTF_8);
+      bookLines.add(lines);
+      manifest.put("in." + fileName, BuildManifest.hashLines(lines));
+    }
+    if (!force && manifest.isUnchanged()
+	&& Files.exists(outputPlace.resolve(newDocName))) {
+      System.out.println(newDocName + " is up to date.");
+      return true;
+    }
+
+    /* The template is opened as a document to make the paragraphs with.
+     * With +stream they are written into the file a chapter at a time and
+     * the document itself is never written, so only the chapters being
+     * made are in memory. */
+    XWPFDocument doc = new XWPFDocument(new ByteArrayInputStream(template));
+    File docFile = new File(outputPlace.toFile(), newDocName);
+    DocxStreamWriter stream = null;
+    boolean written = false;
+    try {
+      if (carg.getBoolean("stream")) {
+	stream = new DocxStreamWriter(template, new FileOutputStream(docFile), sharedHeaders);
       }
-      XWPFDocument doc = new XWPFDocument(new FileInputStream(templateFileObj));
+      ChapterFragment part = new ChapterFragment(doc);
 
       // Add section break to end the template's last section
-      XWPFParagraph templateEndPara = doc.createParagraph();
+      XWPFParagraph templateEndPara = part.createParagraph();
       CTP templateCtp = templateEndPara.getCTP();
       CTSectPr templateSectPr = templateCtp.addNewPPr().addNewSectPr();
       templateSectPr.addNewType().setVal(STSectionMark.CONTINUOUS);
@@ -245,130 +539,147 @@ public class FormatWordMain {
       pgNum.setFmt(org.openxmlformats.schemas.wordprocessingml.x2006.main.STNumberFormat.LOWER_ROMAN);
 
       setPageSizeAndMargins(templateSectPr);
+      emit(part, doc, stream);
 
-      boolean foundFirst = firstFile == null || firstFile.isEmpty();
-
-      for (Path inputFile : txtFiles) {
-	String fileName = inputFile.getFileName().toString();
-	if (skip_files.contains(fileName)) { continue; }
-
-	if (!foundFirst) {
-	  if (fileName.equals(firstFile)) {
-	    foundFirst = true;
-	  } else {
-	    continue;
-	  }
-	}
-
-	if (processed >= count) {
-	  break;
-	}
-
-	try {
-	  List<String> lines = Files.readAllLines(inputFile, StandardCharsets.UTF_8);
-	  String chapNumSt = fileName.substring(0, 2);
-	  int chapNum = Integer.valueOf(chapNumSt);
-
-	  startNextChapter(chapNum, wm, doc);
-	  for (String line : lines) {
-	    publishVerse(chapNumSt, line, wm, doc);
-	    verseCount++;
-	  }
-	  endTheChapter(chapNum, wm, doc);
+      if (!writeChapters(books, bookLines, doc, stream, threads)) { return false; }
 
-	  //Path outputFile = outputDir.resolve(inputFile.getFileName());
-	  //Files.write(outputFile, out, StandardCharsets.UTF_8);
-	  System.out.println("Processed: " + processed + " verses " + verseCount);
-	  processed++;
-	} catch (Exception e) {
-	  System.out.println("ERR processing " + inputFile + ": " + e.getMessage());
-	  e.printStackTrace();
-	  System.exit(1);
-	}
-      }
       /*  Finished generating all the chapters, time to start the index */
-      long spaces = verseChangeList.chars()
-	  .filter(ch -> ch == ' ')
-	  .count();
-      documentChapterStart(doc, "Lists of Word Changes",
-	  "" + spaces + " verses that were changed:");
-      addParagraphOfChangeLinks(doc, "", verseChangeList);
-      XWPFParagraph paragraph = doc.createParagraph();
+      part = new ChapterFragment(doc);
+      documentChapterStart(part, "Lists of Word Changes",
+	  "" + changes.verses.size() + " verses that were changed:");
+      addParagraphOfChangeLinks(part, "", changes.verses);
+      XWPFParagraph paragraph = part.createParagraph();
       paragraph.setStyle("Heading2");
       paragraph.createRun().setText("Verses changed by each archaic word replacement:");
 
-      end1ColumnSection(doc, "Updated verses");
-      for (int i = 2; i < cref.size(); i++) {
-	String aCref = cref.get(i);
-	int ix = aCref.indexOf(":");
-	if (ix < 0) { continue; }
-	addParagraphOfChangeLinks(doc, aCref.substring(0, ix),
-	    aCref.substring(ix + 2));
+      end1ColumnSection(part, "Updated verses");
+      for (int i = 0; i < changes.changeNames.size(); i++) {
+	addParagraphOfChangeLinks(part, changes.changeNames.get(i),
+	    changes.changeVerses.get(i));
       }
-      endTheChapter(0, wm, doc);
+      endTheChapter(part);
+      emit(part, doc, stream);
 
       // Set document to update fields (including table of contents) when opened
       // WordDocxUtils.setUpdateFieldsOnOpen(doc);
 
       // Write and close the document
-      String newDocName = "GentleKJNewTestament.docx";
-      try (FileOutputStream out = new FileOutputStream(new File(outputPlace.toFile(), newDocName))) {
-	doc.write(out);
+      if (stream != null) {
+	stream.close();
+      } else {
+	try (FileOutputStream out = new FileOutputStream(docFile)) {
+	  doc.write(out);
+	}
       }
-      doc.close();
-
-      // explanationWriter.close();
-      System.out.println("Wrote " + newDocName);
-    } catch (Exception e) {
-      System.out.println("ERROR " + e.getMessage());
-      System.exit(1);
+      written = true;
     } finally {
-      try {
-	if (wb != null) { wb.close(); }
-      } catch (Exception e) {
-	System.out.println("ERR closing work book " + e.getMessage());
+      if ((stream != null) && !written) {
+	/* Do not leave half a document which looks up to date */
+	stream.abort();
+	Files.deleteIfExists(docFile.toPath());
       }
+      doc.close();
     }
+    manifest.save();
+
+    // explanationWriter.close();
+    System.out.println("Wrote " + newDocName);
+    return true;
   }
 
-  /** Read the TOCVerses sheet and build a map of verse notes
-   * @param wm Workbook Manager
+  /** Make the chapters and put them into the document in order.  The
+   * verses of each chapter are made apart from the document on the pool,
+   * no more than twice as many chapters ahead as there are threads so
+   * that a +stream build keeps few chapters in memory.  Each chapter is
+   * put between its heading and its section end, which numbers its
+   * bookmarks and footnotes as if the chapters had been made one at a time.
+   * @param books the books, each of which is a chapter
+   * @param bookLines lines of each book
+   * @param doc the document the paragraphs are made for
+   * @param stream where the chapters are written with +stream, else null
+   * to put them into the document
+   * @param threads number of chapters made at the same time
+   * @return false after saying why a chapter could not be made
+   * @throws InterruptedException if the thread is interrupted
    */
-  public static void loadTOCVerses(WorkbookManager wm) {
-    Sheet tocs = wm.pickSheet("TocVerses");
-    for (int i = 1; i<=tocs.getLastRowNum(); i++) {
-      Row row = tocs.getRow(i);
-      String chapVerse = SSU.getFormattedCell(0, row);
-      if ((chapVerse == null) || chapVerse.startsWith("#")) { continue; }
-      String value = SSU.getFormattedCell(1, row);
-      tocVerses.put(chapVerse, value);
+  private static boolean writeChapters(List<Path> books, List<List<String>> bookLines,
+      XWPFDocument doc, DocxStreamWriter stream, int threads)
+	  throws InterruptedException {
+    int verseCount = 0;
+    int processed = 0;
+    int ahead = 2 * threads;
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    try {
+      List<ForkJoinTask<ChapterFragment>> tasks = new ArrayList<>();
+      for (int b = 0; b < books.size(); b++) {
+	while (tasks.size() < Math.min(books.size(), b + ahead)) {
+	  List<String> lines = bookLines.get(tasks.size());
+	  String chapNumSt = books.get(tasks.size()).getFileName().toString().substring(0, 2);
+	  tasks.add(pool.submit(() -> {
+	    ChapterFragment chapter = new ChapterFragment(doc);
+	    for (String line : lines) {
+	      publishVerse(chapNumSt, line, chapter);
+	    }
+	    return chapter;
+	  }));
+	}
+	Path inputFile = books.get(b);
+	String fileName = inputFile.getFileName().toString();
+	try {
+	  int chapNum = Integer.valueOf(fileName.substring(0, 2));
+
+	  ChapterFragment part = new ChapterFragment(doc);
+	  startNextChapter(chapNum, catalog, part);
+	  emit(part, doc, stream);
+	  emit(tasks.get(b).get(), doc, stream);
+	  /* Let the chapter go once it is in the document */
+	  tasks.set(b, null);
+	  verseCount += bookLines.get(b).size();
+	  part = new ChapterFragment(doc);
+	  endTheChapter(part);
+	  emit(part, doc, stream);
+
+	  System.out.println("Processed: " + processed + " verses " + verseCount);
+	  processed++;
+	} catch (ExecutionException e) {
+	  System.out.println("ERR processing " + inputFile + ": " + e.getCause().getMessage());
+	  e.getCause().printStackTrace();
+	  return false;
+	} catch (Exception e) {
+	  System.out.println("ERR processing " + inputFile + ": " + e.getMessage());
+	  e.printStackTrace();
+	  return false;
+	}
+      }
+    } finally {
+      pool.shutdownNow();
     }
+    return true;
   }
 
-  /** Read the footnote values from the footnote sheet in the workbook
-   * @param wm the workbook
+  /** Put part of the document into the document or write it out
+   * @param part paragraphs made for the document
+   * @param doc the document
+   * @param stream where the document is being written with +stream, else null
+   * @throws IOException if it cannot be written
    */
-  public static void loadFootnotes(WorkbookManager wm) {
-    Sheet feet = wm.pickSheet("Footnotes");
-    for (int i = 1; i<=feet.getLastRowNum(); i++) {
-      Row row = feet.getRow(i);
-      String chapVerse = SSU.getFormattedCell(0, row);
-      if ((chapVerse == null) || chapVerse.startsWith("#")) { continue; }
-      String value = SSU.getFormattedCell(1, row)
-	  + " " +SSU.getFormattedCell(2, row);
-      footnotes.put(chapVerse, value);
+  private static void emit(ChapterFragment part, XWPFDocument doc, DocxStreamWriter stream)
+      throws IOException {
+    if (stream != null) {
+      stream.append(part);
+    } else {
+      part.appendTo(doc);
     }
   }
 
   /** Add a list of hyperlinks to the verses that were changed.
-   * @param doc
+   * @param part where the paragraph goes
    * @param change Name of the change, might be blank
-   * @param verseChangeList underscore-separated list of verse references.
-   * The last character might be an underscore.
+   * @param verses the verses, which are linked to in canonical order
    */
-  public static void addParagraphOfChangeLinks(XWPFDocument doc, String change, String verseChangeList) {
+  public static void addParagraphOfChangeLinks(ChapterFragment part, String change, VerseSet verses) {
     // Create paragraph in style FAH
-    XWPFParagraph paragraph = doc.createParagraph();
+    XWPFParagraph paragraph = part.createParagraph();
     paragraph.setStyle("FAH");
 
     // If change is non-empty, add it followed by a space
@@ -377,18 +688,13 @@ public class FormatWordMain {
       run.setText(change + " ");
     }
 
-    /* Split verseChangeList on underscores
-     * and create hyperlinks for each bookmark */
-    String[] bookmarks = verseChangeList.split("_");
-    for (String bookmark : bookmarks) {
-      if (bookmark != null && !bookmark.isEmpty()) {
-	String bookMarkLabel = bookmark.substring(2); // Skip the 2-digit book number
-	String bookmarkName = bookmark.replace(' ', '_'); // Replace spaces with underscores for bookmark name
-	// Create hyperlink to the bookmark within the document
-	WordDocxUtils.addHyperlinkToBookmark(paragraph, bookmarkName, bookMarkLabel);
-	// Add space after hyperlink
-	paragraph.createRun().setText("  ");
-      }
+    /* Create hyperlinks for each bookmark */
+    for (int i = 0; i < verses.size(); i++) {
+      int ref = verses.get(i);
+      // Create hyperlink to the bookmark within the document
+      WordDocxUtils.addHyperlinkToBookmark(paragraph, VerseRef.toBookmark(ref), VerseRef.format(ref));
+      // Add space after hyperlink
+      paragraph.createRun().setText("  ");
     }
   }
 
@@ -410,9 +716,9 @@ public class FormatWordMain {
     pageMar.setFooter(MARGIN_FOOTER);
   }
 
-  private static void endTheChapter(int chapNum, WorkbookManager wm, XWPFDocument doc) {
+  private static void endTheChapter(ChapterFragment part) {
     // End the 2-column section by creating a paragraph with section properties
-    XWPFParagraph endSectionPara = doc.createParagraph();
+    XWPFParagraph endSectionPara = part.createParagraph();
     CTP ctp = endSectionPara.getCTP();
     CTSectPr sectPr = ctp.addNewPPr().addNewSectPr();
 
@@ -430,28 +736,28 @@ public class FormatWordMain {
 
   /** Add paragraphs and headings to start the next chapter of the book
    * @param chapNum Chapter number
-   * @param wm Workbook manager
-   * @param doc .docx file
+   * @param bookCatalog book names and titles
+   * @param part where the paragraphs go
    */
-  public static void startNextChapter(int chapNum, WorkbookManager wm, XWPFDocument doc) {
+  public static void startNextChapter(int chapNum, BookCatalog bookCatalog, ChapterFragment part) {
     /* Start the new chapter in a new one-column section.  */
     /* The chapter title is used for the page headers */
-    String chapTitle = getChapterTitle(wm, chapNum);
-    String chapComment = getChapterIntro(wm, chapNum);
+    String chapTitle = bookCatalog.getChapterTitle(chapNum);
+    String chapComment = bookCatalog.getChapterIntro(chapNum);
 
-    documentChapterStart(doc, chapTitle, chapComment);
+    documentChapterStart(part, chapTitle, chapComment);
 
-    end1ColumnSection(doc, chapTitle);
+    end1ColumnSection(part, chapTitle);
   }
 
   /**The one-column chapter heading needs to be ended so that
    * the following 2-column section can appear.
-   * @param doc The document
+   * @param part where the paragraph goes
    * @param chapTitle Chapter title to be used for the page headers
    */
-  public static void end1ColumnSection(XWPFDocument doc, String chapTitle) {
+  public static void end1ColumnSection(ChapterFragment part, String chapTitle) {
     // Create empty paragraph that will end the 1-column section and start 2-column section
-    XWPFParagraph columnBreakPara = doc.createParagraph();
+    XWPFParagraph columnBreakPara = part.createParagraph();
     CTP columnCtp = columnBreakPara.getCTP();
     CTSectPr columnSectPr = columnCtp.addNewPPr().addNewSectPr();
 
@@ -469,22 +775,53 @@ public class FormatWordMain {
     CTPageNumber pgNum = columnSectPr.addNewPgNumType();
     pgNum.setFmt(org.openxmlformats.schemas.wordprocessingml.x2006.main.STNumberFormat.DECIMAL);
 
+    /* The headers are made when the section is put into the document */
+    part.addHeaders(columnSectPr, chapTitle);
+  }
+
+  /** Make the headers and footers of a chapter and refer to them from
+   * its one-column section.  With +sharedHeaders they are made for the
+   * first chapter only, and the other chapters refer to the same parts.
+   * @param doc The document
+   * @param columnSectPr section properties which end the chapter heading
+   * @param chapTitle Chapter title to be used for the page headers
+   */
+  static void addHeadersAndFooters(XWPFDocument doc, CTSectPr columnSectPr, String chapTitle) {
+    if (sharedHeaders && (sharedHeaderRefs != null)) {
+      for (CTHdrFtrRef ref : sharedHeaderRefs.getHeaderReferenceArray()) {
+	columnSectPr.addNewHeaderReference().set(ref);
+      }
+      for (CTHdrFtrRef ref : sharedHeaderRefs.getFooterReferenceArray()) {
+	columnSectPr.addNewFooterReference().set(ref);
+      }
+      return;
+    }
     // Create headers for this section with explicit references to prevent inheritance
     XWPFHeaderFooterPolicy policy = new XWPFHeaderFooterPolicy(doc, columnSectPr);
 
-    // Even page header: chapter title
-    XWPFHeader evenHeader = policy.createHeader(XWPFHeaderFooterPolicy.EVEN);
-    XWPFParagraph evenPara = evenHeader.createParagraph();
-    evenPara.setStyle("Header");
-    XWPFRun evenRun = evenPara.createRun();
-    evenRun.setText(chapTitle);
-
-    // Odd page header: tab + chapter title except that these are centered
-    XWPFHeader oddHeader = policy.createHeader(XWPFHeaderFooterPolicy.DEFAULT);
-    XWPFParagraph oddPara = oddHeader.createParagraph();
-    oddPara.setStyle("Header");
-    //evenRun.addTab();
-    oddPara.createRun().setText(chapTitle);
+    if (sharedHeaders) {
+      /* One header for odd and even pages */
+      XWPFHeader header = policy.createHeader(XWPFHeaderFooterPolicy.DEFAULT);
+      XWPFParagraph headerPara = header.createParagraph();
+      headerPara.setStyle("Header");
+      addHeaderTitle(headerPara, chapTitle);
+      CTHdrFtrRef evenRef = columnSectPr.addNewHeaderReference();
+      evenRef.setType(STHdrFtr.EVEN);
+      evenRef.setId(doc.getRelationId(header));
+    } else {
+      // Even page header: chapter title
+      XWPFHeader evenHeader = policy.createHeader(XWPFHeaderFooterPolicy.EVEN);
+      XWPFParagraph evenPara = evenHeader.createParagraph();
+      evenPara.setStyle("Header");
+      addHeaderTitle(evenPara, chapTitle);
+
+      // Odd page header: tab + chapter title except that these are centered
+      XWPFHeader oddHeader = policy.createHeader(XWPFHeaderFooterPolicy.DEFAULT);
+      XWPFParagraph oddPara = oddHeader.createParagraph();
+      oddPara.setStyle("Header");
+      //evenRun.addTab();
+      addHeaderTitle(oddPara, chapTitle);
+    }
 
     // Create footer for odd pages
     XWPFFooter oddFooter = policy.createFooter(XWPFHeaderFooterPolicy.DEFAULT);
@@ -493,7 +830,7 @@ public class FormatWordMain {
     
     // Left text
     XWPFRun oddLeftRun = oddFooterPara.createRun();
-    oddLeftRun.setText("ye, you, your, yours: plural");
+    oddLeftRun.setText(FOOTER_LEFT);
     
     // Tab to center
     XWPFRun oddTabRun1 = oddFooterPara.createRun();
@@ -508,7 +845,7 @@ public class FormatWordMain {
     
     // Right text
     XWPFRun oddRightRun = oddFooterPara.createRun();
-    oddRightRun.setText("thee, thou, thy, thine: singular");
+    oddRightRun.setText(FOOTER_RIGHT);
 
     // Create footer for even pages (same content)
     XWPFFooter evenFooter = policy.createFooter(XWPFHeaderFooterPolicy.EVEN);
@@ -517,7 +854,7 @@ public class FormatWordMain {
     
     // Left text
     XWPFRun evenLeftRun = evenFooterPara.createRun();
-    evenLeftRun.setText("ye, you, your, yours: plural");
+    evenLeftRun.setText(FOOTER_LEFT);
     
     // Tab to center
     XWPFRun evenTabRun1 = evenFooterPara.createRun();
@@ -532,18 +869,33 @@ public class FormatWordMain {
     
     // Right text
     XWPFRun evenRightRun = evenFooterPara.createRun();
-    evenRightRun.setText("thee, thou, thy, thine: singular");
+    evenRightRun.setText(FOOTER_RIGHT);
+
+    if (sharedHeaders) { sharedHeaderRefs = (CTSectPr)columnSectPr.copy(); }
+  }
+
+  /** Put the chapter title into a header, or with +sharedHeaders a field
+   * which shows the title of the chapter on the page
+   * @param para paragraph of the header
+   * @param chapTitle Chapter title
+   */
+  private static void addHeaderTitle(XWPFParagraph para, String chapTitle) {
+    if (sharedHeaders) {
+      para.getCTP().addNewFldSimple().setInstr(HEADER_FIELD);
+    } else {
+      para.createRun().setText(chapTitle);
+    }
   }
 
   /** Create a 1-column chapter start with a H1 paragraph and an
    * optional comment.
-   * @param doc Document
+   * @param part where the paragraphs go
    * @param chapTitle Chapter title to go into the TOC
    * @param chapComment Optional chapter introduction
    */
-  public static void documentChapterStart(XWPFDocument doc, String chapTitle, String chapComment) {
+  public static void documentChapterStart(ChapterFragment part, String chapTitle, String chapComment) {
     // Add chapter title as centered Heading1 paragraph
-    XWPFParagraph titlePara = doc.createParagraph();
+    XWPFParagraph titlePara = part.createParagraph();
     titlePara.setStyle("Heading1");
 
     // Set alignment at the XML level to work with the style
@@ -555,40 +907,24 @@ public class FormatWordMain {
 
     // Add chapter comment if present
     if (chapComment != null && !chapComment.isEmpty()) {
-      XWPFParagraph commentPara = doc.createParagraph();
+      XWPFParagraph commentPara = part.createParagraph();
       commentPara.setStyle("FAH");
       commentPara.createRun().setText(chapComment);
     }
   }
 
-  private static String getChapterIntro(WorkbookManager wm, int chapNum) {
-    Sheet sheet = wm.wb.getSheet("BookNames");
-    Row row = sheet.getRow(chapNum);
-    Cell cell = row.getCell(3);
-    if (cell == null) { return ""; }
-    return cell.getStringCellValue();
-  }
-
-  private static String getChapterTitle(WorkbookManager wm, int chapNum) {
-    Sheet sheet = wm.wb.getSheet("BookNames");
-    Row row = sheet.getRow(chapNum);
-    String bookName = row.getCell(1).getStringCellValue();
-    String chapterTitle = row.getCell(2).getStringCellValue();
-    return chapterTitle.replace("_", bookName);
-  }
-
   /** Given one verse, publish it as called for in the spreadsheet
-   * If the 2-digit book number and the 3-character book abbreviation and
-   * the chapter number : verse number are found in the verseChangedList,
-   * the paragraph containing the verse gets a bookmark.
+   * If the verse is one of those explanation.txt lists as changed, the
+   * paragraph containing the verse gets a bookmark which the lists of
+   * changes link to.
    * @param bkno 2-digit book number
    * @param line verse with chapter abbreviation, space, chapter:verse 2 spaces,
    * then the verse text.
-   * @param wm workbook manager
-   * @param doc Word .docx file being generated
+   * @param chapter the chapter being made, whose paragraphs go into the
+   * document when it is appended
    * @return modified line of text
    */
-  public static String publishVerse(String bkno, String line, WorkbookManager wm, XWPFDocument doc) {
+  public static String publishVerse(String bkno, String line, ChapterFragment chapter) {
     // Parse the verse reference (e.g., "LUK 1:1")
     if (line.length() < 7) {
       return null;
@@ -596,10 +932,9 @@ public class FormatWordMain {
     int spaceIndex = line.indexOf("  ");
     if (spaceIndex == -1) { return null; }
     String chapVerse = line.substring(0, spaceIndex);
-    String bookmark = bkno + chapVerse;
-    if (verseChangeList.indexOf(bookmark + "_") < 0) {
-      bookmark = null;
-    }
+    int ref = VerseRef.parse(bkno, chapVerse);
+    /* The bookmark is named as the links to it are */
+    String bookmark = changes.isChanged(ref) ? VerseRef.toBookmark(ref) : null;
     // Extract chapter and verse numbers and text
     String[] parts = line.substring(4).split(":", 2);
     if (parts.length < 2) {
@@ -618,7 +953,7 @@ public class FormatWordMain {
     String verseNum = remaining.substring(0, spaceIndex);
     String verseText = remaining.substring(spaceIndex + 2); // Skip the spaces after verse number
 
-    String footnoteData = footnotes.get(chapVerse);
+    String footnoteData = catalog.footnotes.get(ref);
     String footnoteWord = null;
     String footnoteText = null;
     int footnoteWhere = 0;
@@ -637,7 +972,7 @@ public class FormatWordMain {
     // If verse 1, add chapter heading and verse with drop cap
     if ("1".equals(verseNum)) {
       // Add chapter heading
-      XWPFParagraph chapterPara = doc.createParagraph();
+      XWPFParagraph chapterPara = chapter.createParagraph();
       chapterPara.setAlignment(ParagraphAlignment.CENTER);
 
       // Set "keep with next" paragraph attribute
@@ -649,20 +984,20 @@ public class FormatWordMain {
       run.setText("Chapter " + chapterNum);
 
       /* The toc note and link come before the actual verse  */
-      String tocNote = tocVerses.get(chapVerse);
+      String tocNote = catalog.tocVerses.get(ref);
       if (tocNote != null) {
         int ix = tocNote.indexOf("_");
         if (ix < 0) {
-  	WordDocxUtils.addSplitHeading2Para(doc, tocNote, "");
+  	chapter.addSplitHeading2Para(tocNote, "");
         } else {
-  	WordDocxUtils.addSplitHeading2Para(doc, " " + tocNote.substring(0, ix), tocNote.substring(ix+1));
+  	chapter.addSplitHeading2Para(" " + tocNote.substring(0, ix), tocNote.substring(ix+1));
         }
       }
 
       // Add verse with superscript verse number  // TODO drop cap
       // If bookmark is not null, it is a bookmark that must be set.
       if (verseText.length() > 0) {
-	XWPFParagraph versePara = doc.createParagraph();
+	XWPFParagraph versePara = chapter.createParagraph();
 	versePara.setStyle("FAH");
 
 	// Add superscript verse number
@@ -672,20 +1007,20 @@ public class FormatWordMain {
 
 	// Add verse text
 	if (footnoteData != null) {
-	  WordDocxUtils.addFootnote(versePara, doc, verseText,
+	  chapter.addFootnote(versePara, verseText,
 	      footnoteWhere, footnoteText);
 	} else {
 	  XWPFRun textRun = versePara.createRun();
 	  textRun.setText(verseText);
 	}
 	if (bookmark != null) {
-	  setBookmark(versePara, bookmark);
+	  chapter.setBookmark(versePara, bookmark);
 	}
       }
     } else {
       // Add verse with superscript verse number
       if (verseText.length() > 0) {
-	XWPFParagraph versePara = doc.createParagraph();
+	XWPFParagraph versePara = chapter.createParagraph();
 	versePara.setStyle("FAH");
 
 	// Add superscript verse number
@@ -695,26 +1030,17 @@ public class FormatWordMain {
 
 	// Add verse text
 	if (footnoteData != null) {
-	  WordDocxUtils.addFootnote(versePara, doc, verseText,
+	  chapter.addFootnote(versePara, verseText,
 	      footnoteWhere, footnoteText);
 	} else {
 	  XWPFRun textRun = versePara.createRun();
 	  textRun.setText(verseText);
 	}
 	if (bookmark != null) {
-	  setBookmark(versePara, bookmark);
+	  chapter.setBookmark(versePara, bookmark);
 	}
       }
     }
     return null;
   }
-
-  private static void setBookmark(XWPFParagraph para, String bookmarkName) {
-    CTBookmark bookmarkStart = para.getCTP().addNewBookmarkStart();
-    bookmarkStart.setId(BigInteger.valueOf(bookmarkCounter));
-    bookmarkStart.setName(bookmarkName);
-
-    para.getCTP().addNewBookmarkEnd().setId(BigInteger.valueOf(bookmarkCounter));
-    bookmarkCounter++;
-  }
 }
@@ -27,6 +27,20 @@ public class WordDocxUtils {
   private static int footnoteCounter = 1;  // not thread safe
   private static int bookmarkCounter = 1;  // not thread safe
 
+  /** Number footnotes and bookmarks from one again, before starting
+   * another document in the same run of the program */
+  public static void resetCounters() {
+    footnoteCounter = 1;
+    bookmarkCounter = 1;
+  }
+
+  /** Take the next footnote number, for footnotes which are made apart
+   * from the document and numbered as they are put into it
+   * @return the number */
+  public static int nextFootnoteId() {
+    return footnoteCounter++;
+  }
+
   /** Superscript spell */
   public static XWPFParagraph addSuperscriptParagraph(XWPFDocument doc,
       String superText,
@@ -0,0 +1,74 @@
+package asst.formatWord;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import asst.bible.VerseRef;
+import asst.hssf.WorkbookManager;
+
+/** Check that the catalog holds what the document needs from the
+ * dictionary once the workbook is closed.
+ * @author Material Gain
+ * @since 2026 10
+ */
+public class BookCatalogTest {
+
+  private WorkbookManager wm;
+
+  private static void addRow(Sheet sheet, int rowNum, String... cells) {
+    Row row = sheet.createRow(rowNum);
+    for (int i = 0; i < cells.length; i++) {
+      if (cells[i] != null) { row.createCell(i).setCellValue(cells[i]); }
+    }
+  }
+
+  @BeforeEach
+  public void setUp() {
+    VerseRef.registerBook(40, "MAT");
+    XSSFWorkbook wb = new XSSFWorkbook();
+    Sheet names = wb.createSheet("BookNames");
+    addRow(names, 0, "#Abbrev");
+    addRow(names, 40, "MAT", "Matthew", "The Gospel of _", "Intro to Matthew");
+    addRow(names, 41, "MRK", "Mark", "The Gospel of _");
+    Sheet feet = wb.createSheet("Footnotes");
+    addRow(feet, 0, "#Verse");
+    addRow(feet, 1, "MAT 1:2", "the", "A footnote on the.");
+    addRow(feet, 2, "#MAT 1:3", "and", "Commented out.");
+    Sheet tocs = wb.createSheet("TOCVerses");
+    addRow(tocs, 0, "#Verse");
+    addRow(tocs, 1, "MAT 2:1", "Wise men");
+    wb.createSheet("WordChanges");
+    wm = new WorkbookManager();
+    wm.wb = wb;
+  }
+
+  @AfterEach
+  public void tearDown() throws Exception {
+    wm.wb.close();
+  }
+
+  @Test
+  public void testLoad() throws Exception {
+    BookCatalog catalog = BookCatalog.load(wm);
+    wm.wb.close();
+
+    assertEquals("Matthew", catalog.getBookName(40));
+    assertEquals("The Gospel of Matthew", catalog.getChapterTitle(40));
+    assertEquals("Intro to Matthew", catalog.getChapterIntro(40));
+    assertEquals("", catalog.getChapterIntro(41));
+    assertEquals("the A footnote on the.", catalog.footnotes.get(VerseRef.pack(40, 1, 2)));
+    assertEquals(1, catalog.footnotes.size(), "comment rows are left out");
+    assertEquals("Wise men", catalog.tocVerses.get(VerseRef.pack(40, 2, 1)));
+    for (String sname : FormatWordMain.hashed_sheets) {
+      assertNotNull(catalog.sheetHashes.get(sname));
+    }
+    assertThrows(IllegalArgumentException.class, () -> catalog.getChapterTitle(42));
+    assertThrows(UnsupportedOperationException.class, () -> catalog.footnotes.clear());
+  }
+}
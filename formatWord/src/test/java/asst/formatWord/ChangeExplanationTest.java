@@ -0,0 +1,52 @@
+package asst.formatWord;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import asst.bible.VerseRef;
+
+/** Check that explanation.txt is read into sets of changed verses.
+ * @author Material Gain
+ * @since 2026 10
+ */
+public class ChangeExplanationTest {
+
+  @Test
+  public void testRead() {
+    ChangeExplanation changes = new ChangeExplanation(Arrays.asList(
+	"#2 files processed, 3 verses changed out of 9.",
+	"40MAT 1:1_40MAT 1:10_41MRK 2:3_",
+	"anguish -> pain: 41MRK 2:3_40MAT 1:10_",
+	"not a change",
+	"thee -> you: "));
+    assertEquals(3, changes.verses.size());
+    assertEquals(VerseRef.pack(40, 1, 1), changes.verses.get(0));
+    assertEquals(VerseRef.pack(40, 1, 10), changes.verses.get(1));
+    assertTrue(changes.isChanged(VerseRef.pack(41, 2, 3)));
+    assertFalse(changes.isChanged(VerseRef.pack(40, 1, 2)));
+    assertFalse(changes.isChanged(VerseRef.NONE));
+
+    assertEquals(Arrays.asList("anguish -> pain", "thee -> you"), changes.changeNames);
+    assertEquals(2, changes.changeVerses.get(0).size());
+    assertEquals(VerseRef.pack(40, 1, 10), changes.changeVerses.get(0).get(0), "canonical order");
+    assertEquals(0, changes.changeVerses.get(1).size());
+  }
+
+  @Test
+  public void testBookmarkMatchesLink() {
+    ChangeExplanation changes = new ChangeExplanation(Arrays.asList("", "40MAT 1:18_"));
+    int ref = VerseRef.parse("40", "MAT 1:18");
+    assertTrue(changes.isChanged(ref));
+    assertEquals("40MAT_1:18", VerseRef.toBookmark(ref));
+  }
+
+  @Test
+  public void testShortExplanation() {
+    ChangeExplanation changes = new ChangeExplanation(Arrays.asList("#0 files processed"));
+    assertEquals(0, changes.verses.size());
+    assertTrue(changes.changeNames.isEmpty());
+  }
+}
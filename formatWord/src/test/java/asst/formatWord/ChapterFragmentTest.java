@@ -0,0 +1,131 @@
+package asst.formatWord;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTBody;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTFtnEdn;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTP;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTSectPr;
+
+import asst.formatWord.utils.WordDocxUtils;
+
+/** Check that chapters made apart from the document are numbered as if
+ * they had been made in it one after another.
+ * @author Material Gain
+ * @since 2026 10
+ */
+public class ChapterFragmentTest {
+
+  private XWPFDocument doc;
+
+  @BeforeEach
+  public void setUp() {
+    doc = new XWPFDocument();
+    FormatWordMain.bookmarkCounter = 1;
+    WordDocxUtils.resetCounters();
+  }
+
+  @AfterEach
+  public void tearDown() throws Exception {
+    FormatWordMain.sharedHeaders = false;
+    FormatWordMain.sharedHeaderRefs = null;
+    doc.close();
+  }
+
+  private static ChapterFragment makeChapter(XWPFDocument doc, String bookmark, String note) {
+    ChapterFragment chapter = new ChapterFragment(doc);
+    XWPFParagraph para = chapter.createParagraph();
+    para.setStyle("FAH");
+    chapter.addFootnote(para, "In the beginning", 6, note);
+    chapter.setBookmark(para, bookmark);
+    chapter.addSplitHeading2Para("Heading", "and more");
+    return chapter;
+  }
+
+  @Test
+  public void testAppendInOrder() {
+    /* Made in the other order, as threads might finish them */
+    ChapterFragment second = makeChapter(doc, "41MRK 1:1", "Second note");
+    ChapterFragment first = makeChapter(doc, "40MAT 1:1", "First note");
+    assertEquals(3, first.size());
+    assertTrue(doc.getParagraphs().isEmpty(), "nothing is in the document until it is appended");
+
+    first.appendTo(doc);
+    second.appendTo(doc);
+    CTBody body = doc.getDocument().getBody();
+    assertEquals(6, body.sizeOfPArray());
+    CTP p = body.getPArray(0);
+    assertEquals("40MAT 1:1", p.getBookmarkStartArray(0).getName());
+    assertEquals(1, p.getBookmarkStartArray(0).getId().intValue());
+    assertEquals(1, p.getBookmarkEndArray(0).getId().intValue());
+    assertEquals("In the", p.getRArray(0).getTArray(0).getStringValue());
+    assertEquals(1, p.getRArray(1).getFootnoteReferenceArray(0).getId().intValue());
+    assertEquals(" beginning", p.getRArray(2).getTArray(0).getStringValue());
+    p = body.getPArray(3);
+    assertEquals("41MRK 1:1", p.getBookmarkStartArray(0).getName());
+    assertEquals(2, p.getBookmarkStartArray(0).getId().intValue());
+    assertEquals(2, p.getRArray(1).getFootnoteReferenceArray(0).getId().intValue());
+    assertEquals(3, FormatWordMain.bookmarkCounter);
+
+    List<CTFtnEdn> notes = doc.getFootnotes().stream().map(f -> f.getCTFtnEdn())
+	.collect(java.util.stream.Collectors.toList());
+    assertEquals(2, notes.size());
+    assertEquals(1, notes.get(0).getId().intValue());
+    assertTrue(notes.get(0).xmlText().contains("First note"));
+    assertTrue(notes.get(0).xmlText().contains("footnoteRef"), "the mark in the note itself");
+    assertTrue(notes.get(1).xmlText().contains("Second note"));
+  }
+
+  @Test
+  public void testSameAsMadeInDocument() {
+    XWPFParagraph direct = doc.createParagraph();
+    WordDocxUtils.addFootnote(direct, doc, "In the beginning", 6, "A note");
+    WordDocxUtils.addSplitHeading2Para(doc, "Heading", "and more");
+    ChapterFragment chapter = new ChapterFragment(doc);
+    chapter.addFootnote(chapter.createParagraph(), "In the beginning", 6, "A note");
+    chapter.addSplitHeading2Para("Heading", "and more");
+    chapter.appendTo(doc);
+    CTBody body = doc.getDocument().getBody();
+    for (int i = 0; i < 3; i++) {
+      String made = body.getPArray(i).xmlText();
+      String appended = body.getPArray(i + 3).xmlText();
+      if (i == 0) { made = made.replace("main:id=\"1\"", "main:id=\"2\""); }
+      assertEquals(made, appended);
+    }
+  }
+
+  @Test
+  public void testSharedHeaders() throws Exception {
+    FormatWordMain.sharedHeaders = true;
+    for (int i = 0; i < 2; i++) {
+      ChapterFragment chapter = new ChapterFragment(doc);
+      CTSectPr sectPr = chapter.createParagraph().getCTP().addNewPPr().addNewSectPr();
+      chapter.addHeaders(sectPr, "Chapter " + i);
+      chapter.appendTo(doc);
+    }
+    /* The policy does not list the headers it makes until they are read */
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    doc.write(bytes);
+    try (XWPFDocument written = new XWPFDocument(new ByteArrayInputStream(bytes.toByteArray()))) {
+      assertEquals(1, written.getHeaderList().size(), "one header for every chapter");
+      assertEquals(2, written.getFooterList().size());
+      String headerId = written.getRelationId(written.getHeaderList().get(0));
+      for (int i = 0; i < 2; i++) {
+	CTSectPr sectPr = written.getDocument().getBody().getPArray(i).getPPr().getSectPr();
+	assertEquals(2, sectPr.sizeOfHeaderReferenceArray());
+	assertEquals(headerId, sectPr.getHeaderReferenceArray(0).getId());
+	assertEquals(headerId, sectPr.getHeaderReferenceArray(1).getId());
+	assertEquals(2, sectPr.sizeOfFooterReferenceArray());
+      }
+    }
+  }
+}
@@ -0,0 +1,140 @@
+package asst.formatWord;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFFootnote;
+import org.apache.poi.xwpf.usermodel.XWPFHeader;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTBody;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTSectPr;
+
+import asst.formatWord.utils.WordDocxUtils;
+
+/** Check that a document written a chapter at a time reads back as the
+ * template followed by the chapters, with their footnotes and headers.
+ * @author Material Gain
+ * @since 2026 10
+ */
+public class DocxStreamWriterTest {
+
+  private XWPFDocument doc;
+  private byte[] template;
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    FormatWordMain.bookmarkCounter = 1;
+    WordDocxUtils.resetCounters();
+    try (XWPFDocument tpl = new XWPFDocument()) {
+      tpl.createParagraph().createRun().setText("Template intro");
+      tpl.getDocument().getBody().addNewSectPr().addNewPgSz();
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      tpl.write(bytes);
+      template = bytes.toByteArray();
+    }
+    doc = new XWPFDocument(new ByteArrayInputStream(template));
+  }
+
+  @AfterEach
+  public void tearDown() throws Exception {
+    doc.close();
+  }
+
+  private ChapterFragment makeChapter(String bookmark, String note, String title) {
+    ChapterFragment chapter = new ChapterFragment(doc);
+    XWPFParagraph para = chapter.createParagraph();
+    chapter.addFootnote(para, "In the beginning", 6, note);
+    chapter.setBookmark(para, bookmark);
+    CTSectPr sectPr = chapter.createParagraph().getCTP().addNewPPr().addNewSectPr();
+    chapter.addHeaders(sectPr, title);
+    return chapter;
+  }
+
+  @Test
+  public void testStreamedDocument() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    DocxStreamWriter stream = new DocxStreamWriter(template, out);
+    stream.append(makeChapter("40MAT 1:1", "First note", "Matthew 1"));
+    stream.append(makeChapter("41MRK 1:1", "Second note", " Mark 1"));
+    stream.close();
+
+    try (XWPFDocument written = new XWPFDocument(new ByteArrayInputStream(out.toByteArray()))) {
+      CTBody body = written.getDocument().getBody();
+      assertEquals(5, body.sizeOfPArray());
+      assertEquals("Template intro", written.getParagraphArray(0).getText());
+      assertEquals("In the", written.getParagraphArray(1).getRuns().get(0).text());
+      assertEquals(1, body.getPArray(1).getRArray(1).getFootnoteReferenceArray(0).getId().intValue());
+      assertEquals("41MRK 1:1", body.getPArray(3).getBookmarkStartArray(0).getName());
+      assertEquals(2, body.getPArray(3).getBookmarkStartArray(0).getId().intValue());
+      assertTrue(body.isSetSectPr(), "the template's last section stays at the end");
+
+      List<XWPFFootnote> notes = written.getFootnotes();
+      assertEquals(2, notes.size());
+      assertEquals(1, notes.get(0).getCTFtnEdn().getId().intValue());
+      assertEquals("First note", notes.get(0).getParagraphs().get(0).getText());
+      assertEquals("Second note", notes.get(1).getParagraphs().get(0).getText());
+
+      assertEquals(4, written.getHeaderList().size());
+      assertEquals(4, written.getFooterList().size());
+      CTSectPr sectPr = body.getPArray(4).getPPr().getSectPr();
+      assertEquals(2, sectPr.sizeOfHeaderReferenceArray());
+      String id = sectPr.getHeaderReferenceArray(1).getId();
+      XWPFHeader header = (XWPFHeader)written.getRelationById(id);
+      assertEquals(" Mark 1", header.getParagraphs().get(0).getText(), "spaces are kept");
+      assertTrue(written.getFooterList().get(0).getText().contains(FormatWordMain.FOOTER_LEFT));
+    }
+  }
+
+  @Test
+  public void testSharedHeaders() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    DocxStreamWriter stream = new DocxStreamWriter(template, out, true);
+    stream.append(makeChapter("40MAT 1:1", "First note", "Matthew 1"));
+    stream.append(makeChapter("41MRK 1:1", "Second note", "Mark 1"));
+    stream.close();
+
+    try (XWPFDocument written = new XWPFDocument(new ByteArrayInputStream(out.toByteArray()))) {
+      assertEquals(1, written.getHeaderList().size(), "one header for every chapter");
+      assertEquals(2, written.getFooterList().size());
+      CTBody body = written.getDocument().getBody();
+      CTSectPr first = body.getPArray(2).getPPr().getSectPr();
+      CTSectPr second = body.getPArray(4).getPPr().getSectPr();
+      assertEquals(2, second.sizeOfHeaderReferenceArray());
+      assertEquals(first.getHeaderReferenceArray(0).getId(), second.getHeaderReferenceArray(1).getId());
+      assertEquals(first.getFooterReferenceArray(1).getId(), second.getFooterReferenceArray(1).getId());
+      XWPFHeader header = written.getHeaderList().get(0);
+      assertEquals(FormatWordMain.HEADER_FIELD,
+	  header.getParagraphs().get(0).getCTP().getFldSimpleArray(0).getInstr());
+    }
+  }
+
+  @Test
+  public void testTemplateWithoutSections() throws Exception {
+    try (XWPFDocument tpl = new XWPFDocument()) {
+      tpl.createParagraph().createRun().setText("Template intro");
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      tpl.write(bytes);
+      template = bytes.toByteArray();
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    DocxStreamWriter stream = new DocxStreamWriter(template, out);
+    ChapterFragment chapter = new ChapterFragment(doc);
+    chapter.createParagraph().createRun().setText("Only text");
+    stream.append(chapter);
+    stream.close();
+
+    try (XWPFDocument written = new XWPFDocument(new ByteArrayInputStream(out.toByteArray()))) {
+      assertEquals(2, written.getParagraphs().size());
+      assertEquals("Only text", written.getParagraphArray(1).getText());
+      assertTrue(written.getFootnotes().isEmpty());
+      assertTrue(written.getHeaderList().isEmpty());
+    }
+  }
+}
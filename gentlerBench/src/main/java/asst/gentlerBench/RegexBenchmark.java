@@ -0,0 +1,103 @@
+package asst.gentlerBench;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import asst.gentlerKJB.utils.RegexMatcher;
+import asst.gentlerKJB.utils.Rule;
+
+/** How the cost of finding the "Regex" rules which match a verse grows
+ * with the number of rules, in verses per second.  findRules asks the
+ * matcher which rules might apply and tries each of them, as the program
+ * does; eachPattern searches the verse once per rule.  Rules with plain
+ * text in their patterns are found through the text, so "text" should not
+ * grow with the number of rules; rules without it are tried one by one, so
+ * "noText" grows as eachPattern does.
+ * @author Material Gain
+ * @since 2026 10
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RegexBenchmark {
+  /** Number of verses in the sample, which is one operation each */
+  public static final int VERSES = 2000;
+
+  /** Number of "Regex" rules */
+  @Param({"1", "10", "100"})
+  public int ruleCount;
+
+  /** "text" for patterns with plain text, "noText" for patterns without */
+  @Param({"text", "noText"})
+  public String kind;
+
+  /** The sample, taken from every book */
+  String[] verses;
+  /** The rules */
+  List<Rule> rules;
+  /** The matcher built from them */
+  RegexMatcher matcher;
+
+  /** Make the verses and the rules */
+  @Setup
+  public void setUp() throws Exception {
+    SyntheticBible bible = new SyntheticBible(1611);
+    List<String> all = new ArrayList<String>();
+    for (String book : SyntheticBible.BOOKS) { all.addAll(bible.book(book, 20)); }
+    verses = new String[VERSES];
+    for (int i = 0; i < VERSES; i++) {
+      verses[i] = all.get((int)((long)i * all.size() / VERSES));
+    }
+    rules = new ArrayList<Rule>();
+    for (int i = 0; i < ruleCount; i++) {
+      /* Both kinds rarely match, as most rules do not match most verses */
+      String pattern = "text".equals(kind)
+	  ? "(?<!great )word" + i + " (him|them)"
+	  : "\\b(\\w+)(?:q" + i + "|z" + i + ")\\b";
+      rules.add(new Rule(pattern, "x", Rule.REGEX));
+    }
+    matcher = new RegexMatcher(rules);
+  }
+
+  /** Find the rules which match each verse with the matcher */
+  @Benchmark
+  @OperationsPerInvocation(VERSES)
+  public void findRules(Blackhole bh) {
+    for (String verse : verses) {
+      BitSet found = matcher.findRules(verse);
+      for (int i = found.nextSetBit(0); i >= 0; i = found.nextSetBit(i + 1)) {
+	bh.consume(rules.get(i).pattern.matcher(verse).find());
+      }
+    }
+  }
+
+  /** Find the rules which match each verse with one search per rule */
+  @Benchmark
+  @OperationsPerInvocation(VERSES)
+  public void eachPattern(Blackhole bh) {
+    for (String verse : verses) {
+      for (Rule rule : rules) {
+	bh.consume(rule.pattern.matcher(verse).find());
+      }
+    }
+  }
+}
@@ -0,0 +1,241 @@
+package asst.gentlerBench;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import asst.gentlerKJB.utils.RuleSet;
+import asst.hssf.WorkbookManager;
+
+/** Generator of KJV-like books and a WordChanges dictionary to go with
+ * them, so that the engine can be measured without the real Bible files
+ * or the real dictionary.  The same seed always gives the same text.
+ *
+ * <p>Verses are made of common words with archaic words, spellings and
+ * phrases mixed in at about the rate they appear in the New Testament,
+ * so that most verses are changed by a few rules and a few are changed
+ * by none.  The dictionary has plain rules, "Not mark" spelling rules,
+ * "Only in" and "Not in" rules and rules which make words that later
+ * rules change, as the real one does.</p>
+ * @author Material Gain
+ * @since 2026 10
+ */
+public class SyntheticBible {
+  /** Book file names without .TXT, in order */
+  public static final String[] BOOKS = {"40MAT", "41MAR", "42LUK", "43JOH", "44ACT"};
+
+  /** Words which are never changed */
+  static final String[] COMMON = {
+      "the", "and", "of", "that", "he", "in", "to", "him", "them", "is", "not",
+      "they", "was", "for", "his", "a", "which", "with", "be", "all", "i",
+      "from", "said", "man", "when", "but", "were", "this", "as", "it", "by",
+      "are", "into", "on", "Jesus", "God", "disciples", "people", "came",
+      "went", "city", "house", "son", "father", "king", "heaven", "earth",
+      "word", "bread", "water", "way", "day", "night", "multitude", "then",
+      "there", "also", "what", "who", "because", "even", "every", "one",
+      "against", "before", "after", "among", "people", "spirit", "holy",
+      "faith", "light", "life", "death", "sea", "ship", "mountain",
+  };
+
+  /** Archaic words and phrases with their new words, as rules of the
+   * dictionary.  Some new words contain old words of later rules. */
+  static final String[][] ARCHAIC = {
+      {"great with child", "about to give birth"},
+      {"with child", "pregnant"},
+      {"in travail", "giving birth"},
+      {"hath sorrow", "is sad"},
+      {"on this wise", "like this"},
+      {"begat", "fathered"},
+      {"thee", "you"},
+      {"thou", "you"},
+      {"thy", "your"},
+      {"thine", "yours"},
+      {"hath", "has"},
+      {"saith", "says"},
+      {"spake", "spoke"},
+      {"wist", "knew"},
+      {"shew", "show"},
+      {"privily", "secretly"},
+      {"twain", "two"},
+      {"bewray", "expose"},
+      {"mite", "tiny amount"},
+      {"anguish", "pain"},
+      {"whither", "where"},
+      {"wherefore", "why"},
+      {"hither", "here"},
+      {"yea", "yes"},
+      {"nay", "no"},
+      {"verily", "truly"},
+      {"ere", "before"},
+      {"peradventure", "perhaps"},
+      {"raiment", "clothing"},
+      {"victuals", "food"},
+  };
+
+  /** Verbs which are given -eth and -est endings */
+  static final String[] VERBS = {
+      "walk", "speak", "know", "come", "go", "give", "take", "make", "hear",
+      "see", "believe", "love", "keep", "send", "seek", "find", "ask",
+      "answer", "call", "follow", "pray", "teach", "heal", "cast", "bring",
+      "hold", "turn", "stand", "sit", "rise", "fall", "eat", "drink", "sleep",
+      "work", "wash", "bear", "build", "hate", "help", "judge", "lead",
+      "lift", "open", "pass", "preach", "receive", "remain", "return", "save",
+  };
+
+  /** Spellings which are changed without marking */
+  static final String[][] SPELLINGS = {
+      {"honour", "honor"}, {"saviour", "savior"}, {"labour", "labor"},
+      {"neighbour", "neighbor"}, {"favour", "favor"}, {"colour", "color"},
+      {"shewed", "showed"}, {"publick", "public"}, {"musick", "music"},
+      {"ancles", "ankles"},
+  };
+
+  private final Random random;
+
+  /**
+   * @param seed the same seed gives the same text
+   */
+  public SyntheticBible(long seed) {
+    random = new Random(seed);
+  }
+
+  /** Make one book
+   * @param bookName file name without .TXT such as 40MAT
+   * @param chapters number of chapters
+   * @return lines such as "MAT 1:1  text"
+   */
+  public List<String> book(String bookName, int chapters) {
+    String abbrev = bookName.substring(2);
+    List<String> lines = new ArrayList<String>();
+    for (int c = 1; c <= chapters; c++) {
+      int verses = 20 + random.nextInt(30);
+      for (int v = 1; v <= verses; v++) {
+	lines.add(abbrev + " " + c + ":" + v + "  " + verse());
+      }
+    }
+    return lines;
+  }
+
+  /**
+   * @return the text of one verse
+   */
+  public String verse() {
+    int words = 12 + random.nextInt(30);
+    StringBuilder sb = new StringBuilder(words * 6);
+    for (int i = 0; i < words; i++) {
+      String word = word();
+      if (i == 0) {
+	word = Character.toUpperCase(word.charAt(0)) + word.substring(1);
+      } else {
+	int r = random.nextInt(40);
+	sb.append((r == 0) ? "; " : (r == 1) ? ": " : (r < 5) ? ", " : " ");
+	if (r < 2) {
+	  word = Character.toUpperCase(word.charAt(0)) + word.substring(1);
+	}
+      }
+      sb.append(word);
+    }
+    return sb.append('.').toString();
+  }
+
+  private String word() {
+    int r = random.nextInt(100);
+    if (r < 6) { return ARCHAIC[random.nextInt(ARCHAIC.length)][0]; }
+    if (r < 9) {
+      String verb = VERBS[random.nextInt(VERBS.length)];
+      return verb + (random.nextBoolean() ? "eth" : "est");
+    }
+    if (r < 10) { return SPELLINGS[random.nextInt(SPELLINGS.length)][0]; }
+    return COMMON[random.nextInt(COMMON.length)];
+  }
+
+  /** Make the rows of a WordChanges sheet for the books, header first
+   * @return rows of old word, new word and verb
+   */
+  public String[][] dictionary() {
+    List<String[]> rows = new ArrayList<String[]>();
+    rows.add(new String[] {"#Old word", "New word", "Verb"});
+    for (String[] row : ARCHAIC) {
+      rows.add(new String[] {row[0], row[1], null});
+    }
+    rows.add(new String[] {"ye", "you all", "Only in MAT 1-5, LUK 2:5, JOH 3:1-4:10"});
+    rows.add(new String[] {"you", "you all", "Only in MAT 1:1, LUK 2:5, MAT 2:3"});
+    rows.add(new String[] {"unto", "to", "Not in ACT 1-3"});
+    for (String verb : VERBS) {
+      rows.add(new String[] {verb + "eth", verb + "s", null});
+      rows.add(new String[] {verb + "est", verb, null});
+    }
+    for (String[] row : SPELLINGS) {
+      rows.add(new String[] {row[0], row[1], "Not mark"});
+    }
+    return rows.toArray(new String[rows.size()][]);
+  }
+
+  /** Build a workbook with a WordChanges sheet
+   * @param rows rows of old word, new word and verb
+   * @return the workbook
+   */
+  public static XSSFWorkbook workbook(String[][] rows) {
+    XSSFWorkbook wb = new XSSFWorkbook();
+    Sheet sheet = wb.createSheet("WordChanges");
+    for (int i = 0; i < rows.length; i++) {
+      Row row = sheet.createRow(i);
+      for (int j = 0; j < rows[i].length; j++) {
+	if (rows[i][j] != null) { row.createCell(j).setCellValue(rows[i][j]); }
+      }
+    }
+    return wb;
+  }
+
+  /** Compile rows into rules the way GentlerKBJMain does
+   * @param rows rows of old word, new word and verb
+   * @return the rules
+   * @throws IOException if the workbook cannot be closed
+   */
+  public static RuleSet ruleSet(String[][] rows) throws IOException {
+    WorkbookManager wm = new WorkbookManager();
+    wm.wb = workbook(rows);
+    wm.pickSheet("WordChanges");
+    wm.makeFormatters();
+    RuleSet rules = new RuleSet(wm);
+    wm.wb.close();
+    return rules;
+  }
+
+  /** Write the synthetic books and dictionary to a folder, for running
+   * gentlerKJB itself on them.
+   * @param args output folder and optionally the seed
+   * @throws IOException if the files cannot be written
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1) {
+      System.out.println("Usage: SyntheticBible outputFolder [seed]");
+      System.exit(1);
+    }
+    Path folder = Paths.get(args[0]);
+    SyntheticBible bible = new SyntheticBible((args.length > 1) ? Long.parseLong(args[1]) : 1611);
+    Path books = folder.resolve("in");
+    Files.createDirectories(books);
+    int[] chapters = {28, 16, 24, 21, 28};
+    for (int b = 0; b < BOOKS.length; b++) {
+      Files.write(books.resolve(BOOKS[b] + ".TXT"), bible.book(BOOKS[b], chapters[b]),
+	  StandardCharsets.UTF_8);
+    }
+    try (XSSFWorkbook wb = workbook(bible.dictionary());
+	OutputStream out = new FileOutputStream(folder.resolve("dict.xlsx").toFile())) {
+      wb.write(out);
+    }
+    System.out.println("Wrote " + books + " and " + folder.resolve("dict.xlsx"));
+  }
+}
@@ -0,0 +1,130 @@
+package asst.gentlerBench;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import asst.gentlerKJB.GentlerKBJMain;
+import asst.gentlerKJB.utils.AsciiLine;
+import asst.gentlerKJB.utils.ChangeLedger;
+import asst.gentlerKJB.utils.PassingItems;
+import asst.gentlerKJB.utils.RuleSet;
+import asst.gentlerKJB.utils.WordUpgradeUtils;
+
+/** Throughput of the word changing engine in verses per second.  Each
+ * benchmark goes through the same sample of synthetic verses, so the
+ * numbers can be compared with each other and from one version of the
+ * engine to the next.  Run with <code>-prof gc</code> to see how much is
+ * allocated per verse.
+ * @author Material Gain
+ * @since 2026 10
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UpgradeBenchmark {
+  /** Number of verses in the sample, which is one operation each */
+  public static final int VERSES = 2000;
+
+  /** The sample, taken from every book */
+  String[] verses;
+  /** The same sample read in place from the bytes of one book */
+  CharSequence[] asciiVerses;
+  /** The synthetic dictionary */
+  RuleSet rules;
+
+  /** Make the verses and the rules */
+  @Setup
+  public void setUp() throws Exception {
+    SyntheticBible bible = new SyntheticBible(1611);
+    List<String> all = new ArrayList<String>();
+    for (String book : SyntheticBible.BOOKS) { all.addAll(bible.book(book, 20)); }
+    verses = new String[VERSES];
+    for (int i = 0; i < VERSES; i++) {
+      verses[i] = all.get((int)((long)i * all.size() / VERSES));
+    }
+    StringBuilder book = new StringBuilder();
+    for (String verse : verses) { book.append(verse).append('\n'); }
+    asciiVerses = AsciiLine.of(AsciiLine.splitLines(book.toString()
+	.getBytes(StandardCharsets.UTF_8))).toArray(new CharSequence[VERSES]);
+    rules = SyntheticBible.ruleSet(bible.dictionary());
+  }
+
+  /** Look for one archaic word in each verse */
+  @Benchmark
+  @OperationsPerInvocation(VERSES)
+  public void findWordIndex(Blackhole bh) {
+    for (String verse : verses) {
+      bh.consume(WordUpgradeUtils.findWordIndex(verse, "hath"));
+    }
+  }
+
+  /** Mark one archaic word in each verse */
+  @Benchmark
+  @OperationsPerInvocation(VERSES)
+  public void modernizeWord(Blackhole bh) {
+    ChangeLedger ledger = new ChangeLedger();
+    for (String verse : verses) {
+      PassingItems pi = new PassingItems(verse, "hath", "has");
+      pi.bkno = "40";
+      pi.ledger = ledger;
+      WordUpgradeUtils.modernizeWord(pi);
+      bh.consume(pi.getEditedLine());
+    }
+  }
+
+  /** Respell one word everywhere in each verse */
+  @Benchmark
+  @OperationsPerInvocation(VERSES)
+  public void replaceWord(Blackhole bh) {
+    ChangeLedger ledger = new ChangeLedger();
+    for (String verse : verses) {
+      PassingItems pi = new PassingItems(verse, "honour", "honor");
+      pi.bkno = "40";
+      pi.ledger = ledger;
+      WordUpgradeUtils.replaceWord(pi);
+      bh.consume(pi.getEditedLine());
+    }
+  }
+
+  /** Apply the whole dictionary to each verse */
+  @Benchmark
+  @OperationsPerInvocation(VERSES)
+  public void upgradeLine(Blackhole bh) {
+    ChangeLedger ledger = new ChangeLedger();
+    for (String verse : verses) {
+      bh.consume(GentlerKBJMain.upgradeLine("40", verse, rules, ledger));
+    }
+  }
+
+  /** Apply the whole dictionary to each verse from its bytes, writing
+   * bytes, as a book is changed */
+  @Benchmark
+  @OperationsPerInvocation(VERSES)
+  public void upgradeAsciiLine(Blackhole bh) {
+    ChangeLedger ledger = new ChangeLedger();
+    ByteArrayOutputStream out = new ByteArrayOutputStream(200 * VERSES);
+    for (CharSequence verse : asciiVerses) {
+      GentlerKBJMain.upgradeLine("40", verse, rules, ledger, out);
+    }
+    bh.consume(out);
+  }
+}
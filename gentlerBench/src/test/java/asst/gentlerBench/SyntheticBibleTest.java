@@ -0,0 +1,33 @@
+package asst.gentlerBench;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import asst.gentlerKJB.GentlerKBJMain;
+import asst.gentlerKJB.utils.ChangeLedger;
+import asst.gentlerKJB.utils.RuleSet;
+
+class SyntheticBibleTest {
+  @Test
+  void testGenerate() throws Exception {
+    List<String> mat = new SyntheticBible(1611).book("40MAT", 3);
+    assertEquals(mat, new SyntheticBible(1611).book("40MAT", 3), "same seed, same book");
+    assertTrue(mat.get(0).startsWith("MAT 1:1  "));
+
+    SyntheticBible bible = new SyntheticBible(1611);
+    String[][] rows = bible.dictionary();
+    RuleSet rules = SyntheticBible.ruleSet(rows);
+    assertEquals(rows.length - 1, rules.size(), "every row but the header is a rule");
+
+    ChangeLedger ledger = new ChangeLedger();
+    for (String line : mat) {
+      GentlerKBJMain.upgradeLine("40", line, rules, ledger);
+      ledger.verseCount++;
+    }
+    assertTrue(ledger.verseChanges.size() > mat.size() / 2, "most verses are changed");
+    assertTrue(ledger.verseChanges.size() < mat.size(), "but not all");
+  }
+}
@@ -0,0 +1,164 @@
+package asst.gentlerKJB;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import asst.common.MainArgs;
+import asst.gentlerKJB.utils.RuleSet;
+
+/** Change several sets of books with one dictionary in one run, such as
+ * the Old and New Testaments, another edition of the text or a few test
+ * books, so that the spreadsheet is read and the rules compiled once.
+ *
+ * <p>A job file has one job per line.  A line holds arguments written as
+ * they are on the command line, which override the command line for that
+ * job, or just an input path and an output path:</p>
+ * <pre>
+ * # Old and New Testaments
+ * inputPath=/Sync/Biblical/asciiBible firstFile=01GEN.TXT count=39 outputPath=/temp/OT/
+ * /Sync/Biblical/asciiBible/ /temp/NT/
+ * </pre>
+ * <p>Blank lines and lines starting with # are skipped, and a value with
+ * spaces is put in quotes.  Every job gets its own explanation.txt and
+ * ledgers in its own output folder, so no two jobs may write to the same
+ * folder.  The jobs run at the same time and share the rules, which are
+ * never changed after they are compiled.</p>
+ * @author Material Gain
+ * @since 2026 10
+ */
+public class BatchJobs {
+
+  private BatchJobs() { /* */ }
+
+  /** Read a job file
+   * @param jobFile the file
+   * @param carg command line arguments, which each job starts from
+   * @return arguments of each job, in order
+   * @throws IOException if the file cannot be read
+   * @throws IllegalArgumentException if a line is not a job or two jobs
+   * have the same output folder
+   */
+  public static List<MainArgs> read(Path jobFile, MainArgs carg) throws IOException {
+    return parse(Files.readAllLines(jobFile, StandardCharsets.UTF_8), carg);
+  }
+
+  /** Make the arguments of each job from the lines of a job file
+   * @param lines lines of the job file
+   * @param carg command line arguments, which each job starts from
+   * @return arguments of each job, in order
+   * @throws IllegalArgumentException if a line is not a job or two jobs
+   * have the same output folder
+   */
+  public static List<MainArgs> parse(List<String> lines, MainArgs carg) {
+    List<MainArgs> jobs = new ArrayList<MainArgs>();
+    Map<Path, Integer> outputs = new HashMap<Path, Integer>();
+    for (int i = 0; i < lines.size(); i++) {
+      String line = lines.get(i).trim();
+      if (line.isEmpty() || line.startsWith("#")) { continue; }
+      MainArgs job = new MainArgs();
+      job.putAll(carg);
+      job.parseArgs(split(line));
+      List<String> paths = job.getStrings();
+      if (paths.size() == 2) {
+	job.put("inputPath", paths.get(0));
+	job.put("outputPath", paths.get(1));
+      } else if (!paths.isEmpty()) {
+	throw new IllegalArgumentException("Line " + (i + 1)
+	    + " must have an input path and an output path, not " + paths);
+      }
+      if (!Objects.equals(carg.get("dictionary"), job.get("dictionary"))) {
+	throw new IllegalArgumentException("Line " + (i + 1)
+	    + " names a dictionary, but every job uses the one given on the command line.");
+      }
+      Path output = Paths.get((String)job.get("outputPath")).toAbsolutePath().normalize();
+      Integer other = outputs.put(output, i + 1);
+      if (other != null) {
+	throw new IllegalArgumentException("Lines " + other + " and " + (i + 1)
+	    + " both write to " + output);
+      }
+      jobs.add(job);
+    }
+    return jobs;
+  }
+
+  /** Split a line into arguments at spaces which are not in quotes
+   * @param line a line of a job file
+   * @return the arguments without the quotes
+   */
+  static String[] split(String line) {
+    List<String> args = new ArrayList<String>();
+    StringBuilder sb = new StringBuilder();
+    boolean quoted = false;
+    boolean any = false;
+    for (int i = 0; i < line.length(); i++) {
+      char ch = line.charAt(i);
+      if (ch == '"') {
+	quoted = !quoted;
+	any = true;
+      } else if (!quoted && Character.isWhitespace(ch)) {
+	if (any) { args.add(sb.toString()); }
+	sb.setLength(0);
+	any = false;
+      } else {
+	sb.append(ch);
+	any = true;
+      }
+    }
+    if (any) { args.add(sb.toString()); }
+    return args.toArray(new String[args.size()]);
+  }
+
+  /** Run the jobs at the same time with one set of rules.  Each job uses
+   * its own threads= books at a time.
+   * @param jobs arguments of each job
+   * @param rules compiled from the WordChanges sheet
+   * @param force true to change every book of every job
+   * @return false if any job failed, after saying why
+   * @throws InterruptedException if the thread is interrupted
+   */
+  public static boolean run(List<MainArgs> jobs, RuleSet rules, boolean force)
+      throws InterruptedException {
+    if (jobs.isEmpty()) {
+      System.out.println("There are no jobs to run.");
+      return true;
+    }
+    ExecutorService pool = Executors.newFixedThreadPool(jobs.size());
+    boolean ok = true;
+    try {
+      List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+      for (MainArgs job : jobs) {
+	results.add(pool.submit(() -> GentlerKBJMain.changeBooks(job, rules, force)));
+      }
+      for (int i = 0; i < jobs.size(); i++) {
+	String name = "Job " + (i + 1) + " " + jobs.get(i).get("inputPath")
+	    + " -> " + jobs.get(i).get("outputPath");
+	try {
+	  if (results.get(i).get()) {
+	    System.out.println(name + " finished.");
+	  } else {
+	    System.out.println(name + " failed.");
+	    ok = false;
+	  }
+	} catch (ExecutionException e) {
+	  System.out.println("ERR in " + name + ": " + e.getCause().getMessage());
+	  ok = false;
+	}
+      }
+    } finally {
+      pool.shutdown();
+    }
+    return ok;
+  }
+}
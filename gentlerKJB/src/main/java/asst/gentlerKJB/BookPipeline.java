@@ -0,0 +1,207 @@
+package asst.gentlerKJB;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import asst.gentlerKJB.utils.ChangeLedger;
+import asst.gentlerKJB.utils.RuleSet;
+
+/** Change a list of books in three stages which overlap: a reader thread
+ * streams the lines of each book in turn, the calling thread applies the
+ * rules, and a writer thread writes the changed lines through a buffered
+ * channel.  The stages are joined by bounded queues so a slow disk holds
+ * back only the stage that is waiting for it, and the reader can be in
+ * the next book while the writer finishes the last one.
+ *
+ * <p>Lines go through the queues in chunks so that the threads do not
+ * hand off every verse.  The output files and the ledgers are the same
+ * as {@link GentlerKBJMain#processBook} makes.</p>
+ * @author Material Gain
+ * @since 2026 10
+ */
+public class BookPipeline {
+  /** Number of lines handed from one stage to the next at a time */
+  public static final int CHUNK_LINES = 256;
+  /** Number of chunks each queue holds before its producer waits */
+  public static final int QUEUE_CHUNKS = 16;
+  /** Size of the writer's buffer in characters */
+  public static final int WRITE_BUFFER = 1 << 16;
+
+  /** Lines of one book passed between stages */
+  private static class Chunk {
+    /** Book the lines belong to */
+    final Path book;
+    /** Lines, in order */
+    final List<String> lines;
+    /** True for the last chunk of the book, which may have no lines */
+    final boolean last;
+
+    Chunk(Path book, List<String> lines, boolean last) {
+      this.book = book;
+      this.lines = lines;
+      this.last = last;
+    }
+  }
+
+  /** Marks the end of all the books */
+  private static final Chunk END = new Chunk(null, null, true);
+
+  private final RuleSet rules;
+  private final Path outputDir;
+  private final BlockingQueue<Chunk> toTransform = new ArrayBlockingQueue<Chunk>(QUEUE_CHUNKS);
+  private final BlockingQueue<Chunk> toWrite = new ArrayBlockingQueue<Chunk>(QUEUE_CHUNKS);
+
+  /**
+   * @param rules compiled from the WordChanges sheet
+   * @param outputDir folder where the changed books are written
+   */
+  public BookPipeline(RuleSet rules, Path outputDir) {
+    this.rules = rules;
+    this.outputDir = outputDir;
+  }
+
+  /** Change the books and write them to the output folder under the
+   * same file names.
+   * @param books books to read, in order
+   * @return ledger of the changes made to each book, in the same order
+   * @throws IOException if a book cannot be read or written
+   * @throws InterruptedException if the calling thread is interrupted
+   */
+  public List<ChangeLedger> run(List<Path> books) throws IOException, InterruptedException {
+    ExecutorService stages = Executors.newFixedThreadPool(2);
+    try {
+      Future<Void> reader = stages.submit(() -> read(books));
+      Future<Void> writer = stages.submit(() -> write());
+      List<ChangeLedger> ledgers = transform(reader, writer);
+      put(toWrite, END, writer);
+      writer.get();
+      reader.get();
+      return ledgers;
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause == null) { throw new IOException(e.getMessage()); }
+      if (cause instanceof IOException) { throw (IOException)cause; }
+      throw new IOException(cause.getMessage(), cause);
+    } finally {
+      stages.shutdownNow();
+    }
+  }
+
+  /** Reader stage: stream each book a chunk at a time */
+  private Void read(List<Path> books) throws IOException, InterruptedException {
+    for (Path book : books) {
+      try (BufferedReader in = Files.newBufferedReader(book, StandardCharsets.UTF_8)) {
+	List<String> lines = new ArrayList<String>(CHUNK_LINES);
+	String line;
+	while ((line = in.readLine()) != null) {
+	  lines.add(line);
+	  if (lines.size() == CHUNK_LINES) {
+	    toTransform.put(new Chunk(book, lines, false));
+	    lines = new ArrayList<String>(CHUNK_LINES);
+	  }
+	}
+	toTransform.put(new Chunk(book, lines, true));
+      }
+    }
+    toTransform.put(END);
+    return null;
+  }
+
+  /** Transform stage, on the calling thread: apply the rules to each
+   * line with one ledger per book. */
+  private List<ChangeLedger> transform(Future<Void> reader, Future<Void> writer)
+      throws InterruptedException, ExecutionException {
+    List<ChangeLedger> ledgers = new ArrayList<ChangeLedger>();
+    ChangeLedger ledger = null;
+    while (true) {
+      Chunk chunk = take(toTransform, reader);
+      if (chunk == END) { break; }
+      if (ledger == null) {
+	ledger = new ChangeLedger();
+	ledgers.add(ledger);
+      }
+      String bkno = chunk.book.getFileName().toString().substring(0, 2);
+      List<String> out = new ArrayList<String>(chunk.lines.size());
+      for (String line : chunk.lines) {
+	out.add(GentlerKBJMain.upgradeLine(bkno, line, rules, ledger));
+	ledger.verseCount++;
+      }
+      put(toWrite, new Chunk(chunk.book, out, chunk.last), writer);
+      if (chunk.last) { ledger = null; }
+    }
+    return ledgers;
+  }
+
+  /** Writer stage: write each book through a buffered channel */
+  private Void write() throws IOException, InterruptedException {
+    String separator = System.lineSeparator();
+    Writer out = null;
+    try {
+      while (true) {
+	Chunk chunk = toWrite.take();
+	if (chunk == END) { break; }
+	if (out == null) {
+	  FileChannel channel = FileChannel.open(outputDir.resolve(chunk.book.getFileName()),
+	      StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+	      StandardOpenOption.WRITE);
+	  out = new BufferedWriter(Channels.newWriter(channel,
+	      StandardCharsets.UTF_8.newEncoder(), -1), WRITE_BUFFER);
+	}
+	for (String line : chunk.lines) {
+	  out.write(line);
+	  out.write(separator);
+	}
+	if (chunk.last) {
+	  out.close();
+	  out = null;
+	}
+      }
+    } finally {
+      if (out != null) { out.close(); }
+    }
+    return null;
+  }
+
+  /** Take the next chunk, giving up if the stage feeding the queue failed */
+  private static Chunk take(BlockingQueue<Chunk> queue, Future<Void> producer)
+      throws InterruptedException, ExecutionException {
+    while (true) {
+      Chunk chunk = queue.poll(100, TimeUnit.MILLISECONDS);
+      if (chunk != null) { return chunk; }
+      if (producer.isDone()) {
+	producer.get();
+	chunk = queue.poll();
+	if (chunk != null) { return chunk; }
+	throw new ExecutionException("Stage ended early", null);
+      }
+    }
+  }
+
+  /** Put a chunk, giving up if the stage draining the queue failed */
+  private static void put(BlockingQueue<Chunk> queue, Chunk chunk, Future<Void> consumer)
+      throws InterruptedException, ExecutionException {
+    while (!queue.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+      if (consumer.isDone()) {
+	consumer.get();
+	throw new ExecutionException("Stage ended early", null);
+      }
+    }
+  }
+}
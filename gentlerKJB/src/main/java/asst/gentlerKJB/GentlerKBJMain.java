@@ -1,26 +1,42 @@
 package asst.gentlerKJB;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
-import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
+import asst.bible.CorpusFile;
+import asst.bible.VerseRef;
 import asst.common.DescribeArgs;
+import asst.common.FileWatcher;
 import asst.common.MainArgs;
+import asst.gentlerKJB.utils.AsciiLine;
+import asst.gentlerKJB.utils.ChangeLedger;
 import asst.gentlerKJB.utils.PassingItems;
+import asst.gentlerKJB.utils.Rule;
+import asst.gentlerKJB.utils.RuleSet;
+import asst.gentlerKJB.utils.RuleStats;
 import asst.gentlerKJB.utils.WordUpgradeUtils;
-import asst.hssf.SSU;
 import asst.hssf.WorkbookManager;
 
 /** Read input files and change words in them as specified by the
@@ -44,6 +60,27 @@ public class GentlerKBJMain {
 	+ "Must end with a /.");
     argDescs.put("dictionary", "Path to a .xlsx file which tells which words to change.");
     argDescs.put("count", "Tells how many input files to process.");
+    argDescs.put("threads", "Number of books processed at the same time."
+	+ " The output is the same no matter how many threads are used.");
+    argDescs.put("pipeline", "\"+pipeline\" reads, changes and writes the books in"
+	+ " three overlapping stages instead of one book at a time per thread."
+	+ "  threads is not used.  The output is the same.  Not used with corpus."
+	+ "  The next run without it changes every book again.");
+    argDescs.put("corpus", "Path to a corpus file holding all the books, read instead of"
+	+ " the files in inputPath when it is given.");
+    argDescs.put("pack", "\"+pack\" packs the .txt files in inputPath into the corpus"
+	+ " file and does nothing else.");
+    argDescs.put("force", "\"+force\" changes every book.  Otherwise a book is changed"
+	+ " only if its text or the rules changed since the last run into outputPath.");
+    argDescs.put("stats", "\"+stats\" counts what each rule does and writes the counts to"
+	+ " ruleStats.csv next to explanation.txt.  Only books which are changed are counted,"
+	+ " so use it with +force to count every book.");
+    argDescs.put("jobs", "Path to a job file with one set of books to change on each line,"
+	+ " as arguments such as inputPath=... outputPath=... or as an input path and an"
+	+ " output path.  The jobs run at the same time with the rules read once from"
+	+ " dictionary.  +watch is not used with jobs.");
+    argDescs.put("watch", "\"+watch\" keeps running and changes the books again whenever"
+	+ " the dictionary or a book in inputPath or the corpus changes.  Stop it with Ctrl-C.");
   }
   /** +help is the default value so that the program explains
    * the parameters if it is called with no arguments. */
@@ -54,9 +91,22 @@ public class GentlerKBJMain {
       "dictionary=/Sync/Biblical/KJV/Gentle/KJBWordUpdates.xlsx",
       "firstFile=40MAT.TXT",
       "count=40",
+      "threads=1",
+      "-pipeline",
+      "corpus=",
+      "-pack",
+      "-force",
+      "-stats",
+      "jobs=",
+      "-watch",
       "+help",
   };
  
+  /** Name of the file +stats writes next to explanation.txt */
+  public static final String STATS_FILE = "ruleStats.csv";
+  /** How long the input must stay the same before a +watch run starts */
+  static final long QUIET_MILLIS = 500;
+
   /**
    * @param args processed by the MainArgs class. 
    */
@@ -74,44 +124,200 @@ public class GentlerKBJMain {
     }
 
     String inputPath = (String)carg.get("inputPath");
-    String outputPath = (String)carg.get("outputPath");
     String dictionaryFile = (String)carg.get("dictionary");
-    String firstFile = (String)carg.get("firstFile");
-    int count = carg.getInt("count");
+    String corpusPath = (String)carg.get("corpus");
+    boolean force = carg.getBoolean("force");
+
+    if (carg.getBoolean("pack")) {
+      if ((corpusPath == null) || corpusPath.isEmpty()) {
+	System.out.println("corpus= must name the file to pack into.");
+	System.exit(1);
+      }
+      try {
+	int books = CorpusFile.pack(Paths.get(inputPath), Paths.get(corpusPath));
+	System.out.println("Packed " + books + " books into " + corpusPath);
+      } catch (IOException e) {
+	System.out.println("ERR packing " + inputPath + ": " + e.getMessage());
+	System.exit(1);
+      }
+      System.exit(0);
+    }
+
+    String jobsFile = (String)carg.get("jobs");
+    if ((jobsFile != null) && !jobsFile.isEmpty()) {
+      RuleSet rules = loadRules(dictionaryFile);
+      if (rules == null) { System.exit(1); }
+      try {
+	if (!BatchJobs.run(BatchJobs.read(Paths.get(jobsFile), carg), rules, force)) {
+	  System.exit(1);
+	}
+      } catch (IllegalArgumentException e) {
+	System.out.println("ERR in " + jobsFile + ": " + e.getMessage());
+	System.exit(1);
+      } catch (Exception e) {
+	System.out.println("ERR reading " + jobsFile + ": " + e.getMessage());
+	System.exit(1);
+      }
+      return;
+    }
+
+    if (carg.getBoolean("watch")) {
+      watch(carg, dictionaryFile, force);
+      return;
+    }
+    RuleSet rules = loadRules(dictionaryFile);
+    if (rules == null) { System.exit(1); }
+    try {
+      if (!changeBooks(carg, rules, force)) { System.exit(1); }
+    } catch (Exception e) {
+      System.out.println("ERR accessing directories: " + e.getMessage());
+      System.exit(1);
+    }
+  }
+
+  /** Stay running and change the books again whenever the dictionary or
+   * a book changes.  The rules are kept between runs and read again only
+   * when the dictionary changes, and the books which did not change are
+   * left alone as they are by any run into the same output folder.
+   * @param carg the command line arguments
+   * @param dictionaryFile path to the .xlsx file
+   * @param force true to change every book on the first run
+   */
+  static void watch(MainArgs carg, String dictionaryFile, boolean force) {
+    Path dictionary = Paths.get(dictionaryFile).toAbsolutePath().normalize();
+    String corpusPath = (String)carg.get("corpus");
+    try (FileWatcher watcher = new FileWatcher()) {
+      watcher.watchFile(dictionary);
+      if ((corpusPath != null) && !corpusPath.isEmpty()) {
+	watcher.watchFile(Paths.get(corpusPath));
+      } else {
+	Path input = Paths.get((String)carg.get("inputPath"));
+	Path output = Paths.get((String)carg.get("outputPath"));
+	if (isInside(output, input)) {
+	  /* Each run would write books which start the next run */
+	  System.out.println("ERR +watch needs an outputPath outside inputPath " + input);
+	  System.exit(1);
+	}
+	watcher.watchFolder(input, ".txt");
+      }
+      RuleSet rules = loadRules(dictionaryFile);
+      while (true) {
+	if (rules != null) {
+	  try {
+	    changeBooks(carg, rules, force);
+	    force = false;
+	  } catch (Exception e) {
+	    System.out.println("ERR accessing directories: " + e.getMessage());
+	  }
+	}
+	System.out.println("Watching " + dictionary + " and the books for changes.");
+	Set<Path> changed = watcher.await(QUIET_MILLIS);
+	System.out.println("Changed: " + changed);
+	if ((rules == null) || changed.contains(dictionary)) {
+	  rules = loadRules(dictionaryFile);
+	}
+      }
+    } catch (IOException e) {
+      System.out.println("ERR watching files: " + e.getMessage());
+      System.exit(1);
+    } catch (InterruptedException e) {
+      System.out.println("Stopped watching.");
+    }
+  }
 
+  /** Tell whether a folder is another folder or inside it
+   * @param folder the folder which may be inside
+   * @param other the other folder
+   * @return true if the folder is the other one or in it at any depth
+   */
+  static boolean isInside(Path folder, Path other) {
+    return folder.toAbsolutePath().normalize().startsWith(other.toAbsolutePath().normalize());
+  }
+
+  /** Read the rules from the WordChanges sheet of the dictionary.  The
+   * workbook is closed before returning, so nothing from POI is kept.
+   * @param dictionaryFile path to the .xlsx file
+   * @return the rules, or null after saying why they cannot be read
+   */
+  static RuleSet loadRules(String dictionaryFile) {
     WorkbookManager wm = new WorkbookManager();
     wm.fileName = dictionaryFile;
     File file = new File(wm.fileName);
 
     XSSFWorkbook wb = null;
-    int verseCount = 0;
     try {
       if (!file.canRead()) {
 	throw new RuntimeException("File " + wm.fileName + " cannot be read.");
       }
-      wb = new XSSFWorkbook(file);
+      /* Read only, so that closing the workbook does not write the
+       * dictionary back, which would look like an edit to +watch */
+      wb = new XSSFWorkbook(OPCPackage.open(file, PackageAccess.READ));
       wm.wb = wb;
       if (wm.pickSheet("WordChanges") == null) {
 	System.out.println("Spreadsheet has no sheet named WordChanges.");
-	System.exit(1);
+	return null;
       }
       wm.makeFormatters();
-
-      Path inputDir = Paths.get(inputPath);
-      if (!Files.isDirectory(inputDir)) {
-	System.err.println("Input path is not a directory: " + inputDir);
-	System.exit(1);
+      try {
+	return new RuleSet(wm);
+      } catch (IllegalArgumentException e) {
+	System.out.println("ERR in WordChanges: " + e.getMessage());
+	return null;
       }
-
-      Path outputDir = Paths.get(outputPath);
-      if (!Files.exists(outputDir)) {
-	Files.createDirectories(outputDir);
+    } catch (Exception e) {
+      System.out.println("ERR accessing directories: " + e.getMessage());
+      return null;
+    } finally {
+      try {
+	if (wb != null) { wb.close(); }
+      } catch (Exception e) {
+	System.out.println("ERR closing work book " + e.getMessage());
       }
+    }
+  }
 
-      PrintWriter explanationWriter = new PrintWriter(new FileWriter(new File(outputDir.toFile(), "explanation.txt")));
+  /** Change the books named by the command line arguments with a set of
+   * rules and write the explanation.
+   * @param carg the command line arguments
+   * @param rules compiled from the WordChanges sheet
+   * @param force true to change every book no matter what the last run did
+   * @return false after saying why a book could not be changed
+   * @throws IOException if a folder or file cannot be read or written
+   * @throws InterruptedException if the thread is interrupted
+   */
+  static boolean changeBooks(MainArgs carg, RuleSet rules, boolean force)
+      throws IOException, InterruptedException {
+    String inputPath = (String)carg.get("inputPath");
+    String outputPath = (String)carg.get("outputPath");
+    String firstFile = (String)carg.get("firstFile");
+    int count = carg.getInt("count");
+    int threads = Math.max(1, carg.getInt("threads"));
+    boolean pipeline = carg.getBoolean("pipeline");
+    String corpusPath = (String)carg.get("corpus");
 
-      int processed = 0;
-      List<Path> txtFiles = new ArrayList<>();
+    Path inputDir = Paths.get(inputPath);
+    CorpusFile corpus = null;
+    if ((corpusPath != null) && !corpusPath.isEmpty()) {
+      /* Every book comes from one memory mapped file */
+      corpus = CorpusFile.open(Paths.get(corpusPath));
+    } else if (!Files.isDirectory(inputDir)) {
+      System.err.println("Input path is not a directory: " + inputDir);
+      return false;
+    }
+
+    Path outputDir = Paths.get(outputPath);
+    if (!Files.exists(outputDir)) {
+      Files.createDirectories(outputDir);
+    }
+    if (carg.getBoolean("stats")) {
+      /* Count from 0 on every run */
+      rules = rules.counting();
+    }
+
+    List<Path> txtFiles = new ArrayList<>();
+    if (corpus != null) {
+      for (String name : corpus.getBookNames()) { txtFiles.add(inputDir.resolve(name)); }
+    } else {
       java.util.stream.Stream<Path> stream = Files.list(inputDir);
       try {
 	stream.filter(p -> p.toString().toLowerCase().endsWith(".txt"))
@@ -119,106 +325,292 @@ public class GentlerKBJMain {
       } finally {
 	stream.close();
       }
+    }
 
-      txtFiles.sort((a, b) -> a.getFileName().toString().compareTo(b.getFileName().toString()));
+    txtFiles.sort((a, b) -> a.getFileName().toString().compareTo(b.getFileName().toString()));
 
-      boolean foundFirst = firstFile == null || firstFile.isEmpty();
+    boolean foundFirst = firstFile == null || firstFile.isEmpty();
 
-      for (Path inputFile : txtFiles) {
-	String fileName = inputFile.getFileName().toString();
-	if (!foundFirst) {
-	  if (fileName.equals(firstFile)) {
-	    foundFirst = true;
-	  } else {
-	    continue;
-	  }
+    List<Path> books = new ArrayList<>();
+    for (Path inputFile : txtFiles) {
+      String fileName = inputFile.getFileName().toString();
+      if (!foundFirst) {
+	if (fileName.equals(firstFile)) {
+	  foundFirst = true;
+	} else {
+	  continue;
 	}
+      }
 
-	if (processed >= count) {
-	  break;
-	}
+      if (books.size() >= count) {
+	break;
+      }
+      VerseRef.registerBook(fileName);
+      books.add(inputFile);
+    }
 
-	try {
-	  List<String> lines = Files.readAllLines(inputFile, StandardCharsets.UTF_8);
-	  List<String> out = new ArrayList<>(lines.size());
-	  for (String line : lines) {
-	    out.add(upgradeLine(fileName.substring(0, 2), line, wm));
-	    verseCount++;
+    ChangeLedger ledger = new ChangeLedger();
+    int processed = 0;
+    if (pipeline && (corpus != null)) {
+      System.err.println("Warning: +pipeline reads books from a folder, not from a corpus;"
+	  + " the books are changed without it.");
+    }
+    if (pipeline && (corpus == null)) {
+      /* One reader, one transformer and one writer overlap their work.
+       * The pipeline does not keep the ledgers and indexes of an
+       * incremental build, so the next run without it changes every book. */
+      Files.deleteIfExists(outputDir.resolve(IncrementalBuild.MANIFEST));
+      List<ChangeLedger> ledgers = null;
+      try {
+	ledgers = new BookPipeline(rules, outputDir).run(books);
+      } catch (IOException e) {
+	System.out.println("ERR processing books: " + e.getMessage());
+	e.printStackTrace();
+	return false;
+      }
+      for (int i = 0; i < books.size(); i++) {
+	Path inputFile = books.get(i);
+	ledger.merge(ledgers.get(i));
+	System.out.println("Processed: " + inputFile + " -> "
+	    + outputDir.resolve(inputFile.getFileName()));
+	processed++;
+      }
+    } else {
+      /* Each book is changed with its own ledger.  The ledgers are merged
+       * in book order so the explanation does not depend on which
+       * book finished first.  Books which have not changed since the
+       * last run keep their output and their saved ledger. */
+      IncrementalBuild build = new IncrementalBuild(outputDir, rules, force);
+      ForkJoinPool pool = new ForkJoinPool(threads);
+      try {
+	List<ForkJoinTask<ChangeLedger>> tasks = new ArrayList<>();
+	for (Path inputFile : books) {
+	  String name = inputFile.getFileName().toString();
+	  /* The books are changed as bytes and decoded only where they are not ASCII */
+	  if (corpus == null) {
+	    tasks.add(pool.submit(() -> build.processBookBytes(name,
+		AsciiLine.splitLines(Files.readAllBytes(inputFile)))));
+	  } else {
+	    CorpusFile source = corpus;
+	    tasks.add(pool.submit(() -> build.processBookBytes(name, source.getLineBytes(name))));
 	  }
-
-	  Path outputFile = outputDir.resolve(inputFile.getFileName());
-	  Files.write(outputFile, out, StandardCharsets.UTF_8);
-	  System.out.println("Processed: " + inputFile + " -> " + outputFile);
-	  processed++;
-	} catch (Exception e) {
-	  System.out.println("ERR processing " + inputFile + ": " + e.getMessage());
-	  e.printStackTrace();
-	  System.exit(1);
 	}
-      }
-      explanationWriter.println("#" + processed + " files processed,"
-	  + " " + WordUpgradeUtils.verseChanges.size()
-	  + " verses changed out of " + verseCount + ".");
-      for (String v : WordUpgradeUtils.verseChanges) {
-	explanationWriter.print(v + "_");
-      }
-      explanationWriter.println("\n");
-
-      // Get keys in order
-      Set<String> keys = WordUpgradeUtils.wordChanges.keySet();
-      for (String key : keys) {
-	explanationWriter.print(key + ": ");
-	StringBuilder sb = WordUpgradeUtils.wordChanges.get(key);
-	if (sb != null) {
-	  explanationWriter.println(sb.toString());
-	  if (sb.length() > 5) {
-	    explanationWriter.println();
+	for (int i = 0; i < books.size(); i++) {
+	  Path inputFile = books.get(i);
+	  try {
+	    ledger.merge(tasks.get(i).get());
+	    System.out.println("Processed: " + inputFile + " -> "
+		+ outputDir.resolve(inputFile.getFileName()));
+	    processed++;
+	  } catch (ExecutionException e) {
+	    System.out.println("ERR processing " + inputFile + ": " + e.getCause().getMessage());
+	    e.getCause().printStackTrace();
+	    return false;
 	  }
 	}
+      } finally {
+	pool.shutdown();
       }
-      explanationWriter.close();
-      System.out.println("Finished processing.");
-    } catch (Exception e) {
-      System.out.println("ERR accessing directories: " + e.getMessage());
-      System.exit(1);
-    } finally {
-      try {
-	if (wb != null) { wb.close(); }
-      } catch (Exception e) {
-	System.out.println("ERR closing work book " + e.getMessage());
+      build.save();
+      if (build.upToDate.get() > 0) {
+	System.out.println(build.upToDate.get() + " books were already up to date.");
       }
+      if (build.updated.get() > 0) {
+	System.out.println(build.versesUpdated.get() + " verses affected by changed rules were changed again in "
+	    + build.updated.get() + " books.");
+      }
+    }
+    Path explanationFile = outputDir.resolve("explanation.txt");
+    reportNewSuffixChanges(rules, ledger, explanationFile);
+    StringWriter explanation = new StringWriter();
+    PrintWriter explanationWriter = new PrintWriter(explanation);
+    ledger.writeExplanation(explanationWriter, processed);
+    explanationWriter.close();
+    IncrementalBuild.writeIfChanged(explanationFile,
+	explanation.toString().getBytes(Charset.defaultCharset()));
+    if (rules.stats != null) {
+      try (PrintWriter statsWriter = new PrintWriter(Files.newBufferedWriter(
+	  outputDir.resolve(STATS_FILE), StandardCharsets.UTF_8))) {
+	rules.stats.write(statsWriter);
+      }
+      System.out.println("Wrote " + outputDir.resolve(STATS_FILE));
     }
+    System.out.println("Finished processing.");
+    return true;
   }
 
-  /** Given one verse, upgrade it by reading through the spreadsheet
-   * and changing words as called for by the spreadsheet
+  /** List the words which "Suffix" rules changed in this run but not in
+   * the last one, whose explanation is still in the output folder, so
+   * that a word the rule should not touch is seen the first time.
+   * @param rules compiled from the WordChanges sheet
+   * @param ledger changes made in this run
+   * @param explanationFile explanation of the last run, which may not exist
+   * @throws IOException if the explanation cannot be read
+   */
+  static void reportNewSuffixChanges(RuleSet rules, ChangeLedger ledger, Path explanationFile)
+      throws IOException {
+    Set<String> before = Files.isReadable(explanationFile)
+	? ChangeLedger.readChanges(Files.readAllLines(explanationFile, Charset.defaultCharset()))
+	: Collections.<String>emptySet();
+    List<String> changes = rules.suffixChanges(ledger.changes());
+    changes.removeAll(before);
+    if (!changes.isEmpty()) {
+      System.out.println("Suffix rules changed " + changes.size() + " words for the first time: "
+	  + String.join(", ", changes));
+    }
+  }
+
+  /** Change the words in one book and write it to the output folder
+   * under the same file name.
+   * @param inputFile book to read
+   * @param outputDir folder where the changed book is written
+   * @param rules compiled from the WordChanges sheet
+   * @return ledger of the changes made to this book
+   * @throws IOException if the book cannot be read or written
+   */
+  public static ChangeLedger processBook(Path inputFile, Path outputDir, RuleSet rules)
+      throws IOException {
+    return processBook(inputFile.getFileName().toString(),
+	Files.readAllLines(inputFile, StandardCharsets.UTF_8), outputDir, rules);
+  }
+
+  /** Change the words in the lines of one book and write it to the
+   * output folder.
+   * @param fileName name of the book file, such as 40MAT.TXT
+   * @param lines lines of the book, from its file or a corpus
+   * @param outputDir folder where the changed book is written
+   * @param rules compiled from the WordChanges sheet
+   * @return ledger of the changes made to this book
+   * @throws IOException if the book cannot be written
+   */
+  public static ChangeLedger processBook(String fileName, List<String> lines,
+      Path outputDir, RuleSet rules) throws IOException {
+    ChangeLedger ledger = new ChangeLedger();
+    String bkno = fileName.substring(0, 2);
+    List<String> out = new ArrayList<>(lines.size());
+    for (String line : lines) {
+      out.add(upgradeLine(bkno, line, rules, ledger));
+      ledger.verseCount++;
+    }
+    Files.write(outputDir.resolve(fileName), out, StandardCharsets.UTF_8);
+    return ledger;
+  }
+
+  /** Change the words in the lines of one book read as bytes and write
+   * it to the output folder, as {@link #processBook(String, List, Path, RuleSet)}
+   * does with Strings.  Lines which are pure ASCII are changed in place
+   * and written back as bytes, so they are never decoded.
+   * @param fileName name of the book file, such as 40MAT.TXT
+   * @param lines lines of the book as {@link AsciiLine#of} reads them, or Strings
+   * @param outputDir folder where the changed book is written
+   * @param rules compiled from the WordChanges sheet
+   * @return ledger of the changes made to this book
+   * @throws IOException if the book cannot be written
+   */
+  public static ChangeLedger processBookBytes(String fileName, List<? extends CharSequence> lines,
+      Path outputDir, RuleSet rules) throws IOException {
+    ChangeLedger ledger = new ChangeLedger();
+    String bkno = fileName.substring(0, 2);
+    byte[] separator = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+    ByteArrayOutputStream out = new ByteArrayOutputStream(200 * lines.size() + 64);
+    for (CharSequence line : lines) {
+      upgradeLine(bkno, line, rules, ledger, out);
+      out.write(separator, 0, separator.length);
+      ledger.verseCount++;
+    }
+    Files.write(outputDir.resolve(fileName), out.toByteArray());
+    return ledger;
+  }
+
+  /** Given one verse, upgrade it by changing words as called for by the
+   * rules.  The matcher tells which rules have any chance of applying and
+   * only those are tried, in sheet order.  Each edit can create or destroy
+   * matches for later rules, so the line is scanned again after every edit.
    * @param bkno 2-digit book number
    * @param line original verse
-   * @param wm workbook manager
+   * @param rules compiled from the WordChanges sheet
+   * @param ledger where changes are recorded
    * @return modified line of text
    */
-  public static String upgradeLine(String bkno, String line, WorkbookManager wm) {
+  public static String upgradeLine(String bkno, String line, RuleSet rules,
+      ChangeLedger ledger) {
     PassingItems pi = new PassingItems(line, "w", "w");
     pi.bkno = bkno;
-    for (int i = wm.sheet.getFirstRowNum(); i <= wm.sheet.getLastRowNum(); i++) {
-      Row row = wm.sheet.getRow(i);
-      String oldWord = SSU.getFormattedCell(0, row);
-      if ((oldWord == null) || oldWord.startsWith("#")) { continue; }
-      String newWord = SSU.getFormattedCell(1, row);
-      String verb = SSU.getFormattedCell(2, row);
-      if ((newWord == null) || (newWord.length() <= 0)) { break; }
-      pi.setWords(oldWord, newWord);
-      if ((verb != null) && ("Not mark".equals(verb))) {
+    pi.ledger = ledger;
+    applyRules(pi, rules.findRules(pi.text), rules);
+    return pi.getEditedLine();
+  }
+
+  /** Upgrade one verse as {@link #upgradeLine(String, String, RuleSet, ChangeLedger)}
+   * does and write it as UTF-8.  A verse read in place as an AsciiLine is
+   * scanned a byte at a time and, if no rule can apply, copied as it is
+   * without making a PassingItems; if it is changed, the edits refer to
+   * its bytes and only the new words are Strings.  Any other verse is
+   * changed as a String.
+   * @param bkno 2-digit book number
+   * @param line original verse, an AsciiLine if it is pure ASCII
+   * @param rules compiled from the WordChanges sheet
+   * @param ledger where changes are recorded
+   * @param out where the modified line is written, without a line end
+   */
+  public static void upgradeLine(String bkno, CharSequence line, RuleSet rules,
+      ChangeLedger ledger, ByteArrayOutputStream out) {
+    if (!(line instanceof AsciiLine)) {
+      byte[] bytes = upgradeLine(bkno, line.toString(), rules, ledger)
+	  .getBytes(StandardCharsets.UTF_8);
+      out.write(bytes, 0, bytes.length);
+      return;
+    }
+    AsciiLine ascii = (AsciiLine)line;
+    int ix = PassingItems.referenceLength(ascii);
+    if (ix > 0) {
+      AsciiLine text = ascii.subSequence(ix + 2, ascii.length());
+      BitSet hits = rules.findRules(text);
+      if (hits.isEmpty()) {
+	/* As getEditedLine would write it */
+	ascii.subSequence(0, ix + 2).writeTo(out, false);
+	text.writeTo(out, true);
+	return;
+      }
+    }
+    PassingItems pi = new PassingItems(ascii, "w", "w");
+    pi.bkno = bkno;
+    pi.ledger = ledger;
+    applyRules(pi, rules.findRules(pi.text), rules);
+    pi.writeEditedLine(out);
+  }
+
+  /** Try each rule the matcher found in a verse, in sheet order
+   * @param pi the verse
+   * @param hits rules whose old words or patterns are in the verse
+   * @param rules compiled from the WordChanges sheet
+   */
+  private static void applyRules(PassingItems pi, BitSet hits, RuleSet rules) {
+    RuleStats stats = rules.stats;
+    for (int i = hits.nextSetBit(0); i >= 0; i = hits.nextSetBit(i + 1)) {
+      Rule rule = rules.get(i);
+      int edits = pi.edits;
+      long start = (stats == null) ? 0 : System.nanoTime();
+      boolean inScope = true;
+      pi.setRule(rule);
+      if (rule.suffix) {
+	WordUpgradeUtils.changeSuffix(pi, rule);
+      } else if (rule.regex) {
+	WordUpgradeUtils.changePattern(pi, rule);
+      } else if (rule.notMark) {
 	WordUpgradeUtils.replaceWord(pi);
-      } else if ((verb != null) && verb.startsWith("Only in")) {
-	/* Modernize the word only in specified verses */
-	if (verb.indexOf(pi.bookChapVerse) > 0) {
-	  WordUpgradeUtils.modernizeWord(pi);
-	}
-      } else {
+      } else if (rule.appliesTo(pi)) {
+	/* Modernize the word unless the verse is out of the rule's scope */
 	WordUpgradeUtils.modernizeWord(pi);
+      } else {
+	inScope = false;
+      }
+      if (stats != null) {
+	stats.record(i, inScope, pi.edits - edits, System.nanoTime() - start);
+      }
+      if (pi.edits != edits) {
+	hits = rules.findRules(pi.text);
       }
     }
-    return pi.getEditedLine();
   }
 }
@@ -0,0 +1,239 @@
+package asst.gentlerKJB;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import asst.common.BuildManifest;
+import asst.gentlerKJB.utils.AsciiLine;
+import asst.gentlerKJB.utils.ChangeLedger;
+import asst.gentlerKJB.utils.RuleDiff;
+import asst.gentlerKJB.utils.RuleSet;
+import asst.gentlerKJB.utils.WordIndex;
+
+/** Change only the books whose text or rules changed since the last run
+ * into the same output folder.  A manifest in the output folder records
+ * the hash of the rule set and of each book as it was read, and the
+ * ledger of each book is kept next to it so that explanation.txt can be
+ * written again without changing the book again.  A book which is up to
+ * date is not written, so its file keeps its timestamp.
+ *
+ * <p>When only the rules changed, the rules of the last run, which are
+ * kept in the output folder, are compared with the rules now by
+ * {@link RuleDiff}, and an inverted index of each book written when it was
+ * last changed finds the verses which contain the old words that
+ * differ.  Only those verses are changed again; every other line is
+ * taken from the book as the last run wrote it and their changes are
+ * kept in the ledger.</p>
+ *
+ * <p>The manifest, ledger, rules and index files do not end in .txt, so
+ * formatWord does not take them for books.</p>
+ * @author Material Gain
+ * @since 2026 10
+ */
+public class IncrementalBuild {
+  /** Name of the manifest in the output folder */
+  public static final String MANIFEST = "gentlerKJB.manifest";
+  /** Added to the book file name to name its ledger */
+  public static final String LEDGER_SUFFIX = ".ledger";
+  /** Added to the book file name to name its word index */
+  public static final String INDEX_SUFFIX = ".index";
+  /** Name of the file in the output folder which keeps the rules */
+  public static final String RULES = "gentlerKJB.rules";
+
+  private final Path outputDir;
+  private final RuleSet rules;
+  private final BuildManifest manifest;
+  /** True if every book has to be changed again */
+  private final boolean all;
+  /** Old words whose verses have to be changed again in a book whose
+   * text did not change, or null if there are none */
+  private final Set<String> changedWords;
+  /** Number of books which were up to date */
+  public final AtomicInteger upToDate = new AtomicInteger();
+  /** Number of books in which only some verses were changed again */
+  public final AtomicInteger updated = new AtomicInteger();
+  /** Number of verses changed again in those books */
+  public final AtomicInteger versesUpdated = new AtomicInteger();
+
+  /**
+   * @param outputDir folder where the changed books are written
+   * @param rules compiled from the WordChanges sheet
+   * @param force true to change every book no matter what the manifest says
+   * @throws IOException if the manifest cannot be written
+   */
+  public IncrementalBuild(Path outputDir, RuleSet rules, boolean force) throws IOException {
+    this.outputDir = outputDir;
+    this.rules = rules;
+    this.manifest = new BuildManifest(outputDir.resolve(MANIFEST));
+    Set<String> words = null;
+    boolean sameRules = manifest.matches("rules", rules.fingerprint);
+    if (!force && !sameRules && manifest.matches("snapshot", hashRules())) {
+      words = RuleDiff.changedWords(Files.readAllLines(outputDir.resolve(RULES),
+	  StandardCharsets.UTF_8), rules.snapshot());
+    }
+    this.changedWords = words;
+    this.all = force || (!sameRules && (words == null));
+    if (!sameRules) {
+      /* Until this run finishes the books match neither set of rules */
+      manifest.remove("rules");
+      manifest.remove("snapshot");
+      manifest.save();
+    }
+    manifest.put("rules", rules.fingerprint);
+  }
+
+  /**
+   * @return hash of the rules file in the output folder, or "" if there
+   * is none
+   */
+  private String hashRules() throws IOException {
+    Path file = outputDir.resolve(RULES);
+    return Files.isReadable(file) ? BuildManifest.hashFile(file) : "";
+  }
+
+  /** Change a book unless the output from the last run is still good
+   * @param fileName name of the book file, such as 40MAT.TXT
+   * @param lines lines of the book
+   * @return ledger of the changes made to the book
+   * @throws IOException if the book or its ledger cannot be written
+   */
+  public ChangeLedger processBook(String fileName, List<String> lines) throws IOException {
+    return processBook(fileName, BuildManifest.hashLines(lines), lines);
+  }
+
+  /** Change a book read as bytes unless the output from the last run is
+   * still good.  The book is changed a byte at a time where its lines are
+   * pure ASCII, and its lines are decoded only if some verses have to be
+   * changed again because the rules changed.
+   * @param fileName name of the book file, such as 40MAT.TXT
+   * @param bytes UTF-8 bytes of each line of the book
+   * @return ledger of the changes made to the book
+   * @throws IOException if the book or its ledger cannot be written
+   */
+  public ChangeLedger processBookBytes(String fileName, List<ByteBuffer> bytes)
+      throws IOException {
+    return processBook(fileName, BuildManifest.hashBuffers(bytes), AsciiLine.of(bytes));
+  }
+
+  /** Change a book unless the output from the last run is still good
+   * @param fileName name of the book file
+   * @param hash hash of the lines
+   * @param lines lines of the book, Strings or AsciiLines
+   */
+  private ChangeLedger processBook(String fileName, String hash,
+      List<? extends CharSequence> lines) throws IOException {
+    String key = "in." + fileName;
+    Path ledgerFile = outputDir.resolve(fileName + LEDGER_SUFFIX);
+    Path outputFile = outputDir.resolve(fileName);
+    if (!all && manifest.matches(key, hash) && Files.exists(outputFile)
+	&& Files.isReadable(ledgerFile)) {
+      try {
+	ChangeLedger ledger = ChangeLedger.read(Files.readAllLines(ledgerFile, StandardCharsets.UTF_8));
+	if (changedWords == null) {
+	  upToDate.incrementAndGet();
+	  return ledger;
+	}
+	if (updateVerses(fileName, lines, ledger)) {
+	  writeLedger(ledgerFile, ledger);
+	  updated.incrementAndGet();
+	  return ledger;
+	}
+      } catch (IOException e) {
+	// change the book again
+      }
+    }
+    /* Until the book and its ledger are both written they do not match */
+    manifest.remove(key);
+    ChangeLedger ledger = GentlerKBJMain.processBookBytes(fileName, lines, outputDir, rules);
+    writeLedger(ledgerFile, ledger);
+    StringWriter sw = new StringWriter();
+    PrintWriter pw = new PrintWriter(sw);
+    WordIndex.build(lines).write(pw);
+    pw.close();
+    writeIfChanged(outputDir.resolve(fileName + INDEX_SUFFIX),
+	sw.toString().getBytes(StandardCharsets.UTF_8));
+    manifest.put(key, hash);
+    return ledger;
+  }
+
+  /** Change again only the verses of a book which contain one of the
+   * changed old words, taking the other lines from the book as the last
+   * run wrote it.
+   * @param fileName name of the book file
+   * @param lines original lines of the book
+   * @param ledger ledger of the last run, which is brought up to date
+   * @return false if the index or the book written by the last run does
+   * not fit the book, so that the whole book has to be changed
+   * @throws IOException if the book cannot be read or written
+   */
+  private boolean updateVerses(String fileName, List<? extends CharSequence> lines,
+      ChangeLedger ledger)
+      throws IOException {
+    Path indexFile = outputDir.resolve(fileName + INDEX_SUFFIX);
+    if (!Files.isReadable(indexFile)) { return false; }
+    WordIndex index = WordIndex.read(Files.readAllLines(indexFile, StandardCharsets.UTF_8));
+    List<String> out = Files.readAllLines(outputDir.resolve(fileName), StandardCharsets.UTF_8);
+    if ((index.lineCount != lines.size()) || (out.size() != lines.size())) { return false; }
+    BitSet verses = new BitSet();
+    for (String word : changedWords) { verses.or(index.find(word)); }
+
+    String bkno = fileName.substring(0, 2);
+    ChangeLedger again = new ChangeLedger();
+    for (int i = verses.nextSetBit(0); i >= 0; i = verses.nextSetBit(i + 1)) {
+      String line = lines.get(i).toString();
+      ledger.forget(bkno, line);
+      out.set(i, GentlerKBJMain.upgradeLine(bkno, line, rules, again));
+    }
+    ledger.merge(again);
+    versesUpdated.addAndGet(verses.cardinality());
+    /* As Files.write would write the lines */
+    StringBuilder sb = new StringBuilder();
+    for (String line : out) { sb.append(line).append(System.lineSeparator()); }
+    writeIfChanged(outputDir.resolve(fileName), sb.toString().getBytes(StandardCharsets.UTF_8));
+    return true;
+  }
+
+  private static void writeLedger(Path ledgerFile, ChangeLedger ledger) throws IOException {
+    StringWriter sw = new StringWriter();
+    PrintWriter pw = new PrintWriter(sw);
+    ledger.write(pw);
+    pw.close();
+    writeIfChanged(ledgerFile, sw.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  /** Write a file only if its content changed, so that an up to date
+   * file keeps its timestamp.
+   * @param file file to write
+   * @param content what belongs in it
+   * @return true if the file was written
+   * @throws IOException if it cannot be read or written
+   */
+  public static boolean writeIfChanged(Path file, byte[] content) throws IOException {
+    if (Files.exists(file) && Arrays.equals(Files.readAllBytes(file), content)) {
+      return false;
+    }
+    Files.write(file, content);
+    return true;
+  }
+
+  /** Write the rules and the manifest if they changed
+   * @throws IOException if they cannot be written
+   */
+  public void save() throws IOException {
+    StringBuilder sb = new StringBuilder();
+    for (String rule : rules.snapshot()) { sb.append(rule).append('\n'); }
+    writeIfChanged(outputDir.resolve(RULES), sb.toString().getBytes(StandardCharsets.UTF_8));
+    manifest.put("snapshot", hashRules());
+    manifest.save();
+  }
+}
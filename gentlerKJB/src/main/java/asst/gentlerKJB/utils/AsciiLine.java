@@ -0,0 +1,154 @@
+package asst.gentlerKJB.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/** A line of pure ASCII text read in place from its bytes, so that a
+ * book can be searched and changed without decoding it into Strings and
+ * encoding it again to write it.  Each byte is one character.  The bytes
+ * may be a slice of a book read with <code>Files.readAllBytes</code> or
+ * of a memory mapped corpus, and are never changed.
+ *
+ * <p>Only lines with no byte above 127 may be read this way; anything else
+ * is decoded as UTF-8 by {@link #of}, so a book with a few accented names
+ * or typographic quotes still has all of its other lines read in place.</p>
+ *
+ * <p>This is safe for threads as long as the bytes do not change.</p>
+ * @author Material Gain
+ * @since 2026 10
+ */
+public class AsciiLine implements CharSequence {
+  /** The bytes, read by absolute position so the buffer is not moved */
+  public final ByteBuffer bytes;
+  /** Where the line starts in the bytes */
+  public final int offset;
+  /** Number of bytes in the line */
+  private final int length;
+
+  /**
+   * @param bytes the bytes, which must all be ASCII from offset on for length
+   * @param offset where the line starts
+   * @param length number of bytes in the line
+   */
+  public AsciiLine(ByteBuffer bytes, int offset, int length) {
+    this.bytes = bytes;
+    this.offset = offset;
+    this.length = length;
+  }
+
+  /** Read a line in place if it is pure ASCII, otherwise decode it.
+   * @param line the bytes of one line from its position to its limit,
+   * without its line end
+   * @return an AsciiLine or a String
+   */
+  public static CharSequence of(ByteBuffer line) {
+    int from = line.position();
+    int to = line.limit();
+    for (int i = from; i < to; i++) {
+      if (line.get(i) < 0) {
+	ByteBuffer view = line.duplicate();
+	return StandardCharsets.UTF_8.decode(view).toString();
+      }
+    }
+    return new AsciiLine(line, from, to - from);
+  }
+
+  /** Read each line of a book with {@link #of}
+   * @param lines bytes of each line
+   * @return the lines, which are AsciiLines where they can be
+   */
+  public static List<CharSequence> of(List<ByteBuffer> lines) {
+    List<CharSequence> list = new ArrayList<CharSequence>(lines.size());
+    for (ByteBuffer line : lines) { list.add(of(line)); }
+    return list;
+  }
+
+  /** Split the bytes of a book file into lines at each \n, \r or \r\n as
+   * <code>Files.readAllLines</code> does, without decoding them.
+   * @param book the whole file
+   * @return a slice of the file for each line, without its line end
+   */
+  public static List<ByteBuffer> splitLines(byte[] book) {
+    List<ByteBuffer> lines = new ArrayList<ByteBuffer>();
+    ByteBuffer whole = ByteBuffer.wrap(book);
+    int start = 0;
+    for (int i = 0; i < book.length; i++) {
+      byte b = book[i];
+      if ((b != '\n') && (b != '\r')) { continue; }
+      lines.add(slice(whole, start, i));
+      if ((b == '\r') && (i + 1 < book.length) && (book[i + 1] == '\n')) { i++; }
+      start = i + 1;
+    }
+    if (start < book.length) { lines.add(slice(whole, start, book.length)); }
+    return lines;
+  }
+
+  private static ByteBuffer slice(ByteBuffer whole, int from, int to) {
+    ByteBuffer view = whole.duplicate();
+    view.limit(to);
+    view.position(from);
+    return view;
+  }
+
+  @Override
+  public int length() {
+    return length;
+  }
+
+  @Override
+  public char charAt(int index) {
+    if ((index < 0) || (index >= length)) {
+      throw new IndexOutOfBoundsException("Index " + index + " in " + length);
+    }
+    return (char)bytes.get(offset + index);
+  }
+
+  /**
+   * @param index position in the line, which must be in range
+   * @return the byte at the position, which is its character
+   */
+  public byte byteAt(int index) {
+    return bytes.get(offset + index);
+  }
+
+  @Override
+  public AsciiLine subSequence(int begin, int end) {
+    if ((begin < 0) || (end > length) || (begin > end)) {
+      throw new IndexOutOfBoundsException("Sub sequence " + begin + "-" + end + " of " + length);
+    }
+    return new AsciiLine(bytes, offset + begin, end - begin);
+  }
+
+  /** Write the line as it is
+   * @param out where the bytes go
+   * @param foldSpaces if true, each run of 3 spaces becomes 1 space as
+   * {@link EditBuffer#appendTo} does
+   */
+  public void writeTo(ByteArrayOutputStream out, boolean foldSpaces) {
+    byte[] copy = new byte[length];
+    int n = 0;
+    int spaces = 0;
+    for (int i = 0; i < length; i++) {
+      byte b = bytes.get(offset + i);
+      if (foldSpaces && (b == ' ')) {
+	spaces++;
+	continue;
+      }
+      for (int s = spaces / 3 + spaces % 3; s > 0; s--) { copy[n++] = ' '; }
+      spaces = 0;
+      copy[n++] = b;
+    }
+    for (int s = spaces / 3 + spaces % 3; s > 0; s--) { copy[n++] = ' '; }
+    out.write(copy, 0, n);
+  }
+
+  @Override
+  public String toString() {
+    byte[] copy = new byte[length];
+    for (int i = 0; i < length; i++) { copy[i] = bytes.get(offset + i); }
+    return new String(copy, StandardCharsets.US_ASCII);
+  }
+}
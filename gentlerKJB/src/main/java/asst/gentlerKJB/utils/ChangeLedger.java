@@ -0,0 +1,245 @@
+package asst.gentlerKJB.utils;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import asst.bible.VerseRef;
+import asst.bible.VerseSet;
+
+/** Record of which verses were changed and which verses each archaic
+ * word changed.  Verses are kept as packed VerseRef numbers, so the lists
+ * are in canonical order and are only turned into text when the
+ * explanation is written.  A ledger is not thread-safe, so each thread
+ * that changes verses keeps its own and the ledgers are merged afterwards.
+ * @author Material Gain
+ * @since 2026 10
+ */
+public class ChangeLedger {
+  /** Lines whose reference cannot be parsed are numbered from here up,
+   * after every real verse, in the order they were first changed. */
+  private static final int OTHER_BASE = 1 << 24;
+
+  /** Map which holds the verses changed on behalf of each archaic
+   * word. */
+  private final Map<String, VerseSet> wordChanges =
+      new TreeMap<String, VerseSet>();
+  /** All of the verses which were changed */
+  public final VerseSet verseChanges = new VerseSet();
+  /** Number of verses read, changed or not */
+  public int verseCount = 0;
+  /** Number given to each line whose reference cannot be parsed */
+  private final Map<String, Integer> otherIds = new HashMap<String, Integer>();
+  /** References of such lines, indexed by number - OTHER_BASE */
+  private final List<String> otherNames = new ArrayList<String>();
+
+  /** Note the change to the verse in the list of verses and the
+   * change on behalf of the old word.
+   * @param pi verse and words which changed it
+   */
+  public void record(PassingItems pi) {
+    int ref = pi.getVerseRef();
+    if (ref == VerseRef.NONE) {
+      ref = otherId(pi.bkno + pi.bookChapVerse);
+    }
+    verseChanges.add(ref);
+    cref(pi.oldWord + " -> " + pi.newWord).add(ref); // might replace more than once
+  }
+
+  private VerseSet cref(String wordKey) {
+    VerseSet list = wordChanges.get(wordKey);
+    if (list == null) {
+      list = new VerseSet();
+      wordChanges.put(wordKey, list);
+    }
+    return list;
+  }
+
+  private int otherId(String change) {
+    Integer id = otherIds.get(change);
+    if (id == null) {
+      id = OTHER_BASE + otherNames.size();
+      otherIds.put(change, id);
+      otherNames.add(change);
+    }
+    return id;
+  }
+
+  /**
+   * @param ref verse number used by this ledger
+   * @return the verse as it is listed in explanation.txt, as in "40MAT 1:18"
+   */
+  private String changeName(int ref) {
+    if (ref >= OTHER_BASE) { return otherNames.get(ref - OTHER_BASE); }
+    return VerseRef.toChange(ref);
+  }
+
+  /** Add the changes from a ledger which covers verses after all of the
+   * verses in this one.  Merging the ledgers of each book in book order
+   * gives the same ledger as changing the books one after the other.
+   * @param later ledger for later verses
+   */
+  public void merge(ChangeLedger later) {
+    int[] ids = new int[later.otherNames.size()];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = otherId(later.otherNames.get(i));
+    }
+    addAll(verseChanges, later.verseChanges, ids);
+    for (Map.Entry<String, VerseSet> e : later.wordChanges.entrySet()) {
+      addAll(cref(e.getKey()), e.getValue(), ids);
+    }
+    verseCount += later.verseCount;
+  }
+
+  /** Take a line out of every list so that it can be changed again and
+   * its new changes merged in.
+   * @param bkno 2-digit book number
+   * @param line original line of text
+   */
+  public void forget(String bkno, String line) {
+    PassingItems pi = new PassingItems(line, "w", "w");
+    pi.bkno = bkno;
+    int ref = pi.getVerseRef();
+    if (ref == VerseRef.NONE) {
+      Integer id = otherIds.get(pi.bkno + pi.bookChapVerse);
+      if (id == null) { return; } // never changed
+      ref = id;
+    }
+    if (!verseChanges.remove(ref)) { return; }
+    Iterator<VerseSet> lists = wordChanges.values().iterator();
+    while (lists.hasNext()) {
+      VerseSet list = lists.next();
+      if (list.remove(ref) && (list.size() == 0)) { lists.remove(); }
+    }
+  }
+
+  private static void addAll(VerseSet to, VerseSet from, int[] ids) {
+    for (int i = 0; i < from.size(); i++) {
+      int ref = from.get(i);
+      to.add((ref >= OTHER_BASE) ? ids[ref - OTHER_BASE] : ref);
+    }
+  }
+
+  /** List the verses changed on behalf of an archaic word the way they
+   * appear in the explanation file.
+   * @param wordKey old word -&gt; new word
+   * @return underscore-terminated verse references or null if the word
+   * changed nothing
+   */
+  public String getCrefs(String wordKey) {
+    VerseSet list = wordChanges.get(wordKey);
+    if (list == null) { return null; }
+    return listChanges(list);
+  }
+
+  private String listChanges(VerseSet list) {
+    StringBuilder sb = new StringBuilder(list.size() * 12);
+    for (int i = 0; i < list.size(); i++) {
+      sb.append(changeName(list.get(i))).append('_');
+    }
+    return sb.toString();
+  }
+
+  /** Write the ledger in a form which {@link #read} turns back into the
+   * same ledger, so that a book which has not changed need not be
+   * changed again.
+   * @param out where to write
+   */
+  public void write(PrintWriter out) {
+    out.println("count\t" + verseCount);
+    out.println("verses\t" + listChanges(verseChanges));
+    for (String key : wordChanges.keySet()) {
+      out.println("word\t" + key + "\t" + getCrefs(key));
+    }
+  }
+
+  /** Read a ledger written by {@link #write}
+   * @param lines lines of the written ledger
+   * @return the ledger
+   * @throws IOException if the lines are not a ledger
+   */
+  public static ChangeLedger read(List<String> lines) throws IOException {
+    ChangeLedger ledger = new ChangeLedger();
+    boolean counted = false;
+    for (String line : lines) {
+      String[] parts = line.split("\t", -1);
+      if ((parts.length == 2) && parts[0].equals("count")) {
+	try {
+	  ledger.verseCount = Integer.parseInt(parts[1]);
+	} catch (NumberFormatException e) {
+	  throw new IOException("Bad ledger line " + line);
+	}
+	counted = true;
+      } else if ((parts.length == 2) && parts[0].equals("verses")) {
+	ledger.readChanges(ledger.verseChanges, parts[1]);
+      } else if ((parts.length == 3) && parts[0].equals("word")) {
+	ledger.readChanges(ledger.cref(parts[1]), parts[2]);
+      } else if (!line.isEmpty()) {
+	throw new IOException("Bad ledger line " + line);
+      }
+    }
+    if (!counted) { throw new IOException("Ledger has no count"); }
+    return ledger;
+  }
+
+  /** Add verses listed as in the explanation file to a verse list */
+  private void readChanges(VerseSet list, String changes) {
+    for (String name : changes.split("_")) {
+      if (name.isEmpty()) { continue; }
+      int ref = VerseRef.parse(name);
+      list.add((ref == VerseRef.NONE) ? otherId(name) : ref);
+    }
+  }
+
+  /** @return every change made, as "knoweth -> knows", in order */
+  public Set<String> changes() {
+    return Collections.unmodifiableSet(wordChanges.keySet());
+  }
+
+  /** Read the changes listed in an explanation file written by
+   * {@link #writeExplanation}
+   * @param lines the lines of the file
+   * @return every change listed, as "knoweth -> knows"
+   */
+  public static Set<String> readChanges(List<String> lines) {
+    Set<String> changes = new TreeSet<String>();
+    for (String line : lines) {
+      int arrow = line.indexOf(" -> ");
+      int colon = (arrow < 0) ? -1 : line.indexOf(": ", arrow);
+      if (colon > 0) { changes.add(line.substring(0, colon)); }
+    }
+    return changes;
+  }
+
+  /** Write the explanation file which lists the changed verses and then
+   * the verses changed by each archaic word.
+   * @param explanationWriter where to write
+   * @param processed number of files processed
+   */
+  public void writeExplanation(PrintWriter explanationWriter, int processed) {
+    explanationWriter.println("#" + processed + " files processed,"
+	+ " " + verseChanges.size()
+	+ " verses changed out of " + verseCount + ".");
+    explanationWriter.print(listChanges(verseChanges));
+    explanationWriter.println("\n");
+
+    // Get keys in order
+    Set<String> keys = wordChanges.keySet();
+    for (String key : keys) {
+      explanationWriter.print(key + ": ");
+      String crefs = getCrefs(key);
+      explanationWriter.println(crefs);
+      if (crefs.length() > 5) {
+	explanationWriter.println();
+      }
+    }
+  }
+}
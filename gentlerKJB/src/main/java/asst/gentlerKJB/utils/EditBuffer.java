@@ -0,0 +1,270 @@
+package asst.gentlerKJB.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/** Piece table which holds the edits made to one verse without copying
+ * the verse for each edit.  The verse is a list of pieces, each of which
+ * is a range of either the original text or of a replacement string.  A
+ * replacement splits at most two pieces and inserts one, so nothing is
+ * copied until the finished line is wanted.
+ *
+ * <p>The buffer reads as the edited text through {@link CharSequence}
+ * so that it can be searched as it stands after the edits so far.  It
+ * remembers the piece it last read so that a forward scan does not have
+ * to search for the piece of every character.</p>
+ *
+ * <p>The original text may be an {@link AsciiLine} read in place from
+ * the bytes of a book, and {@link #writeTo} writes the edited line as
+ * bytes again, so a line which comes as bytes is never decoded.</p>
+ *
+ * <p>This is only safe for one thread at a time.</p>
+ * @author Material Gain
+ * @since 2026 10
+ */
+public class EditBuffer implements CharSequence {
+  /** Text which each piece is taken from */
+  private CharSequence[] text = new CharSequence[8];
+  /** Where each piece starts in its text */
+  private int[] from = new int[8];
+  /** Where each piece starts in the edited line */
+  private int[] start = new int[8];
+  /** Number of characters in each piece */
+  private int[] size = new int[8];
+  /** Number of pieces in use */
+  private int pieces = 0;
+  /** Length of the edited line */
+  private int length = 0;
+  /** Piece last read */
+  private int cursor = 0;
+
+  /**
+   * @param original the text before any edits
+   */
+  public EditBuffer(CharSequence original) {
+    if (original.length() > 0) {
+      addPiece(0, original, 0, original.length());
+      length = original.length();
+    }
+  }
+
+  @Override
+  public int length() {
+    return length;
+  }
+
+  @Override
+  public char charAt(int index) {
+    cursor = pieceAt(index, cursor);
+    return text[cursor].charAt(from[cursor] + index - start[cursor]);
+  }
+
+  @Override
+  public CharSequence subSequence(int begin, int end) {
+    return toString().substring(begin, end);
+  }
+
+  /** Replace part of the edited text
+   * @param ix where the part to be replaced starts in the edited text
+   * @param oldLength number of characters to be replaced, 0 to insert
+   * @param replacement text which takes their place
+   */
+  public void replace(int ix, int oldLength, String replacement) {
+    if ((ix < 0) || (oldLength < 0) || (ix + oldLength > length)) {
+      throw new IndexOutOfBoundsException("Replace " + ix + "+" + oldLength
+	  + " in " + length);
+    }
+    int first = split(ix);
+    int last = split(ix + oldLength);
+    removePieces(first, last - first);
+    if (replacement.length() > 0) {
+      addPiece(first, replacement, 0, replacement.length());
+      length += replacement.length();
+    }
+    renumber(first);
+    cursor = 0;
+  }
+
+  /** Insert text into the edited text
+   * @param ix where the text goes in the edited text
+   * @param insertion text to be inserted
+   */
+  public void insert(int ix, String insertion) {
+    replace(ix, 0, insertion);
+  }
+
+  /** Append the edited text to a builder
+   * @param sb where the text goes
+   * @param foldSpaces if true, each run of 3 spaces becomes 1 space as
+   * <code>replaceAll("   ", " ")</code> would do
+   * @return the builder
+   */
+  public StringBuilder appendTo(StringBuilder sb, boolean foldSpaces) {
+    int spaces = 0;
+    for (int p = 0; p < pieces; p++) {
+      if (!foldSpaces) {
+	sb.append(text[p], from[p], from[p] + size[p]);
+	continue;
+      }
+      for (int i = from[p]; i < from[p] + size[p]; i++) {
+	char ch = text[p].charAt(i);
+	if (ch == ' ') {
+	  spaces++;
+	  continue;
+	}
+	appendSpaces(sb, spaces);
+	spaces = 0;
+	sb.append(ch);
+      }
+    }
+    appendSpaces(sb, spaces);
+    return sb;
+  }
+
+  /** A run of spaces keeps one space for each group of 3 plus any left over */
+  private static void appendSpaces(StringBuilder sb, int spaces) {
+    for (int i = spaces / 3 + spaces % 3; i > 0; i--) { sb.append(' '); }
+  }
+
+  /** Write the edited text as UTF-8
+   * @param out where the bytes go
+   * @param foldSpaces if true, each run of 3 spaces becomes 1 space as
+   * {@link #appendTo} does
+   */
+  public void writeTo(ByteArrayOutputStream out, boolean foldSpaces) {
+    /* ASCII is one byte each and anything else at most three */
+    int room = length;
+    for (int p = 0; p < pieces; p++) {
+      for (int i = from[p]; i < from[p] + size[p]; i++) {
+	if (text[p].charAt(i) >= 0x80) { room += 2; }
+      }
+    }
+    byte[] bytes = new byte[room];
+    int n = 0;
+    int spaces = 0;
+    for (int p = 0; p < pieces; p++) {
+      for (int i = from[p]; i < from[p] + size[p]; i++) {
+	char ch = text[p].charAt(i);
+	if (foldSpaces && (ch == ' ')) {
+	  spaces++;
+	  continue;
+	}
+	for (int s = spaces / 3 + spaces % 3; s > 0; s--) { bytes[n++] = ' '; }
+	spaces = 0;
+	if (ch < 0x80) {
+	  bytes[n++] = (byte)ch;
+	} else if (ch < 0x800) {
+	  bytes[n++] = (byte)(0xc0 | (ch >> 6));
+	  bytes[n++] = (byte)(0x80 | (ch & 0x3f));
+	} else if (Character.isHighSurrogate(ch) && (i + 1 < from[p] + size[p])
+	    && Character.isLowSurrogate(text[p].charAt(i + 1))) {
+	  int cp = Character.toCodePoint(ch, text[p].charAt(++i));
+	  bytes[n++] = (byte)(0xf0 | (cp >> 18));
+	  bytes[n++] = (byte)(0x80 | ((cp >> 12) & 0x3f));
+	  bytes[n++] = (byte)(0x80 | ((cp >> 6) & 0x3f));
+	  bytes[n++] = (byte)(0x80 | (cp & 0x3f));
+	} else if (Character.isSurrogate(ch)) {
+	  bytes[n++] = '?'; // unpaired, as String.getBytes writes it
+	} else {
+	  bytes[n++] = (byte)(0xe0 | (ch >> 12));
+	  bytes[n++] = (byte)(0x80 | ((ch >> 6) & 0x3f));
+	  bytes[n++] = (byte)(0x80 | (ch & 0x3f));
+	}
+      }
+    }
+    for (int s = spaces / 3 + spaces % 3; s > 0; s--) { bytes[n++] = ' '; }
+    out.write(bytes, 0, n);
+  }
+
+  @Override
+  public String toString() {
+    return appendTo(new StringBuilder(length), false).toString();
+  }
+
+  /** Find the piece holding a character, trying the piece last read and
+   * the one after it before searching.
+   * @param index position in the edited text
+   * @param hint piece to try first
+   * @return piece number
+   */
+  private int pieceAt(int index, int hint) {
+    if ((index < 0) || (index >= length)) {
+      throw new IndexOutOfBoundsException("Index " + index + " in " + length);
+    }
+    if ((hint < pieces) && (index >= start[hint])) {
+      if (index < start[hint] + size[hint]) { return hint; }
+      if ((hint + 1 < pieces) && (index < start[hint + 1] + size[hint + 1])) {
+	return hint + 1;
+      }
+    }
+    int low = 0;
+    int high = pieces - 1;
+    while (low < high) {
+      int mid = (low + high + 1) >>> 1;
+      if (start[mid] <= index) {
+	low = mid;
+      } else {
+	high = mid - 1;
+      }
+    }
+    return low;
+  }
+
+  /** Make sure a piece starts at a position in the edited text
+   * @param ix position in the edited text
+   * @return number of the piece which starts there, or the number of
+   * pieces if ix is the end of the text
+   */
+  private int split(int ix) {
+    if (ix == length) { return pieces; }
+    int p = pieceAt(ix, cursor);
+    int offset = ix - start[p];
+    if (offset == 0) { return p; }
+    addPiece(p + 1, text[p], from[p] + offset, size[p] - offset);
+    start[p + 1] = ix;
+    size[p] = offset;
+    return p + 1;
+  }
+
+  /** Make room for a piece and fill it in; the caller sets its start
+   * and the length of the text. */
+  private void addPiece(int p, CharSequence source, int begin, int count) {
+    if (pieces == text.length) {
+      int grow = pieces * 2;
+      text = Arrays.copyOf(text, grow);
+      from = Arrays.copyOf(from, grow);
+      start = Arrays.copyOf(start, grow);
+      size = Arrays.copyOf(size, grow);
+    }
+    int move = pieces - p;
+    System.arraycopy(text, p, text, p + 1, move);
+    System.arraycopy(from, p, from, p + 1, move);
+    System.arraycopy(start, p, start, p + 1, move);
+    System.arraycopy(size, p, size, p + 1, move);
+    text[p] = source;
+    from[p] = begin;
+    size[p] = count;
+    pieces++;
+  }
+
+  private void removePieces(int p, int count) {
+    if (count == 0) { return; }
+    for (int i = p; i < p + count; i++) { length -= size[i]; }
+    int move = pieces - p - count;
+    System.arraycopy(text, p + count, text, p, move);
+    System.arraycopy(from, p + count, from, p, move);
+    System.arraycopy(start, p + count, start, p, move);
+    System.arraycopy(size, p + count, size, p, move);
+    pieces -= count;
+    for (int i = pieces; i < pieces + count; i++) { text[i] = null; }
+  }
+
+  /** Work out where the pieces start from a piece onward */
+  private void renumber(int p) {
+    int at = (p == 0) ? 0 : start[p - 1] + size[p - 1];
+    for (int i = p; i < pieces; i++) {
+      start[i] = at;
+      at += size[i];
+    }
+  }
+}
@@ -1,5 +1,10 @@
 package asst.gentlerKJB.utils;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import asst.bible.VerseRef;
+
 /** Class to hold a line of text and words being manipulated within it.
  * One instance is used for all the words in the list.
  * @author Material Gain
@@ -8,10 +13,11 @@ package asst.gentlerKJB.utils;
 public class PassingItems {
   /** A 2-digit book number to sort the verse references*/
   public String bkno;
-  /** The incoming text line in lower case*/
-  public String lineLowerCase;
-  /** The original incoming text line */
-  public String line;
+  /** The original incoming text line after its reference, which is not
+   * changed by edits.  It is an {@link AsciiLine} if the line came as bytes. */
+  public CharSequence line;
+  /** The text line with the edits made so far */
+  public EditBuffer text;
   /** The word to be matched in lower case */
   public String oldWord;
   /** The word which replaces the old word in lower case.  It will
@@ -20,8 +26,14 @@ public class PassingItems {
   public String newWord;
   /** Remember the chapter and verse for the line.  */
   public String bookChapVerse;
+  /** Book, chapter and verse packed by VerseRef, 0 until it is needed */
+  private int verseRef = 0;
   /** Set true if anything changed */
   public boolean isDirty = false;
+  /** Number of edits made to the line so far */
+  public int edits = 0;
+  /** Where changes to the line are recorded */
+  public ChangeLedger ledger = WordUpgradeUtils.ledger;
 
   /** Information about an input line, an old word, and the replacement
    * new word.
@@ -29,23 +41,36 @@ public class PassingItems {
    * @param oldWord word which will be replaced
    * @param newWord word which will replace the old word 
    */
-  public PassingItems(String line, String oldWord, String newWord) {
-    /* Line begins with 3 letter book name, space, chapter : verse and 
-     * 2 spaces */
-    int ix = line.indexOf("  ");
-    if (ix > 4) {
-      this.bookChapVerse = line.substring(0, ix);
-      this.line = line.substring(ix+2);
+  public PassingItems(CharSequence line, String oldWord, String newWord) {
+    int ix = referenceLength(line);
+    if (ix > 0) {
+      this.bookChapVerse = line.subSequence(0, ix).toString();
+      this.line = line.subSequence(ix+2, line.length());
     } else {
       /* This makes testing a bit easier.  */
       this.bookChapVerse = "None. ";
       this.line = line;
     }
-    this.lineLowerCase = this.line.toLowerCase();
+    this.text = new EditBuffer(this.line);
     this.oldWord = oldWord.toLowerCase().trim();
     this.newWord = newWord.toLowerCase().trim();
   }
  
+  /** Find the end of the reference at the start of a line.  A line
+   * begins with 3 letter book name, space, chapter : verse and 2 spaces.
+   * @param line line of a book
+   * @return length of the reference before the 2 spaces, or -1 if the line
+   * does not start with one
+   */
+  public static int referenceLength(CharSequence line) {
+    for (int ix = 0; ix + 1 < line.length(); ix++) {
+      if ((line.charAt(ix) == ' ') && (line.charAt(ix + 1) == ' ')) {
+	return (ix > 4) ? ix : -1;
+      }
+    }
+    return -1;
+  }
+
   /** Set the words for the next pass through the verse
    * @param oldWord archaic word
    * @param newWord replacement word
@@ -55,12 +80,45 @@ public class PassingItems {
     this.newWord = newWord.toLowerCase().trim();
   }
 
+  /** Set the words for the next pass through the verse from a rule
+   * whose words are already in lower case and trimmed.
+   * @param rule the rule to be applied next
+   */
+  public void setRule(Rule rule) {
+    this.oldWord = rule.oldWord;
+    this.newWord = rule.newWord;
+  }
+
+  /**
+   * @return the book number and bookChapVerse packed by VerseRef, or
+   * VerseRef.NONE if the line does not start with a reference
+   */
+  public int getVerseRef() {
+    if (verseRef == 0) {
+      verseRef = VerseRef.parse(bkno, bookChapVerse);
+    }
+    return verseRef;
+  }
+
   /**
    * @return the edited line with any required alterations
-   * made. 
+   * made and each run of 3 spaces made into 1.
    */
   public String getEditedLine() {
-    return bookChapVerse + "  " + line.replaceAll("   ", " ");
+    StringBuilder sb = new StringBuilder(bookChapVerse.length() + 2 + text.length() + 8);
+    sb.append(bookChapVerse).append("  ");
+    return text.appendTo(sb, true).toString();
+  }
+
+  /** Write the edited line as {@link #getEditedLine} makes it, as UTF-8
+   * @param out where the bytes go
+   */
+  public void writeEditedLine(ByteArrayOutputStream out) {
+    byte[] reference = bookChapVerse.getBytes(StandardCharsets.UTF_8);
+    out.write(reference, 0, reference.length);
+    out.write(' ');
+    out.write(' ');
+    text.writeTo(out, true);
   }
 
 }
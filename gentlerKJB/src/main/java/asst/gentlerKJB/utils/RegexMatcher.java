@@ -0,0 +1,182 @@
+package asst.gentlerKJB.utils;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/** Tells which "Regex" rules of the dictionary might match a verse
+ * without one search of the verse per rule.  Like {@link WordMatcher} it
+ * only tells which rules might apply; each rule is then tried with its
+ * own pattern, in sheet order.
+ *
+ * <p>Most patterns cannot match without some plain text, such as "with
+ * child" in "(?&lt;!great )with child" or "sa" in "sa(i|y)th".  That text
+ * is taken from each pattern when the matcher is built and all of it is
+ * put in one {@link WordMatcher}, which reads the verse once however many
+ * rules there are.  Only a rule whose text is in the verse is searched
+ * for with its own pattern, so a verse which holds none of the text costs
+ * the same with one rule or a hundred.  Each pattern is searched for on
+ * its own, so its groups, back references and inline flags mean what
+ * they mean in the sheet.</p>
+ *
+ * <p>A pattern with no such text, such as "\b(\w+)(?:eth|est)\b", is
+ * always tried, which is still one search per rule.  Putting all of
+ * those patterns in lookaheads of one combined pattern was measured with
+ * RegexBenchmark in gentlerBench and was two to three times slower than
+ * searching for each on its own, since every lookahead is still tried at
+ * every position of the verse.</p>
+ *
+ * <p>The matcher is immutable once built and may be shared by
+ * threads.</p>
+ * @author Material Gain
+ * @since 2026 10
+ */
+public class RegexMatcher {
+  /** Finds the text which each pattern in {@link #literalPatterns}
+   * cannot match without, or null if there are none */
+  private final WordMatcher literals;
+  /** Rule number of each pattern found by its text */
+  private final int[] literalRules;
+  /** Pattern of each rule found by its text */
+  private final Pattern[] literalPatterns;
+  /** Rules which are always tried */
+  private final BitSet alwaysCheck = new BitSet();
+
+  /**
+   * @param rules all of the rules, of which only the "Regex" rules are used
+   */
+  public RegexMatcher(List<Rule> rules) {
+    String[] texts = new String[rules.size()];
+    int[] textRules = new int[rules.size()];
+    Pattern[] textPatterns = new Pattern[rules.size()];
+    int count = 0;
+    for (int i = 0; i < rules.size(); i++) {
+      Rule rule = rules.get(i);
+      if (!rule.regex) { continue; }
+      String text = requiredText(rule.pattern.pattern());
+      if (text == null) {
+	alwaysCheck.set(i);
+	continue;
+      }
+      texts[count] = text;
+      textRules[count] = i;
+      textPatterns[count++] = rule.pattern;
+    }
+    literals = (count == 0) ? null : WordMatcher.fragments(Arrays.copyOf(texts, count));
+    literalRules = Arrays.copyOf(textRules, count);
+    literalPatterns = Arrays.copyOf(textPatterns, count);
+  }
+
+  /** Find the longest plain text which every match of a pattern contains.
+   * Only text outside groups counts, and only letters, digits and spaces,
+   * so that it can be looked for with case folded as {@link WordMatcher}
+   * folds it.  A character which is optional or repeated ends the text.
+   * @param pattern the pattern as written
+   * @return the text in lower case, or null if there is none, such as
+   * where the pattern is an alternation or sets flags that change what
+   * plain text means
+   */
+  static String requiredText(String pattern) {
+    if (pattern.contains("\\Q") || pattern.matches("(?s).*\\(\\?[a-zA-Z-]*x.*")) {
+      return null;
+    }
+    String best = "";
+    StringBuilder run = new StringBuilder();
+    int depth = 0;
+    for (int i = 0; i < pattern.length(); i++) {
+      char ch = pattern.charAt(i);
+      if (ch == '\\') {
+	/* An escape such as \w or \. ends the text */
+	best = longer(best, run);
+	i++;
+      } else if (ch == '[') {
+	best = longer(best, run);
+	i = endOfClass(pattern, i);
+      } else if (ch == '(') {
+	best = longer(best, run);
+	depth++;
+      } else if (ch == ')') {
+	best = longer(best, run);
+	depth--;
+      } else if (depth > 0) {
+	continue;
+      } else if (ch == '|') {
+	return null;
+      } else if ((ch == '?') || (ch == '*') || (ch == '{')) {
+	/* The character before may not be there */
+	if (run.length() > 0) { run.setLength(run.length() - 1); }
+	best = longer(best, run);
+	if (ch == '{') {
+	  int close = pattern.indexOf('}', i);
+	  i = (close < 0) ? pattern.length() : close;
+	}
+      } else if (ch == '+') {
+	best = longer(best, run);
+      } else if ((ch < 128) && (Character.isLetterOrDigit(ch) || (ch == ' '))) {
+	run.append(WordUpgradeUtils.toLowerCase(ch));
+      } else {
+	best = longer(best, run);
+      }
+    }
+    best = longer(best, run);
+    return best.trim().isEmpty() ? null : best;
+  }
+
+  /** Keep the longer of the best text so far and the text just ended,
+   * which is cleared */
+  private static String longer(String best, StringBuilder run) {
+    String text = run.toString();
+    run.setLength(0);
+    return (text.length() > best.length()) ? text : best;
+  }
+
+  /** Find the ] which ends a character class, which may hold others
+   * @param pattern the pattern
+   * @param start index of the [ which starts the class
+   * @return index of the ] which ends it, or the end of the pattern
+   */
+  private static int endOfClass(String pattern, int start) {
+    int depth = 0;
+    for (int i = start; i < pattern.length(); i++) {
+      char ch = pattern.charAt(i);
+      if (ch == '\\') {
+	i++;
+      } else if (ch == '[') {
+	depth++;
+      } else if ((ch == ']') && (i > start + 1) && (--depth == 0)) {
+	return i;
+      }
+    }
+    return pattern.length();
+  }
+
+  /** Find the rules which might apply to a verse
+   * @param text the verse in any case
+   * @return numbers of the rules whose patterns match somewhere in it,
+   * and of the rules which are always tried
+   */
+  public BitSet findRules(CharSequence text) {
+    BitSet found = (BitSet)alwaysCheck.clone();
+    if (literals != null) { confirm(literals.findWords(text), text, found); }
+    return found;
+  }
+
+  /** Find the rules which might apply to a verse read in place
+   * @param text the verse in any case
+   * @return numbers of the rules whose patterns match somewhere in it,
+   * and of the rules which are always tried
+   */
+  public BitSet findRules(AsciiLine text) {
+    BitSet found = (BitSet)alwaysCheck.clone();
+    if (literals != null) { confirm(literals.findWords(text), text, found); }
+    return found;
+  }
+
+  /** Try the pattern of each rule whose text is in the verse */
+  private void confirm(BitSet hits, CharSequence text, BitSet found) {
+    for (int i = hits.nextSetBit(0); i >= 0; i = hits.nextSetBit(i + 1)) {
+      if (literalPatterns[i].matcher(text).find()) { found.set(literalRules[i]); }
+    }
+  }
+}
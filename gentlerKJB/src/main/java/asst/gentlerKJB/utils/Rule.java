@@ -0,0 +1,162 @@
+package asst.gentlerKJB.utils;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/** One row of the WordChanges sheet, read once when the dictionary is
+ * loaded.  The words are stored in lower case with the blanks trimmed,
+ * which is how they are compared with the text.
+ * @author Material Gain
+ * @since 2026 10
+ */
+public class Rule {
+  /** Verb of a rule which changes the ending of every word with the old
+   * ending, such as "-eth" to "-s", optionally followed by "except" and
+   * words which are not changed */
+  public static final String SUFFIX = "Suffix";
+  /** Fewest letters a word must keep before the ending for a "Suffix"
+   * rule to change it, so that teeth, Seth and Heth are left alone */
+  public static final int MIN_STEM = 3;
+  /** Verb of a rule whose old word is a regular expression, which is
+   * changed as a word is changed by a rule with no verb */
+  public static final String REGEX = "Regex";
+  /** Flags of the pattern of every "Regex" rule, which is matched in any
+   * case as an old word is */
+  public static final int REGEX_FLAGS = Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE;
+
+  /** The archaic word or phrase in lower case */
+  public final String oldWord;
+  /** The word or phrase which replaces it in lower case */
+  public final String newWord;
+  /** The verb column exactly as it was in the sheet, may be null */
+  public final String verb;
+  /** True if the old word is replaced without being kept in [] */
+  public final boolean notMark;
+  /** True if the old word is changed only in the verses listed in the verb */
+  public final boolean onlyIn;
+  /** True if the old word is changed except in the verses listed in the verb */
+  public final boolean notIn;
+  /** Verses listed in the verb of an "Only in" or "Not in" rule, else null */
+  public final VerseScope scope;
+  /** True if the old and new words are endings of words rather than words */
+  public final boolean suffix;
+  /** Words in lower case which a "Suffix" rule does not change, empty for
+   * any other rule */
+  public final Set<String> exceptions;
+  /** True if the old word is a regular expression */
+  public final boolean regex;
+  /** The old word of a "Regex" rule compiled, else null */
+  public final Pattern pattern;
+
+  /**
+   * @param oldWord archaic word or phrase, or a regular expression which
+   * is kept as it is written, since \W and \w differ
+   * @param newWord replacement word or phrase
+   * @param verb "Not mark", "Only in" or "Not in" followed by a verse
+   * list, "Suffix" optionally followed by "except" and a list of words,
+   * "Regex", or anything else, including null, to mark the old word in []
+   * @throws IllegalArgumentException if the old ending of a "Suffix" rule
+   * is not made of word characters or the pattern of a "Regex" rule cannot
+   * be compiled
+   */
+  public Rule(String oldWord, String newWord, String verb) {
+    this.suffix = (verb != null) && verb.startsWith(SUFFIX);
+    this.regex = REGEX.equals(verb);
+    if (regex) {
+      this.oldWord = oldWord.trim();
+      this.pattern = Pattern.compile(this.oldWord, REGEX_FLAGS);
+    } else {
+      this.oldWord = suffix ? ending(oldWord) : oldWord.toLowerCase().trim();
+      this.pattern = null;
+    }
+    this.newWord = suffix ? ending(newWord) : newWord.toLowerCase().trim();
+    this.verb = verb;
+    if (suffix) {
+      if (this.oldWord.isEmpty()) {
+	throw new IllegalArgumentException("Suffix rule " + oldWord + " has no ending");
+      }
+      for (int i = 0; i < this.oldWord.length(); i++) {
+	if (!WordUpgradeUtils.isWordChar(this.oldWord.charAt(i))) {
+	  throw new IllegalArgumentException("Suffix rule " + oldWord
+	      + " must end words with letters");
+	}
+      }
+      this.exceptions = readExceptions(verb.substring(SUFFIX.length()).trim());
+    } else {
+      this.exceptions = Collections.emptySet();
+    }
+    this.notMark = "Not mark".equals(verb);
+    this.onlyIn = !notMark && (verb != null) && verb.startsWith("Only in");
+    this.notIn = !notMark && (verb != null) && verb.startsWith("Not in");
+    if (onlyIn) {
+      scope = new VerseScope(verb.substring("Only in".length()));
+    } else if (notIn) {
+      scope = new VerseScope(verb.substring("Not in".length()));
+    } else {
+      scope = null;
+    }
+  }
+
+  /** Copy a "Suffix" rule with more exceptions */
+  private Rule(Rule rule, Set<String> more) {
+    oldWord = rule.oldWord;
+    newWord = rule.newWord;
+    verb = rule.verb;
+    notMark = rule.notMark;
+    onlyIn = rule.onlyIn;
+    notIn = rule.notIn;
+    scope = rule.scope;
+    suffix = rule.suffix;
+    regex = rule.regex;
+    pattern = rule.pattern;
+    Set<String> words = new HashSet<String>(rule.exceptions);
+    words.addAll(more);
+    exceptions = Collections.unmodifiableSet(words);
+  }
+
+  /** Get the same rule with more words it does not change
+   * @param more words in lower case
+   * @return the new rule
+   */
+  public Rule except(Set<String> more) {
+    return new Rule(this, more);
+  }
+
+  /** An ending as it is written in the sheet, "-eth" or "eth"
+   * @return the ending in lower case without the - */
+  private static String ending(String word) {
+    String ending = word.toLowerCase().trim();
+    return ending.startsWith("-") ? ending.substring(1).trim() : ending;
+  }
+
+  /** Read the words after "except" in the verb of a "Suffix" rule
+   * @param list what follows "Suffix" in the verb
+   * @return the words in lower case
+   */
+  private static Set<String> readExceptions(String list) {
+    Set<String> words = new HashSet<String>();
+    if (list.startsWith("except")) { list = list.substring("except".length()); }
+    for (String word : list.split("[,;]")) {
+      word = word.toLowerCase().trim();
+      if (!word.isEmpty()) { words.add(word); }
+    }
+    return Collections.unmodifiableSet(words);
+  }
+
+  /** Tell whether the rule may change a verse, which depends only on
+   * the verse list of an "Only in" or "Not in" rule.
+   * @param pi the verse being changed
+   * @return true if the rule applies to the verse
+   */
+  public boolean appliesTo(PassingItems pi) {
+    if (scope == null) { return true; }
+    return scope.contains(pi.getVerseRef()) == onlyIn;
+  }
+
+  @Override
+  public String toString() {
+    return suffix ? "-" + oldWord + " -> -" + newWord : oldWord + " -> " + newWord;
+  }
+}
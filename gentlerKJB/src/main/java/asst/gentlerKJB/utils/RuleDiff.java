@@ -0,0 +1,135 @@
+package asst.gentlerKJB.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/** Compare the rules of the last run with the rules now to find the old
+ * words whose verses have to be changed again.  Rules are compared as
+ * the lines of {@link RuleSet#snapshot}.
+ *
+ * <p>A verse can only come out differently if a rule which was added,
+ * removed or modified could have changed it, which means that the old
+ * word of that rule was in the verse when the rule was tried.  It might
+ * have been in the original verse or it might have been put there by an
+ * earlier rule, so the old words of rules whose new words share a word
+ * with an old word already on the list are added to it too, and so on
+ * until nothing more is added.  A rule whose words start or end with
+ * something other than a word character might join two words into one,
+ * so it is added whenever anything is.</p>
+ *
+ * <p>Rules are tried in sheet order, so if the rules which are in both
+ * lists are not in the same order the whole book has to be changed
+ * again.  A "Suffix" rule changes words which cannot be listed, such as
+ * every word ending in "eth", and a "Regex" rule matches text which
+ * cannot be looked up by its words, so if there is either in either
+ * list and anything changed the whole book has to be changed again too.</p>
+ * @author Material Gain
+ * @since 2026 10
+ */
+public class RuleDiff {
+  /** Find the old words whose verses have to be changed again
+   * @param before rules of the last run
+   * @param after rules now
+   * @return old words in lower case, empty if no verse can change, or null
+   * if the rules were moved or there are "Suffix" or "Regex" rules and
+   * every verse has to be changed again
+   */
+  public static Set<String> changedWords(List<String> before, List<String> after) {
+    List<String> kept = new ArrayList<String>();
+    List<String> changed = new ArrayList<String>();
+    split(before, after, kept, changed);
+    List<String> keptAfter = new ArrayList<String>();
+    split(after, before, keptAfter, changed);
+    if (!kept.equals(keptAfter)) { return null; }
+
+    Set<String> oldWords = new HashSet<String>();
+    Set<String> words = new HashSet<String>();
+    for (String rule : changed) {
+      String oldWord = field(rule, 0);
+      if (oldWords.add(oldWord)) { words.addAll(WordIndex.words(oldWord)); }
+    }
+    if (oldWords.isEmpty()) { return oldWords; }
+    for (String rule : before) {
+      if (!isListed(rule)) { return null; }
+    }
+    for (String rule : after) {
+      if (!isListed(rule)) { return null; }
+    }
+
+    /* Add the rules which could put one of the words into a verse */
+    List<String> all = new ArrayList<String>(before);
+    all.addAll(after);
+    boolean added = true;
+    while (added) {
+      added = false;
+      for (String rule : all) {
+	String oldWord = field(rule, 0);
+	if (oldWords.contains(oldWord)) { continue; }
+	String newWord = field(rule, 1);
+	boolean source = joins(oldWord) || joins(newWord);
+	for (String word : WordIndex.words(newWord)) {
+	  source |= words.contains(word);
+	}
+	if (source) {
+	  oldWords.add(oldWord);
+	  words.addAll(WordIndex.words(oldWord));
+	  added = true;
+	}
+      }
+    }
+    return oldWords;
+  }
+
+  /** Tell whether the verses a rule changes can be found by its words
+   * @param rule old word, new word and verb separated by tabs
+   * @return false for a "Suffix" or "Regex" rule
+   */
+  private static boolean isListed(String rule) {
+    String verb = field(rule, 2);
+    return !verb.startsWith(Rule.SUFFIX) && !Rule.REGEX.equals(verb);
+  }
+
+  /** Sort the rules of one list into those which are also in the other
+   * list and those which are not, counting repeated rules.
+   */
+  private static void split(List<String> rules, List<String> other,
+      List<String> kept, List<String> changed) {
+    Map<String, Integer> counts = new HashMap<String, Integer>();
+    for (String rule : other) {
+      Integer n = counts.get(rule);
+      counts.put(rule, (n == null) ? 1 : n + 1);
+    }
+    for (String rule : rules) {
+      Integer n = counts.get(rule);
+      if ((n == null) || (n == 0)) {
+	changed.add(rule);
+      } else {
+	counts.put(rule, n - 1);
+	kept.add(rule);
+      }
+    }
+  }
+
+  /**
+   * @param rule snapshot line of a rule
+   * @param ix 0 for the old word, 1 for the new word, 2 for the verb
+   * @return the field
+   */
+  private static String field(String rule, int ix) {
+    String[] parts = rule.split("\t", -1);
+    return (ix < parts.length) ? parts[ix] : "";
+  }
+
+  /**
+   * @param word old or new word of a rule
+   * @return true if putting the word next to other text might join words
+   */
+  private static boolean joins(String word) {
+    return word.isEmpty() || !WordUpgradeUtils.isWordChar(word.charAt(0))
+	|| !WordUpgradeUtils.isWordChar(word.charAt(word.length() - 1));
+  }
+}
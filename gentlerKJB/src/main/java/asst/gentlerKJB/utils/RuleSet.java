@@ -0,0 +1,181 @@
+package asst.gentlerKJB.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.poi.ss.usermodel.Row;
+
+import asst.common.BuildManifest;
+import asst.hssf.SSU;
+import asst.hssf.WorkbookManager;
+
+/** All of the rules from the WordChanges sheet in sheet order together
+ * with the matcher compiled from their old words.  It is built once at
+ * startup so that POI is never touched while verses are being changed,
+ * and it never changes afterwards so it may be shared by threads.
+ * @author Material Gain
+ * @since 2026 10
+ */
+public class RuleSet {
+  /** The rules in the order they are applied */
+  public final List<Rule> rules;
+  /** Finds which rules might apply to a line; word numbers are indexes
+   * into the rule list. */
+  public final WordMatcher matcher;
+  /** Finds which "Regex" rules might apply to a line, whose patterns are
+   * not in the matcher, or null if there are none */
+  public final RegexMatcher regexes;
+  /** Hash of the rules in order, which changes if any rule that is
+   * applied changes */
+  public final String fingerprint;
+  /** What each rule did, if the rules are being counted, else null */
+  public final RuleStats stats;
+
+  /** Read the rules from the current sheet.  Comment rows and rows without
+   * an old word are skipped and the list ends at the first row which has
+   * an old word but no new word.  Items of an "Only in" or "Not in" verse
+   * list which cannot be read are reported with their row.
+   * @param wm workbook manager whose current sheet is WordChanges
+   */
+  public RuleSet(WorkbookManager wm) {
+    List<Rule> list = new ArrayList<Rule>();
+    for (int i = wm.sheet.getFirstRowNum(); i <= wm.sheet.getLastRowNum(); i++) {
+      Row row = wm.sheet.getRow(i);
+      String oldWord = SSU.getFormattedCell(0, row);
+      if ((oldWord == null) || oldWord.startsWith("#")) { continue; }
+      String newWord = SSU.getFormattedCell(1, row);
+      if ((newWord == null) || (newWord.length() <= 0)) { break; }
+      Rule rule = new Rule(oldWord, newWord, SSU.getFormattedCell(2, row));
+      if ((rule.scope != null) && !rule.scope.unread.isEmpty()) {
+	System.err.println("Warning: row " + (i + 1) + " of " + wm.sheet.getSheetName()
+	    + ", \"" + rule.verb + "\": cannot read " + rule.scope.unread
+	    + ", which are matched as text");
+      }
+      list.add(rule);
+    }
+    /* A word with a row of its own is changed only by that row, so an
+     * irregular form such as doeth is not made into dos */
+    Set<String> listed = new HashSet<String>();
+    for (Rule rule : list) {
+      if (!rule.suffix && !rule.regex) { listed.add(rule.oldWord); }
+    }
+    for (int i = 0; i < list.size(); i++) {
+      if (list.get(i).suffix) { list.set(i, list.get(i).except(listed)); }
+    }
+    rules = Collections.unmodifiableList(list);
+    String[] words = new String[list.size()];
+    BitSet suffixes = new BitSet();
+    boolean anyRegex = false;
+    for (int i = 0; i < words.length; i++) {
+      Rule rule = list.get(i);
+      words[i] = rule.regex ? null : rule.oldWord;
+      suffixes.set(i, rule.suffix);
+      anyRegex |= rule.regex;
+    }
+    matcher = new WordMatcher(words, suffixes);
+    regexes = anyRegex ? new RegexMatcher(rules) : null;
+    MessageDigest digest = BuildManifest.newDigest();
+    for (Rule rule : rules) {
+      String row = rule.oldWord + "\t" + rule.newWord + "\t" + rule.verb + "\n";
+      digest.update(row.getBytes(StandardCharsets.UTF_8));
+    }
+    fingerprint = BuildManifest.toHex(digest);
+    stats = null;
+  }
+
+  /** The same rules, counted by a new RuleStats */
+  private RuleSet(RuleSet other) {
+    rules = other.rules;
+    matcher = other.matcher;
+    regexes = other.regexes;
+    fingerprint = other.fingerprint;
+    stats = new RuleStats(rules);
+  }
+
+  /** Get a copy of the rules which counts what each rule does.  The copy
+   * changes verses exactly as these rules do.
+   * @return the copy, with counts starting from 0
+   */
+  public RuleSet counting() {
+    return new RuleSet(this);
+  }
+
+  /** Find the changes which a "Suffix" rule made, rather than a row of
+   * their own
+   * @param changes changes as the ledger lists them, "knoweth -> knows"
+   * @return those which a "Suffix" rule makes, in the order given
+   */
+  public List<String> suffixChanges(Collection<String> changes) {
+    List<String> found = new ArrayList<String>();
+    for (String change : changes) {
+      int arrow = change.indexOf(" -> ");
+      if (arrow < 0) { continue; }
+      String oldWord = change.substring(0, arrow);
+      String newWord = change.substring(arrow + " -> ".length());
+      for (Rule rule : rules) {
+	if (rule.suffix && oldWord.endsWith(rule.oldWord) && !rule.exceptions.contains(oldWord)
+	    && newWord.equals(oldWord.substring(0, oldWord.length() - rule.oldWord.length())
+		+ rule.newWord)) {
+	  found.add(change);
+	  break;
+	}
+      }
+    }
+    return found;
+  }
+
+  /** Find which rules might apply to a line
+   * @param text the line in any case
+   * @return numbers of the rules whose old words or patterns are in it
+   */
+  public BitSet findRules(CharSequence text) {
+    BitSet hits = matcher.findWords(text);
+    if (regexes != null) { hits.or(regexes.findRules(text)); }
+    return hits;
+  }
+
+  /** Find which rules might apply to a line read in place
+   * @param text the line in any case
+   * @return numbers of the rules whose old words or patterns are in it
+   */
+  public BitSet findRules(AsciiLine text) {
+    BitSet hits = matcher.findWords(text);
+    if (regexes != null) { hits.or(regexes.findRules(text)); }
+    return hits;
+  }
+
+  /** List the rules one per line as old word, new word and verb
+   * separated by tabs, which is what {@link RuleDiff} compares with the
+   * rules of the last run.
+   * @return the rules in sheet order
+   */
+  public List<String> snapshot() {
+    List<String> lines = new ArrayList<String>(rules.size());
+    for (Rule rule : rules) {
+      lines.add(rule.oldWord + "\t" + rule.newWord + "\t" + ((rule.verb == null) ? "" : rule.verb));
+    }
+    return lines;
+  }
+
+  /**
+   * @param ix index of the rule
+   * @return the rule
+   */
+  public Rule get(int ix) {
+    return rules.get(ix);
+  }
+
+  /**
+   * @return the number of rules
+   */
+  public int size() {
+    return rules.size();
+  }
+}
@@ -0,0 +1,114 @@
+package asst.gentlerKJB.utils;
+
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Counts of what each rule did, to find the rules which cost the most
+ * and the rules which never change anything.  Counting is done with
+ * LongAdders, which keep a separate cell for each thread that contends,
+ * so books changed at the same time do not slow each other down.
+ *
+ * <p>For each rule, in the order the rules are applied:</p>
+ * <ul>
+ * <li>tried: verses in which the matcher found the old word, so the rule
+ * was tried.  A rule is never tried in a verse which does not contain its
+ * old word.</li>
+ * <li>outOfScope: verses tried which were not in the verse list of an
+ * "Only in" or "Not in" rule</li>
+ * <li>changedVerses: verses which the rule changed, that is in which the
+ * old word was found standing alone and not in []</li>
+ * <li>replacements: number of changes, more than changedVerses when a
+ * "Not mark" rule changes a word more than once in a verse</li>
+ * <li>nanos: time spent trying the rule</li>
+ * </ul>
+ * @author Material Gain
+ * @since 2026 10
+ */
+public class RuleStats {
+  /** The rules being counted */
+  private final List<Rule> rules;
+  private final LongAdder[] tried;
+  private final LongAdder[] outOfScope;
+  private final LongAdder[] changedVerses;
+  private final LongAdder[] replacements;
+  private final LongAdder[] nanos;
+
+  /**
+   * @param rules the rules being counted, in order
+   */
+  public RuleStats(List<Rule> rules) {
+    this.rules = rules;
+    tried = adders(rules.size());
+    outOfScope = adders(rules.size());
+    changedVerses = adders(rules.size());
+    replacements = adders(rules.size());
+    nanos = adders(rules.size());
+  }
+
+  private static LongAdder[] adders(int n) {
+    LongAdder[] adders = new LongAdder[n];
+    for (int i = 0; i < n; i++) { adders[i] = new LongAdder(); }
+    return adders;
+  }
+
+  /** Count one try of a rule on a verse
+   * @param ix index of the rule
+   * @param inScope false if the verse is not in the rule's verse list
+   * @param edits number of changes the rule made to the verse
+   * @param time nanoseconds spent trying the rule
+   */
+  public void record(int ix, boolean inScope, int edits, long time) {
+    tried[ix].increment();
+    if (!inScope) { outOfScope[ix].increment(); }
+    if (edits > 0) {
+      changedVerses[ix].increment();
+      replacements[ix].add(edits);
+    }
+    nanos[ix].add(time);
+  }
+
+  /**
+   * @param ix index of the rule
+   * @return number of verses in which the rule was tried
+   */
+  public long getTried(int ix) {
+    return tried[ix].sum();
+  }
+
+  /**
+   * @param ix index of the rule
+   * @return number of verses the rule changed
+   */
+  public long getChangedVerses(int ix) {
+    return changedVerses[ix].sum();
+  }
+
+  /**
+   * @param ix index of the rule
+   * @return number of changes the rule made
+   */
+  public long getReplacements(int ix) {
+    return replacements[ix].sum();
+  }
+
+  /** Write the counts as CSV, one line per rule after a header line
+   * @param out where to write
+   */
+  public void write(PrintWriter out) {
+    out.println("rule,oldWord,newWord,verb,tried,outOfScope,changedVerses,replacements,nanos");
+    for (int i = 0; i < rules.size(); i++) {
+      Rule rule = rules.get(i);
+      out.println((i + 1) + "," + csv(rule.oldWord) + "," + csv(rule.newWord) + ","
+	  + csv(rule.verb) + "," + tried[i].sum() + "," + outOfScope[i].sum() + ","
+	  + changedVerses[i].sum() + "," + replacements[i].sum() + "," + nanos[i].sum());
+    }
+  }
+
+  /** Quote a field if it has a comma or a quote in it */
+  private static String csv(String field) {
+    if (field == null) { return ""; }
+    if ((field.indexOf(',') < 0) && (field.indexOf('"') < 0)) { return field; }
+    return "\"" + field.replace("\"", "\"\"") + "\"";
+  }
+}
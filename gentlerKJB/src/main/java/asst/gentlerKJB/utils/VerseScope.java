@@ -0,0 +1,184 @@
+package asst.gentlerKJB.utils;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import asst.bible.VerseRef;
+
+/** The verses named in the verb of an "Only in" or "Not in" rule, parsed
+ * once when the dictionary is loaded so that each verse can be checked
+ * without searching the verb text.
+ *
+ * <p>The list is separated by commas or semicolons.  Each item is a book
+ * abbreviation followed by a chapter, a verse, or a range of either:</p>
+ * <pre>
+ * MAT            the whole book
+ * MAT 26         a whole chapter
+ * MAT 1:18       one verse
+ * MAT 5-7        chapters 5 through 7
+ * MAT 1:18-25    verses 18 through 25 of chapter 1
+ * MAT 1:18-2:3   from 1:18 through 2:3
+ * 2:5            the book of the item before it
+ * </pre>
+ *
+ * <p>A full stop at the end of an item is ignored.  An item which cannot
+ * be read, such as "MAT 1:18 MAT 1:20" without a comma, is kept in
+ * {@link #unread} and a verse is in the scope if its reference, such as
+ * "MAT 1:18", is found in the item's text, as every item was matched
+ * before the lists were parsed.</p>
+ *
+ * <p>Books are kept by abbreviation, as they appear at the start of a
+ * verse line, so the scope does not depend on which books have been
+ * registered with {@link VerseRef}.  The scope never changes once it is
+ * built so it may be shared by threads.</p>
+ * @author Material Gain
+ * @since 2026 10
+ */
+public class VerseScope {
+  /** Verses named for each book abbreviation */
+  private final Map<String, BookScope> books = new HashMap<String, BookScope>();
+  /** Items of the list which could not be read, matched as text */
+  public final List<String> unread;
+
+  /** The parts of one book that are in the scope */
+  private static class BookScope {
+    /** True if the whole book is named */
+    boolean whole = false;
+    /** Chapters named in full */
+    final BitSet chapters = new BitSet();
+    /** Single verses, chapter << 8 | verse */
+    final BitSet verses = new BitSet();
+  }
+
+  /**
+   * @param list verse list, as it follows "Only in" or "Not in"
+   */
+  public VerseScope(String list) {
+    List<String> bad = new ArrayList<String>();
+    String book = null;
+    for (String item : list.split("[,;]")) {
+      item = item.trim();
+      if (item.endsWith(".")) { item = item.substring(0, item.length() - 1).trim(); }
+      if (item.isEmpty()) { continue; }
+      String range = item;
+      int space = item.indexOf(' ');
+      if (space > 0) {
+	book = item.substring(0, space);
+	range = item.substring(space + 1).trim();
+      } else if (!isRange(item)) {
+	book = item;
+	range = "";
+      }
+      if (book == null) {
+	/* A chapter or verse with no book before it */
+	bad.add(item);
+	continue;
+      }
+      BookScope scope = new BookScope();
+      try {
+	addRange(scope, range);
+      } catch (NumberFormatException e) {
+	bad.add(item);
+	continue;
+      }
+      BookScope known = books.get(book);
+      if (known == null) {
+	books.put(book, scope);
+      } else {
+	known.whole |= scope.whole;
+	known.chapters.or(scope.chapters);
+	known.verses.or(scope.verses);
+      }
+    }
+    unread = Collections.unmodifiableList(bad);
+  }
+
+  /** Tell whether an item is only a chapter, verse or range without a book */
+  private static boolean isRange(String item) {
+    for (int i = 0; i < item.length(); i++) {
+      char ch = item.charAt(i);
+      if (!Character.isDigit(ch) && (ch != ':') && (ch != '-')) { return false; }
+    }
+    return true;
+  }
+
+  private static void addRange(BookScope scope, String range) {
+    if (range.isEmpty()) {
+      scope.whole = true;
+      return;
+    }
+    int dash = range.indexOf('-');
+    String first = (dash < 0) ? range : range.substring(0, dash).trim();
+    int colon = first.indexOf(':');
+    int chapter = checked(Integer.parseInt((colon < 0) ? first : first.substring(0, colon)));
+    int verse = (colon < 0) ? 0 : checked(Integer.parseInt(first.substring(colon + 1)));
+    if (dash < 0) {
+      if (verse == 0) {
+	scope.chapters.set(chapter);
+      } else {
+	scope.verses.set(chapter << 8 | verse);
+      }
+      return;
+    }
+    String last = range.substring(dash + 1).trim();
+    int lastColon = last.indexOf(':');
+    if (verse == 0) {
+      /* Chapter range such as 5-7 */
+      if (lastColon >= 0) { throw new NumberFormatException(range); }
+      scope.chapters.set(chapter, checked(Integer.parseInt(last)) + 1);
+      return;
+    }
+    int lastChapter = chapter;
+    int lastVerse;
+    if (lastColon < 0) {
+      lastVerse = checked(Integer.parseInt(last));
+    } else {
+      lastChapter = checked(Integer.parseInt(last.substring(0, lastColon)));
+      lastVerse = checked(Integer.parseInt(last.substring(lastColon + 1)));
+    }
+    if (lastChapter == chapter) {
+      scope.verses.set(chapter << 8 | verse, (chapter << 8 | lastVerse) + 1);
+      return;
+    }
+    /* The rest of the first chapter, the chapters between, and the start
+     * of the last chapter */
+    scope.verses.set(chapter << 8 | verse, (chapter + 1) << 8);
+    if (lastChapter > chapter + 1) {
+      scope.chapters.set(chapter + 1, lastChapter);
+    }
+    scope.verses.set(lastChapter << 8 | 1, (lastChapter << 8 | lastVerse) + 1);
+  }
+
+  /** Chapter and verse numbers must fit in a VerseRef */
+  private static int checked(int number) {
+    if ((number < 1) || (number > 255)) {
+      throw new NumberFormatException("" + number);
+    }
+    return number;
+  }
+
+  /**
+   * @param ref book, chapter and verse packed by VerseRef
+   * @return true if the verse is in the scope
+   */
+  public boolean contains(int ref) {
+    if (ref == VerseRef.NONE) { return false; }
+    BookScope scope = books.get(VerseRef.abbrev(VerseRef.book(ref)));
+    int chapter = VerseRef.chapter(ref);
+    if ((scope != null) && (scope.whole || scope.chapters.get(chapter)
+	|| scope.verses.get(chapter << 8 | VerseRef.verse(ref)))) {
+      return true;
+    }
+    if (!unread.isEmpty()) {
+      String bookChapVerse = VerseRef.format(ref);
+      for (String item : unread) {
+	if (item.indexOf(bookChapVerse) >= 0) { return true; }
+      }
+    }
+    return false;
+  }
+}
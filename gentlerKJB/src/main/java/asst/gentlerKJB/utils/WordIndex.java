@@ -0,0 +1,140 @@
+package asst.gentlerKJB.utils;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** Inverted index of the original text of one book, from each word in
+ * lower case to the lines which contain it.  Lines are numbered from 0
+ * in the order they are in the book, which is also their order in the
+ * changed book, so a line number finds both the original verse and the
+ * verse as it was written by the last run.
+ *
+ * <p>A word is a run of word characters in the sense of
+ * {@link WordUpgradeUtils#isWordChar}, so an old word such as "with child"
+ * or "lord's" is looked up by each of the words in it.</p>
+ * @author Material Gain
+ * @since 2026 10
+ */
+public class WordIndex {
+  /** Lines which contain each word */
+  private final Map<String, BitSet> words = new TreeMap<String, BitSet>();
+  /** Number of lines in the book */
+  public int lineCount = 0;
+
+  /** Index the text of the lines of a book, leaving out the reference at
+   * the start of each line as PassingItems does.
+   * @param lines lines of the book
+   * @return the index
+   */
+  public static WordIndex build(List<? extends CharSequence> lines) {
+    WordIndex index = new WordIndex();
+    for (CharSequence line : lines) {
+      int ix = PassingItems.referenceLength(line);
+      for (String word : words((ix > 0) ? line.subSequence(ix + 2, line.length()) : line)) {
+	index.lines(word).set(index.lineCount);
+      }
+      index.lineCount++;
+    }
+    return index;
+  }
+
+  private BitSet lines(String word) {
+    BitSet lines = words.get(word);
+    if (lines == null) {
+      lines = new BitSet();
+      words.put(word, lines);
+    }
+    return lines;
+  }
+
+  /** Split text into words in lower case
+   * @param text a line or a word or phrase from the dictionary
+   * @return the words in the order they are found, repeats and all
+   */
+  public static List<String> words(CharSequence text) {
+    List<String> list = new ArrayList<String>();
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i <= text.length(); i++) {
+      char ch = (i < text.length()) ? text.charAt(i) : ' ';
+      if (WordUpgradeUtils.isWordChar(ch)) {
+	sb.append(WordUpgradeUtils.toLowerCase(ch));
+      } else if (sb.length() > 0) {
+	list.add(sb.toString());
+	sb.setLength(0);
+      }
+    }
+    return list;
+  }
+
+  /** Find the lines which might contain an old word or phrase, which are
+   * those containing every word in it.
+   * @param phrase word or phrase in lower case
+   * @return the lines, every line if the phrase has no words in it
+   */
+  public BitSet find(String phrase) {
+    BitSet found = null;
+    for (String word : words(phrase)) {
+      BitSet lines = words.get(word);
+      if (lines == null) { return new BitSet(); }
+      if (found == null) {
+	found = (BitSet)lines.clone();
+      } else {
+	found.and(lines);
+      }
+    }
+    if (found == null) {
+      found = new BitSet();
+      found.set(0, lineCount);
+    }
+    return found;
+  }
+
+  /** Write the index in a form which {@link #read} turns back into the
+   * same index
+   * @param out where to write
+   */
+  public void write(PrintWriter out) {
+    out.println("lines\t" + lineCount);
+    StringBuilder sb = new StringBuilder();
+    for (Map.Entry<String, BitSet> e : words.entrySet()) {
+      sb.setLength(0);
+      sb.append(e.getKey()).append('\t');
+      BitSet lines = e.getValue();
+      for (int i = lines.nextSetBit(0); i >= 0; i = lines.nextSetBit(i + 1)) {
+	sb.append(i).append(' ');
+      }
+      out.println(sb);
+    }
+  }
+
+  /** Read an index written by {@link #write}
+   * @param lines lines of the written index
+   * @return the index
+   * @throws IOException if the lines are not an index
+   */
+  public static WordIndex read(List<String> lines) throws IOException {
+    WordIndex index = new WordIndex();
+    if (lines.isEmpty() || !lines.get(0).startsWith("lines\t")) {
+      throw new IOException("Index has no line count");
+    }
+    try {
+      index.lineCount = Integer.parseInt(lines.get(0).substring("lines\t".length()));
+      for (String line : lines.subList(1, lines.size())) {
+	int ix = line.indexOf('\t');
+	if (ix <= 0) { throw new IOException("Bad index line " + line); }
+	BitSet set = index.lines(line.substring(0, ix));
+	for (String number : line.substring(ix + 1).split(" ")) {
+	  if (!number.isEmpty()) { set.set(Integer.parseInt(number)); }
+	}
+      }
+    } catch (NumberFormatException e) {
+      throw new IOException("Bad index: " + e.getMessage());
+    }
+    return index;
+  }
+}
@@ -0,0 +1,252 @@
+package asst.gentlerKJB.utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Aho-Corasick automaton built once from all of the old words in the
+ * dictionary so that a verse can be searched for every word in a single
+ * pass instead of one <code>indexOf</code> per dictionary row.
+ *
+ * <p>Words are numbered by their position in the array given to the
+ * constructor.  A word is reported only if at least one occurrence
+ * stands between word boundaries in the same sense as the regular
+ * expression <code>\b</code> used by {@link WordUpgradeUtils#findWordIndex}.
+ * Overlapping words are all reported, so a verse containing "great with
+ * child" reports both "great with child" and "with child"; the dictionary
+ * order still decides which one is applied, as it always has.</p>
+ *
+ * <p>A word may instead be an ending, such as "eth", which is reported
+ * where it ends a longer word, so that one rule can change every word
+ * with that ending in the same pass that finds the whole words.</p>
+ *
+ * <p>A matcher made by {@link #fragments} instead reports its words
+ * wherever they occur, inside other words or not, which is what
+ * {@link RegexMatcher} needs to find the text a pattern cannot match
+ * without.</p>
+ *
+ * <p>The automaton is immutable once built and may be shared by threads.</p>
+ * @author Material Gain
+ * @since 2026 10
+ */
+public class WordMatcher {
+  /** Column in the transition table for each ASCII character.
+   * Characters that appear in no word share column 0. */
+  private final int[] asciiColumn = new int[128];
+  /** Column for each ASCII character after folding it to lower case,
+   * for scanning bytes with one table lookup each */
+  private final int[] foldColumn = new int[128];
+  /** True for each ASCII character which can be part of a word */
+  private static final boolean[] WORD_BYTE = new boolean[128];
+  static {
+    for (char ch = 0; ch < 128; ch++) { WORD_BYTE[ch] = WordUpgradeUtils.isWordChar(ch); }
+  }
+  /** Column for the few non-ASCII characters that appear in words */
+  private final Map<Character, Integer> otherColumn = new HashMap<Character, Integer>();
+  /** Number of columns in the transition table */
+  private final int columns;
+  /** Complete transition table, state * columns + column */
+  private final int[] delta;
+  /** Length of the text spelled out from the root to each state */
+  private final int[] depth;
+  /** Word numbers which end at each state, null if none */
+  private final int[][] words;
+  /** Nearest state along the failure chain which ends a word, 0 if none */
+  private final int[] outputLink;
+  /** Words which cannot be put in the automaton, such as empty strings,
+   * and which have to be checked the slow way every time. */
+  private final BitSet alwaysCheck = new BitSet();
+  /** Words which are endings of longer words rather than whole words */
+  private final BitSet suffixes;
+  /** True to report words wherever they occur, not only between word
+   * boundaries */
+  private final boolean anywhere;
+
+  /** Compile a list of words into an automaton.
+   * @param wordList words in lower case, indexed by the number which is to
+   * be reported when the word is found.  Null entries are skipped.
+   */
+  public WordMatcher(String[] wordList) {
+    this(wordList, new BitSet());
+  }
+
+  /** Compile a list of words and endings into an automaton.
+   * @param wordList words and endings in lower case, indexed by the number
+   * which is to be reported when one is found.  Null entries are skipped.
+   * @param suffixes numbers of the entries which are endings, which are
+   * found only after a word character
+   */
+  public WordMatcher(String[] wordList, BitSet suffixes) {
+    this(wordList, suffixes, false);
+  }
+
+  /** Compile a list of pieces of text which are reported wherever they
+   * occur.
+   * @param wordList text in lower case, indexed by the number which is to
+   * be reported when it is found.  Null entries are skipped.
+   * @return the matcher
+   */
+  public static WordMatcher fragments(String[] wordList) {
+    return new WordMatcher(wordList, new BitSet(), true);
+  }
+
+  private WordMatcher(String[] wordList, BitSet suffixes, boolean anywhere) {
+    this.suffixes = suffixes;
+    this.anywhere = anywhere;
+    /* Build the trie with sparse children, assigning a table column to
+     * each distinct character as it is seen. */
+    List<Map<Character, Integer>> children = new ArrayList<Map<Character, Integer>>();
+    List<Integer> depths = new ArrayList<Integer>();
+    List<List<Integer>> ends = new ArrayList<List<Integer>>();
+    children.add(new HashMap<Character, Integer>());
+    depths.add(0);
+    ends.add(null);
+    int nextColumn = 1;
+    for (int w = 0; w < wordList.length; w++) {
+      String word = wordList[w];
+      if (word == null) { continue; }
+      if (word.isEmpty()) {
+	alwaysCheck.set(w);
+	continue;
+      }
+      int state = 0;
+      for (int i = 0; i < word.length(); i++) {
+	char ch = word.charAt(i);
+	if (columnOf(ch) == 0) {
+	  if (ch < 128) {
+	    asciiColumn[ch] = nextColumn++;
+	  } else {
+	    otherColumn.put(ch, nextColumn++);
+	  }
+	}
+	Integer next = children.get(state).get(ch);
+	if (next == null) {
+	  next = children.size();
+	  children.add(new HashMap<Character, Integer>());
+	  depths.add(i + 1);
+	  ends.add(null);
+	  children.get(state).put(ch, next);
+	}
+	state = next;
+      }
+      if (ends.get(state) == null) { ends.set(state, new ArrayList<Integer>()); }
+      ends.get(state).add(w);
+    }
+    columns = nextColumn;
+    for (char ch = 0; ch < 128; ch++) {
+      foldColumn[ch] = asciiColumn[WordUpgradeUtils.toLowerCase(ch)];
+    }
+
+    int states = children.size();
+    delta = new int[states * columns];
+    depth = new int[states];
+    words = new int[states][];
+    outputLink = new int[states];
+    for (int s = 0; s < states; s++) {
+      depth[s] = depths.get(s);
+      List<Integer> end = ends.get(s);
+      if (end != null) {
+	words[s] = new int[end.size()];
+	for (int i = 0; i < words[s].length; i++) { words[s][i] = end.get(i); }
+      }
+    }
+
+    /* Breadth first over the trie to fill in failure transitions so that
+     * every state has a move on every column. */
+    int[] fail = new int[states];
+    ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+    for (Map.Entry<Character, Integer> e : children.get(0).entrySet()) {
+      delta[columnOf(e.getKey())] = e.getValue();
+      queue.add(e.getValue());
+    }
+    while (!queue.isEmpty()) {
+      int s = queue.poll();
+      int f = fail[s];
+      outputLink[s] = (words[f] != null) ? f : outputLink[f];
+      System.arraycopy(delta, f * columns, delta, s * columns, columns);
+      for (Map.Entry<Character, Integer> e : children.get(s).entrySet()) {
+	int col = columnOf(e.getKey());
+	int child = e.getValue();
+	fail[child] = delta[f * columns + col];
+	delta[s * columns + col] = child;
+	queue.add(child);
+      }
+    }
+  }
+
+  private int columnOf(char ch) {
+    if (ch < 128) { return asciiColumn[ch]; }
+    Integer col = otherColumn.get(ch);
+    return (col == null) ? 0 : col;
+  }
+
+  /** Scan a line once and report every word which occurs in it between
+   * word boundaries.  A word being reported means that
+   * {@link WordUpgradeUtils#findWordIndex} might find it; a word which is
+   * not reported cannot be found, so it need not be tried.  Case is
+   * folded as the line is read, as it is by findWordIndex.
+   * @param text line of text in any case
+   * @return set of word numbers found in the line
+   */
+  public BitSet findWords(CharSequence text) {
+    BitSet found = (BitSet)alwaysCheck.clone();
+    int state = 0;
+    int length = text.length();
+    for (int i = 0; i < length; i++) {
+      state = delta[state * columns + columnOf(WordUpgradeUtils.toLowerCase(text.charAt(i)))];
+      int s = (words[state] != null) ? state : outputLink[state];
+      while (s > 0) {
+	if (anywhere || WordUpgradeUtils.isWordBoundary(text, i + 1)) {
+	  report(s, WordUpgradeUtils.isWordBoundary(text, i + 1 - depth[s]), found);
+	}
+	s = outputLink[s];
+      }
+    }
+    return found;
+  }
+
+  /** Scan a line of ASCII bytes as {@link #findWords(CharSequence)} scans
+   * text, with a table lookup for each byte in place of folding case and
+   * testing for word characters.
+   * @param line line of ASCII text in any case
+   * @return set of word numbers found in the line
+   */
+  public BitSet findWords(AsciiLine line) {
+    BitSet found = (BitSet)alwaysCheck.clone();
+    int state = 0;
+    int length = line.length();
+    for (int i = 0; i < length; i++) {
+      state = delta[state * columns + foldColumn[line.byteAt(i)]];
+      int s = (words[state] != null) ? state : outputLink[state];
+      while (s > 0) {
+	if (anywhere || isWordBoundary(line, i + 1)) {
+	  report(s, isWordBoundary(line, i + 1 - depth[s]), found);
+	}
+	s = outputLink[s];
+      }
+    }
+    return found;
+  }
+
+  /** Report the words which end at a state and at a word boundary
+   * @param s the state
+   * @param whole true if a word also starts where they start, which
+   * reports whole words, false to report endings of longer words
+   * @param found where the word numbers are set
+   */
+  private void report(int s, boolean whole, BitSet found) {
+    for (int w : words[s]) {
+      if (anywhere || (whole != suffixes.get(w))) { found.set(w); }
+    }
+  }
+
+  /** {@link WordUpgradeUtils#isWordBoundary} for ASCII bytes */
+  private static boolean isWordBoundary(AsciiLine line, int ix) {
+    boolean left = (ix > 0) && WORD_BYTE[line.byteAt(ix - 1)];
+    boolean right = (ix < line.length()) && WORD_BYTE[line.byteAt(ix)];
+    return left != right;
+  }
+}
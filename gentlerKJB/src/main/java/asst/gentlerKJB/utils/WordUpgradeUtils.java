@@ -1,11 +1,6 @@
 package asst.gentlerKJB.utils;
 
-import java.util.Map;
-import java.util.Set;
-import java.util.TreeMap;
-import java.util.TreeSet;
 import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /** Utilities to help replace archaic words with more modern words
  * @author Material Gain
@@ -13,46 +8,102 @@ import java.util.regex.Pattern;
  */
 public class WordUpgradeUtils {
 
-  /** Map which holds a string builder for each archaic word
-   * which accumulates chapter and verse references where the
-   * archaic word was changed.*/
-  public static Map<String, StringBuilder> wordChanges =
-      new TreeMap<String, StringBuilder>();
-  /** Set which holds all chapter and verse references which were
-   * changed.  It is a tree set to make it easier to dump in 
-   * canonical order.  */
-  public static Set<String> verseChanges = new TreeSet<String>();
+  /** Ledger used by PassingItems unless it is given another one.
+   * This is only safe for one thread at a time. */
+  public static final ChangeLedger ledger = new ChangeLedger();
 
   /** return the index of where a word is found in a line unless
-   * the word is found somewhere within a air of [].  If a ]
-   * is found starting at the point where the word was found, 
-   * it is enclosed in [] so does not count as being found. 
+   * the word is found somewhere within a pair of [].  The word must
+   * stand alone in the same sense as the regular expression
+   * <code>\bword\b</code>, ignoring case.  If a ] is found after the first such
+   * occurrence before any [, it is enclosed in [] so does not count
+   * as being found.
+   *
+   * <p>This is one forward pass over the line which compares characters
+   * in place, so nothing is allocated.  The pass stops at the first
+   * stand alone occurrence and then carries on only as far as the next
+   * bracket to decide whether the word is inside [].  Case is folded one
+   * character at a time as it is compared, so the line may be the
+   * original text and the index is a position in it.</p>
+   * @param line a line of text in any case
+   * @param word the word or phrase being sought in lower case
+   * @return index of the word in the line or -1 if it is not there or
+   * is in []
+   */
+  public static int findWordIndex(CharSequence line, String word) {
+    int wordLength = word.length();
+    int last = line.length() - wordLength;
+    for (int ix = 0; ix <= last; ix++) {
+      if (!regionMatches(line, ix, word)) { continue; }
+      if (!isWordBoundary(line, ix) || !isWordBoundary(line, ix + wordLength)) {
+	continue; // part of a longer word such as mite in smite
+      }
+      return isInBrackets(line, ix) ? -1 : ix;
+    }
+    return -1;
+  }
+
+  /** Tell whether a position is inside [], which it is if the next
+   * bracket after it closes a []
    * @param line a line of text
-   * @param word the word or phrase being sought
-   * @return indexOf the word in the line or -1 if it is in []
+   * @param ix position in the line
+   * @return true if the next bracket at or after ix is ]
    */
-  public static int findWordIndex(String line, String word) {
-    int ix = line.indexOf(word);
-    if (ix < 0) { // did not find it, this is by far the usual case
-      return ix;
+  public static boolean isInBrackets(CharSequence line, int ix) {
+    for (int iy = ix; iy < line.length(); iy++) {
+      char ch = line.charAt(iy);
+      if (ch == '[') { return false; }
+      if (ch == ']') { return true; }
     }
-    /* The word was found somewhere, but it might not be a
-     * stand alone word.  Given that it is in the line, it is
-     * worth the time to create a pattern */
-    Pattern pattern = Pattern.compile("\\b" + Pattern.quote(word) + "\\b");
-    Matcher matcher = pattern.matcher(line);
-    if (matcher.find()) {
-        ix = matcher.start();  // Position of match
-    } else {
-      return -1;
+    return false;
+  }
+
+  /** Compare a word with the characters at a position in a line
+   * @param line a line of text in any case
+   * @param ix where the word might start; the word must fit in the line
+   * @param word the word or phrase being sought in lower case
+   * @return true if the word is at ix
+   */
+  private static boolean regionMatches(CharSequence line, int ix, String word) {
+    for (int i = 0; i < word.length(); i++) {
+      if (toLowerCase(line.charAt(ix + i)) != word.charAt(i)) { return false; }
     }
-    /* The word is not found if it is found anywhere inside [] */
-    int iy = line.indexOf("]", ix);
-    if (iy < 0) { return ix;}
-    int iz = line.indexOf("[", ix);
-    if (iz < 0) { return -1; } // no [ after the word
-    if (iz < iy) { return ix; }
-    return -1;
+    return true;
+  }
+
+  /** Fold one character to lower case.  ASCII letters, which are nearly
+   * all of the text, are done by arithmetic; anything else goes to
+   * {@link Character#toLowerCase(char)}.
+   * @param ch character from the line
+   * @return the character in lower case
+   */
+  public static char toLowerCase(char ch) {
+    if (ch < 128) {
+      return ((ch >= 'A') && (ch <= 'Z')) ? (char)(ch | 0x20) : ch;
+    }
+    return Character.toLowerCase(ch);
+  }
+
+  /** Tell whether a character can be part of a word in the same sense as
+   * the regular expression <code>\b</code>: a letter, a digit or an underscore.
+   * @param ch character to check
+   * @return true if the character is a word character
+   */
+  public static boolean isWordChar(char ch) {
+    return (ch == '_') || Character.isLetterOrDigit(ch);
+  }
+
+  /** Tell whether there is a word boundary at a position in a line, that is
+   * a word character on one side and not on the other.  The ends of the
+   * line count as non-word characters.
+   * @param line a line of text
+   * @param ix position between line.charAt(ix-1) and line.charAt(ix)
+   * @return true if a word starts or ends at ix
+   */
+  public static boolean isWordBoundary(CharSequence line, int ix) {
+    boolean left = (ix > 0) && isWordChar(line.charAt(ix - 1));
+    boolean right = (ix < line.length()) && isWordChar(line.charAt(ix));
+    return left != right;
   }
 
   /** Edit a line to replace an archaic word with a new word and
@@ -62,21 +113,117 @@ public class WordUpgradeUtils {
    * @return true if the line changed because of this word.
    */
   public static void modernizeWord(PassingItems pi) {
-    int ix = findWordIndex(pi.lineLowerCase, pi.oldWord);
+    int ix = findWordIndex(pi.text, pi.oldWord);
     if (ix >= 0) {
       String text = pi.newWord;
-      if (Character.isUpperCase(pi.line.charAt(ix))) {
+      if (Character.isUpperCase(pi.text.charAt(ix))) {
 	/* Capitalize the word as the input word was capitalized*/
 	text = text.substring(0, 1).toUpperCase() + text.substring(1);
       }
-      pi.line = pi.line.substring(0, ix) + text + " ["
-	  + pi.line.substring(ix, ix + pi.oldWord.length()) + "]"
-	  + pi.line.substring(ix + pi.oldWord.length());
-      pi.lineLowerCase = pi.line.toLowerCase();
+      /* The old word stays where it is between the inserted text */
+      pi.text.insert(ix + pi.oldWord.length(), "]");
+      pi.text.insert(ix, text + " [");
       recordCref(pi);
     }
   }
 
+  /** Change every word which ends with the old ending of a "Suffix"
+   * rule to the same word with the new ending, as modernizeWord changes
+   * a word, so that "knoweth" becomes "knows [knoweth]".  Words which are
+   * in [] or are exceptions of the rule are left alone, as are words which
+   * keep fewer than {@link Rule#MIN_STEM} letters before the ending.  A
+   * capitalised word is changed only where it starts the verse or a
+   * sentence, since elsewhere it is a name such as Nazareth or Japheth.
+   * Each word changed is recorded as a change of its own,
+   * so that the explanation lists "knoweth -> knows" as if the dictionary
+   * had a row for it.
+   * @param pi the verse, whose old and new words are left set to the
+   * last word changed
+   * @param rule the "Suffix" rule
+   */
+  public static void changeSuffix(PassingItems pi, Rule rule) {
+    String ending = rule.oldWord;
+    int ix = 0;
+    while (ix < pi.text.length()) {
+      if (!isWordChar(pi.text.charAt(ix))) {
+	ix++;
+	continue;
+      }
+      int end = ix;
+      while ((end < pi.text.length()) && isWordChar(pi.text.charAt(end))) { end++; }
+      int stem = end - ending.length();
+      if ((stem - ix >= Rule.MIN_STEM) && regionMatches(pi.text, stem, ending)
+	  && !isInBrackets(pi.text, end)
+	  && (!Character.isUpperCase(pi.text.charAt(ix)) || startsSentence(pi.text, ix))) {
+	StringBuilder word = new StringBuilder(end - ix);
+	for (int i = ix; i < end; i++) { word.append(toLowerCase(pi.text.charAt(i))); }
+	if (!rule.exceptions.contains(word.toString())) {
+	  pi.oldWord = word.toString();
+	  pi.newWord = word.substring(0, stem - ix) + rule.newWord;
+	  String text = pi.newWord;
+	  if (Character.isUpperCase(pi.text.charAt(ix))) {
+	    text = text.substring(0, 1).toUpperCase() + text.substring(1);
+	  }
+	  pi.text.insert(end, "]");
+	  pi.text.insert(ix, text + " [");
+	  recordCref(pi);
+	  end += text.length() + 3;
+	}
+      }
+      ix = end;
+    }
+  }
+
+  /** Tell whether a word starts the text or follows the end of a sentence
+   * @param text a verse without its reference
+   * @param ix index of the first letter of the word
+   * @return true if only blanks come before it, or blanks after . ? or !
+   */
+  static boolean startsSentence(CharSequence text, int ix) {
+    int i = ix - 1;
+    while ((i >= 0) && Character.isWhitespace(text.charAt(i))) { i--; }
+    if (i < 0) { return true; }
+    char ch = text.charAt(i);
+    return (ch == '.') || (ch == '?') || (ch == '!');
+  }
+
+  /** Change the first text which the pattern of a "Regex" rule matches as
+   * modernizeWord changes a word, so that "with child" matched by
+   * "(?&lt;!great )with child" becomes "pregnant [with child]".  As with
+   * findWordIndex, the match must start and end at word boundaries and
+   * nothing is changed if the first such match is in [].  The new word may
+   * refer to groups of the pattern as $1 and so on.  The change is
+   * recorded under the text matched, so that the explanation lists "with
+   * child -> pregnant" as if the dictionary had a row for it.
+   * @param pi the verse, whose old and new words are left set to the
+   * text matched and its replacement if it changed
+   * @param rule the "Regex" rule
+   */
+  public static void changePattern(PassingItems pi, Rule rule) {
+    Matcher m = rule.pattern.matcher(pi.text);
+    for (int from = 0; (from <= pi.text.length()) && m.find(from); from = m.start() + 1) {
+      int ix = m.start();
+      int end = m.end();
+      if ((ix == end) || !isWordBoundary(pi.text, ix) || !isWordBoundary(pi.text, end)) {
+	continue;
+      }
+      if (isInBrackets(pi.text, ix)) { return; }
+      StringBuffer sb = new StringBuffer();
+      m.appendReplacement(sb, rule.newWord);
+      pi.oldWord = m.group().toLowerCase();
+      pi.newWord = sb.substring(ix).toLowerCase().trim();
+      String text = pi.newWord;
+      if (text.isEmpty()) { return; }
+      if (Character.isUpperCase(pi.text.charAt(ix))) {
+	text = text.substring(0, 1).toUpperCase() + text.substring(1);
+      }
+      pi.text.insert(end, "]");
+      pi.text.insert(ix, text + " [");
+      recordCref(pi);
+      return;
+    }
+  }
+
   /** replace oldWord with newWord but do not retain oldWord in []
    * This is used to modernize spelling as in honour becomes honor.
    * @param pi
@@ -84,37 +231,26 @@ public class WordUpgradeUtils {
   public static void replaceWord(PassingItems pi) {
     int ix = -1;
     do {
-      ix = findWordIndex(pi.lineLowerCase, pi.oldWord);
+      ix = findWordIndex(pi.text, pi.oldWord);
       if (ix < 0) { return; }
       String text = pi.newWord;
-      if (Character.isUpperCase(pi.line.charAt(ix))) {
+      if (Character.isUpperCase(pi.text.charAt(ix))) {
 	/* Capitalize the word as the input word was capitalized*/
 	text = text.substring(0, 1).toUpperCase() + text.substring(1);
       }
-      pi.line = pi.line.substring(0, ix) + text
-	  + pi.line.substring(ix + pi.oldWord.length());
+      pi.text.replace(ix, pi.oldWord.length(), text);
       ix += pi.oldWord.length();
-      pi.lineLowerCase = pi.line.toLowerCase();
       recordCref(pi);
-    } while (ix < pi.line.length()-1);
+    } while (ix < pi.text.length()-1);
   }
 
-  /** Note the change to the verse in the global list and the
-   * change on behalf of the old word.
+  /** Note the change to the verse and the change on behalf of the old
+   * word in the ledger which belongs to the line.
    * @param pi
    */
   public static void recordCref(PassingItems pi) {
-    String change = pi.bkno + pi.bookChapVerse;
-    verseChanges.add(change);
-    String wordKey = pi.oldWord + " -> " + pi.newWord;
-    StringBuilder sb = wordChanges.get(wordKey);
-    if (sb == null) {
-	sb = new StringBuilder();
-	wordChanges.put(wordKey, sb);
-    }
-    if (sb.indexOf(change) < 0) { // might replace more than once
-      sb.append(change + "_");
-    }
+    pi.ledger.record(pi);
     pi.isDirty = true;
+    pi.edits++;
   }
 }
@@ -0,0 +1,78 @@
+package asst.gentlerKJB;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import asst.common.MainArgs;
+import asst.gentlerKJB.utils.RuleSet;
+import asst.gentlerKJB.utils.RuleSetTest;
+
+class BatchJobsTest {
+  @TempDir
+  Path dir;
+
+  @Test
+  void testSplit() {
+    assertArrayEquals(new String[] {"a", "outputPath=/my books/", "+force"},
+	BatchJobs.split("  a \"outputPath=/my books/\"\t+force "));
+    assertArrayEquals(new String[] {""}, BatchJobs.split("\"\""));
+  }
+
+  @Test
+  void testParse() {
+    MainArgs carg = new MainArgs(GentlerKBJMain.DEFAULT_ARGS);
+    List<MainArgs> jobs = BatchJobs.parse(Arrays.asList(
+	"# comment", "",
+	"inputPath=/ot outputPath=/out/OT/ count=39 +force",
+	"/nt /out/NT/"), carg);
+    assertEquals(2, jobs.size());
+    assertEquals("/ot", jobs.get(0).get("inputPath"));
+    assertEquals("39", jobs.get(0).get("count"));
+    assertTrue(jobs.get(0).getBoolean("force"));
+    assertEquals("/nt", jobs.get(1).get("inputPath"));
+    assertEquals("/out/NT/", jobs.get(1).get("outputPath"));
+    assertEquals("40", jobs.get(1).get("count"), "from the command line");
+    assertFalse(jobs.get(1).getBoolean("force"));
+
+    assertThrows(IllegalArgumentException.class,
+	() -> BatchJobs.parse(Arrays.asList("/a /out/", "/b /out"), carg), "same output");
+    assertThrows(IllegalArgumentException.class,
+	() -> BatchJobs.parse(Arrays.asList("/a"), carg), "no output");
+    assertThrows(IllegalArgumentException.class,
+	() -> BatchJobs.parse(Arrays.asList("/a /out/ dictionary=x.xlsx"), carg));
+  }
+
+  @Test
+  void testRun() throws Exception {
+    RuleSet rules = new RuleSet(RuleSetTest.makeWorkbook(RuleSetTest.sheet));
+    Path nt = Files.createDirectory(dir.resolve("nt"));
+    Path luk = Files.createDirectory(dir.resolve("luk"));
+    Files.write(nt.resolve("40MAT.TXT"), Arrays.asList(Verses.mat12));
+    Files.write(luk.resolve("42LUK.TXT"), Arrays.asList(Verses.honorable));
+    MainArgs carg = new MainArgs(GentlerKBJMain.DEFAULT_ARGS);
+    carg.put("firstFile", "");
+    List<MainArgs> jobs = BatchJobs.parse(Arrays.asList(
+	nt + " " + dir.resolve("outNT"),
+	luk + " " + dir.resolve("outLUK") + " +stats"), carg);
+
+    assertTrue(BatchJobs.run(jobs, rules, false));
+    assertTrue(Files.exists(dir.resolve("outNT/40MAT.TXT")));
+    assertFalse(Files.exists(dir.resolve("outNT/42LUK.TXT")));
+    assertTrue(Files.exists(dir.resolve("outLUK/42LUK.TXT")));
+    assertTrue(Files.exists(dir.resolve("outNT/explanation.txt")));
+    assertTrue(Files.exists(dir.resolve("outLUK/explanation.txt")));
+    assertFalse(Files.exists(dir.resolve("outNT/" + GentlerKBJMain.STATS_FILE)));
+    assertTrue(Files.exists(dir.resolve("outLUK/" + GentlerKBJMain.STATS_FILE)));
+    assertTrue(new String(Files.readAllBytes(dir.resolve("outNT/explanation.txt")))
+	.contains("begat"), "each explanation has its own changes");
+    assertFalse(new String(Files.readAllBytes(dir.resolve("outLUK/explanation.txt")))
+	.contains("begat"));
+  }
+}
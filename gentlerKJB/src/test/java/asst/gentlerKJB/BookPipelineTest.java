@@ -0,0 +1,59 @@
+package asst.gentlerKJB;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import asst.gentlerKJB.utils.ChangeLedger;
+import asst.gentlerKJB.utils.RuleSet;
+import asst.gentlerKJB.utils.RuleSetTest;
+
+class BookPipelineTest {
+  @TempDir
+  Path dir;
+
+  @Test
+  void testSameAsProcessBook() throws Exception {
+    RuleSet rules = new RuleSet(RuleSetTest.makeWorkbook(RuleSetTest.sheet));
+    Path in = Files.createDirectories(dir.resolve("in"));
+    Path bookOut = Files.createDirectories(dir.resolve("book"));
+    Path pipeOut = Files.createDirectories(dir.resolve("pipe"));
+    List<Path> books = new ArrayList<Path>();
+    /* A long book crosses chunk boundaries and an empty one has only
+     * the last chunk. */
+    List<String> lines = new ArrayList<String>();
+    for (int i = 1; i <= BookPipeline.CHUNK_LINES * 2 + 3; i++) {
+      lines.add(Verses.mat12.replace("1:2", "1:" + (i % 250 + 1)));
+    }
+    books.add(Files.write(in.resolve("40MAT.TXT"), lines, StandardCharsets.UTF_8));
+    books.add(Files.write(in.resolve("41MAR.TXT"), new ArrayList<String>(), StandardCharsets.UTF_8));
+    books.add(Files.write(in.resolve("42LUK.TXT"),
+	Arrays.asList(Verses.honorable, Verses.g11), StandardCharsets.UTF_8));
+
+    List<ChangeLedger> ledgers = new BookPipeline(rules, pipeOut).run(books);
+    assertEquals(books.size(), ledgers.size(), "one ledger per book");
+    for (int i = 0; i < books.size(); i++) {
+      Path book = books.get(i);
+      ChangeLedger expected = GentlerKBJMain.processBook(book, bookOut, rules);
+      assertArrayEquals(Files.readAllBytes(bookOut.resolve(book.getFileName())),
+	  Files.readAllBytes(pipeOut.resolve(book.getFileName())), book.toString());
+      assertEquals(expected.verseCount, ledgers.get(i).verseCount, "verses in " + book);
+      assertEquals(expected.getCrefs("begat -> fathered"), ledgers.get(i).getCrefs("begat -> fathered"));
+    }
+  }
+
+  @Test
+  void testMissingBook() throws Exception {
+    RuleSet rules = new RuleSet(RuleSetTest.makeWorkbook(RuleSetTest.sheet));
+    List<Path> books = Arrays.asList(dir.resolve("40MAT.TXT"));
+    assertThrows(java.io.IOException.class, () -> new BookPipeline(rules, dir).run(books));
+  }
+}
@@ -0,0 +1,22 @@
+package asst.gentlerKJB;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.jupiter.api.Test;
+
+class GentlerKBJMainTest {
+  @Test
+  void testIsInside() {
+    Path input = Paths.get("books");
+    assertTrue(GentlerKBJMain.isInside(Paths.get("books"), input), "the same folder");
+    assertTrue(GentlerKBJMain.isInside(Paths.get("books/out"), input));
+    assertTrue(GentlerKBJMain.isInside(Paths.get("other/../books/./out"), input));
+    assertTrue(GentlerKBJMain.isInside(Paths.get("books").toAbsolutePath(), input));
+    assertFalse(GentlerKBJMain.isInside(Paths.get("books2"), input), "only whole names");
+    assertFalse(GentlerKBJMain.isInside(Paths.get("out"), input));
+    assertFalse(GentlerKBJMain.isInside(input.toAbsolutePath().getParent(), input), "outside it");
+  }
+}
@@ -0,0 +1,92 @@
+package asst.gentlerKJB;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import asst.gentlerKJB.utils.ChangeLedger;
+import asst.gentlerKJB.utils.RuleSet;
+import asst.gentlerKJB.utils.RuleSetTest;
+
+class IncrementalBuildTest {
+  @TempDir
+  Path dir;
+
+  static final FileTime OLD = FileTime.fromMillis(1000000000000L);
+
+  @Test
+  void testOnlyStaleBooks() throws Exception {
+    RuleSet rules = new RuleSet(RuleSetTest.makeWorkbook(RuleSetTest.sheet));
+    List<String> mat = Arrays.asList(Verses.mat12);
+    List<String> luk = Arrays.asList(Verses.honorable);
+
+    IncrementalBuild build = new IncrementalBuild(dir, rules, false);
+    ChangeLedger first = build.processBook("40MAT.TXT", mat);
+    build.processBook("42LUK.TXT", luk);
+    build.save();
+    assertEquals(0, build.upToDate.get());
+    Files.setLastModifiedTime(dir.resolve("40MAT.TXT"), OLD);
+    Files.setLastModifiedTime(dir.resolve("42LUK.TXT"), OLD);
+
+    build = new IncrementalBuild(dir, rules, false);
+    ChangeLedger again = build.processBook("40MAT.TXT", mat);
+    build.processBook("42LUK.TXT", Arrays.asList(Verses.g11));
+    build.save();
+    assertEquals(1, build.upToDate.get(), "only the changed book is done again");
+    assertEquals(OLD, Files.getLastModifiedTime(dir.resolve("40MAT.TXT")), "untouched");
+    assertNotEquals(OLD, Files.getLastModifiedTime(dir.resolve("42LUK.TXT")), "rewritten");
+    assertEquals(first.getCrefs("begat -> fathered"), again.getCrefs("begat -> fathered"),
+	"saved ledger");
+
+    RuleSet other = new RuleSet(RuleSetTest.makeWorkbook(new String[][] {{"begat", "sired", null}}));
+    build = new IncrementalBuild(dir, other, true);
+    build.processBook("40MAT.TXT", mat);
+    assertEquals(0, build.upToDate.get(), "forced");
+
+    assertTrue(IncrementalBuild.writeIfChanged(dir.resolve("x.txt"), new byte[] {1}));
+    assertFalse(IncrementalBuild.writeIfChanged(dir.resolve("x.txt"), new byte[] {1}));
+  }
+
+  @Test
+  void testChangedRules() throws Exception {
+    List<String> mat = Arrays.asList(Verses.mat12, Verses.smiteCheek,
+	"MAT 5:40  And if any man will sue thee at the law");
+    RuleSet rules = new RuleSet(RuleSetTest.makeWorkbook(new String[][] {
+      {"begat", "fathered", null}, {"thee", "you", null}, {"smite", "strike", null}}));
+    IncrementalBuild build = new IncrementalBuild(dir, rules, false);
+    build.processBook("40MAT.TXT", mat);
+    build.save();
+
+    RuleSet other = new RuleSet(RuleSetTest.makeWorkbook(new String[][] {
+      {"begat", "fathered", null}, {"thee", "you", null}, {"smite", "hit", null},
+      {"sue", "take", null}}));
+    build = new IncrementalBuild(dir, other, false);
+    ChangeLedger ledger = build.processBook("40MAT.TXT", mat);
+    build.save();
+    assertEquals(1, build.updated.get(), "only verses were changed");
+    assertEquals(2, build.versesUpdated.get(), "smite and sue");
+    List<String> updated = Files.readAllLines(dir.resolve("40MAT.TXT"));
+
+    Path fresh = Files.createDirectory(dir.resolve("fresh"));
+    ChangeLedger whole = new IncrementalBuild(fresh, other, true).processBook("40MAT.TXT", mat);
+    assertEquals(Files.readAllLines(fresh.resolve("40MAT.TXT")), updated, "same as a full run");
+    StringWriter a = new StringWriter();
+    ledger.write(new PrintWriter(a, true));
+    StringWriter b = new StringWriter();
+    whole.write(new PrintWriter(b, true));
+    assertEquals(b.toString(), a.toString(), "same ledger as a full run");
+
+    build = new IncrementalBuild(dir, rules, false);
+    build.processBook("40MAT.TXT", Arrays.asList(Verses.mat12));
+    assertEquals(0, build.updated.get(), "changed book is changed whole");
+  }
+}
@@ -0,0 +1,13 @@
+package asst.gentlerKJB;
+
+/** Verse lines shared by the tests of the book level classes, taken from
+ * the fixtures of WordUpgradeUtilsTest.
+ * @author Material Gain
+ * @since 2026 10
+ */
+class Verses {
+  static final String g11 = "GEN 1:1  In the beginning God created the heaven and the earth.";
+  static final String mat12 = "MAT 1:2  Abraham Begat Isaac; and Isaac begat Jacob; and Jacob begat Judas and his brethren;";
+  static final String honorable = "Hez 2:22  honour to whom Honour to whom honour";
+  static final String smiteCheek = "MAT 5:39  But I say unto you, That ye resist not evil: but whosoever shall smite thee on thy right cheek, turn to him the other also.";
+}
@@ -0,0 +1,95 @@
+package asst.gentlerKJB.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import asst.gentlerKJB.GentlerKBJMain;
+
+class AsciiLineTest {
+  @TempDir
+  Path dir;
+
+  @Test
+  void testSplitLines() throws Exception {
+    String[] books = {"", "a", "a\n", "a\r\nb", "a\rb\r", "a\n\nb\n", "\n", "\r\n\r\n", "naïve\nx"};
+    for (String book : books) {
+      Path file = dir.resolve("book.txt");
+      byte[] bytes = book.getBytes(StandardCharsets.UTF_8);
+      Files.write(file, bytes);
+      List<String> expected = Files.readAllLines(file, StandardCharsets.UTF_8);
+      List<CharSequence> lines = AsciiLine.of(AsciiLine.splitLines(bytes));
+      assertEquals(expected.size(), lines.size(), "[" + book + "]");
+      for (int i = 0; i < lines.size(); i++) {
+	assertEquals(expected.get(i), lines.get(i).toString(), "[" + book + "]");
+      }
+    }
+    List<CharSequence> lines = AsciiLine.of(AsciiLine.splitLines(
+	"plain\nnaïve".getBytes(StandardCharsets.UTF_8)));
+    assertTrue(lines.get(0) instanceof AsciiLine, "read in place");
+    assertTrue(lines.get(1) instanceof String, "decoded");
+  }
+
+  @Test
+  void testReadInPlace() {
+    AsciiLine line = ascii("MAT 1:2  Abraham begat   Isaac");
+    assertEquals(8, line.length());
+    assertEquals('M', line.charAt(0));
+    assertEquals("1:2", line.subSequence(4, 7).toString());
+    assertThrows(IndexOutOfBoundsException.class, () -> line.charAt(8));
+    AsciiLine whole = (AsciiLine)AsciiLine.of(ByteBuffer.wrap(
+	"MAT 1:2  Abraham begat   Isaac".getBytes(StandardCharsets.US_ASCII)));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    whole.writeTo(out, true);
+    assertEquals("MAT 1:2  Abraham begat Isaac", new String(out.toByteArray(), StandardCharsets.US_ASCII));
+  }
+
+  /** The bytes of a line, with some other bytes around it */
+  private static AsciiLine ascii(String line) {
+    byte[] bytes = ("xx" + line + "yy").getBytes(StandardCharsets.US_ASCII);
+    return new AsciiLine(ByteBuffer.wrap(bytes), 2, 8);
+  }
+
+  private static String written(ChangeLedger ledger) {
+    StringWriter sw = new StringWriter();
+    PrintWriter pw = new PrintWriter(sw);
+    ledger.write(pw);
+    pw.close();
+    return sw.toString();
+  }
+
+  @Test
+  void testSameAsStrings() throws Exception {
+    RuleSet rules = new RuleSet(RuleSetTest.makeWorkbook(new String[][] {
+      {"in travail", "giving birth", null}, {"hath sorrow", "is sad", null},
+      {"anguish", "pain", null}, {"begat", "fathered", null}, {"honour", "honor", "Not mark"},
+      {"mite", "tiny amount", null}, {"you", "you all", "Only in MAT 5:39"},
+      {"-eth", "-s", "Suffix except teeth"}, {"(?<!great )with child", "pregnant", "Regex"}}));
+    String[] lines = {WordUpgradeUtilsTest.g11, WordUpgradeUtilsTest.mat12,
+	WordUpgradeUtilsTest.jon1621, WordUpgradeUtilsTest.honorable,
+	WordUpgradeUtilsTest.smiteMaybe, WordUpgradeUtilsTest.smiteCheek,
+	"MAT 1:3  no   change   at all", "no reference   begat", "", "JOH 1:1  [begat] begat",
+	"LUK 2:5  with Mary, being great with child, and with child"};
+    for (String line : lines) {
+      ChangeLedger expected = new ChangeLedger();
+      String changed = GentlerKBJMain.upgradeLine("40", line, rules, expected);
+      ChangeLedger ledger = new ChangeLedger();
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      CharSequence ascii = AsciiLine.of(ByteBuffer.wrap(line.getBytes(StandardCharsets.US_ASCII)));
+      assertTrue(ascii instanceof AsciiLine);
+      GentlerKBJMain.upgradeLine("40", ascii, rules, ledger, out);
+      assertEquals(changed, new String(out.toByteArray(), StandardCharsets.UTF_8), line);
+      assertEquals(written(expected), written(ledger), line);
+    }
+  }
+}
@@ -0,0 +1,103 @@
+package asst.gentlerKJB.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+class ChangeLedgerTest {
+  public static final String[] verses = {
+      "MAT 1:2  Abraham begat Isaac",
+      "MAT 1:3  And Judas begat Phares and Zara of Thamar",
+      "MAR 1:1  The beginning of the gospel",
+      "MAR 1:2  As it is written, I send my messenger before thy face",
+  };
+
+  /** Change verses into a ledger
+   * @param ledger where to record the changes
+   * @param from first verse
+   * @param to one past the last verse
+   */
+  static void changeVerses(ChangeLedger ledger, int from, int to) {
+    for (int i = from; i < to; i++) {
+      PassingItems pi = new PassingItems(verses[i], "begat", "fathered");
+      pi.bkno = verses[i].startsWith("MAT") ? "40" : "41";
+      pi.ledger = ledger;
+      WordUpgradeUtils.modernizeWord(pi);
+      pi.setWords("thy", "your");
+      WordUpgradeUtils.modernizeWord(pi);
+      ledger.verseCount++;
+    }
+  }
+
+  static String explain(ChangeLedger ledger) {
+    StringWriter sw = new StringWriter();
+    PrintWriter pw = new PrintWriter(sw);
+    ledger.writeExplanation(pw, 2);
+    pw.close();
+    return sw.toString();
+  }
+
+  @Test
+  void testMerge() {
+    ChangeLedger whole = new ChangeLedger();
+    changeVerses(whole, 0, verses.length);
+    ChangeLedger first = new ChangeLedger();
+    changeVerses(first, 0, 2);
+    ChangeLedger second = new ChangeLedger();
+    changeVerses(second, 2, verses.length);
+    first.merge(second);
+    assertEquals(explain(whole), explain(first), "merged ledgers explain the same");
+    assertEquals(3, first.verseChanges.size());
+    assertEquals("40MAT 1:2_40MAT 1:3_", first.getCrefs("begat -> fathered"));
+  }
+
+  @Test
+  void testForget() {
+    ChangeLedger ledger = new ChangeLedger();
+    changeVerses(ledger, 0, verses.length);
+    ledger.forget("40", verses[1]);
+    ledger.forget("41", verses[3]);
+    ledger.forget("41", "no reference");
+    ChangeLedger again = new ChangeLedger();
+    changeVerses(again, 1, 2);
+    again.verseCount = 0;
+    ledger.merge(again);
+    ChangeLedger whole = new ChangeLedger();
+    changeVerses(whole, 0, 3);
+    whole.verseCount++;
+    assertEquals(explain(whole), explain(ledger), "forgotten verse is gone");
+    assertNull(ledger.getCrefs("thy -> your"), "no verse left");
+  }
+
+  @Test
+  void testWriteAndRead() throws Exception {
+    ChangeLedger ledger = new ChangeLedger();
+    changeVerses(ledger, 0, verses.length);
+    PassingItems pi = new PassingItems("no reference", "reference", "citation");
+    pi.bkno = "41";
+    pi.ledger = ledger;
+    WordUpgradeUtils.modernizeWord(pi);
+    StringWriter sw = new StringWriter();
+    PrintWriter pw = new PrintWriter(sw);
+    ledger.write(pw);
+    pw.close();
+    ChangeLedger read = ChangeLedger.read(Arrays.asList(sw.toString().split("\\R")));
+    assertEquals(explain(ledger), explain(read), "read ledger explains the same");
+    assertThrows(IOException.class, () -> ChangeLedger.read(Arrays.asList("junk")));
+  }
+
+  @Test
+  void testReadChanges() {
+    ChangeLedger ledger = new ChangeLedger();
+    changeVerses(ledger, 0, verses.length);
+    assertEquals(ledger.changes(), ChangeLedger.readChanges(Arrays.asList(explain(ledger).split("\\R"))));
+    assertEquals(Arrays.asList("begat -> fathered", "thy -> your"),
+	new ArrayList<String>(ledger.changes()));
+  }
+}
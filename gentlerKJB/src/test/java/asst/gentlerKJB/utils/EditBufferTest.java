@@ -0,0 +1,59 @@
+package asst.gentlerKJB.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+class EditBufferTest {
+
+  @Test
+  void testEdits() {
+    EditBuffer eb = new EditBuffer("Abraham Begat Isaac");
+    eb.insert(13, "]");
+    eb.insert(8, "Fathered [");
+    assertEquals("Abraham Fathered [Begat] Isaac", eb.toString(), "bracketed edit");
+    assertEquals(25, WordUpgradeUtils.findWordIndex(eb, "isaac"), "search after edit");
+    eb.replace(0, 7, "Abram");
+    assertEquals("Abram Fathered [Begat] Isaac", eb.toString(), "shorter replacement");
+    eb.replace(6, 8, "Sired");
+    assertEquals("Abram Sired [Begat] Isaac", eb.toString(), "replacement of a replacement");
+    eb.replace(20, 5, "Isaac the son");
+    assertEquals("Abram Sired [Begat] Isaac the son", eb.toString(), "replacement at the end");
+    assertEquals(eb.toString().length(), eb.length(), "length follows the edits");
+    for (int i = 0; i < eb.length(); i++) {
+      assertEquals(eb.toString().charAt(i), eb.charAt(i), "charAt " + i);
+    }
+    for (int i = eb.length() - 1; i >= 0; i--) {
+      assertEquals(eb.toString().charAt(i), eb.charAt(i), "backward charAt " + i);
+    }
+  }
+
+  @Test
+  void testFoldSpaces() {
+    String[] lines = { "a   b", "a    b", "a     b", "a      b", "a  b ", "   ", "" };
+    for (String line : lines) {
+      EditBuffer eb = new EditBuffer(line);
+      assertEquals(line.replaceAll("   ", " "),
+	  eb.appendTo(new StringBuilder(), true).toString(), "fold [" + line + "]");
+    }
+    /* Runs of spaces carry across pieces */
+    EditBuffer eb = new EditBuffer("a  b");
+    eb.insert(3, " ");
+    eb.insert(1, "  ");
+    assertEquals("a     b", eb.toString(), "spaces from three pieces");
+    assertEquals("a   b", eb.appendTo(new StringBuilder(), true).toString(), "folded across pieces");
+  }
+
+  @Test
+  void testWriteTo() {
+    EditBuffer eb = new EditBuffer("a    b");
+    eb.insert(1, "na\u00efve \u2019\ud83d\ude00 ");
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    eb.writeTo(out, true);
+    assertArrayEquals(eb.appendTo(new StringBuilder(), true).toString()
+	.getBytes(StandardCharsets.UTF_8), out.toByteArray(), "UTF-8 of every length");
+  }
+}
@@ -0,0 +1,113 @@
+package asst.gentlerKJB.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class RegexMatcherTest {
+  public static final List<Rule> rules = Arrays.asList(
+      new Rule("(?<!great )with child", "pregnant", Rule.REGEX),
+      new Rule("begat", "fathered", null),
+      new Rule("great with child", "very pregnant", Rule.REGEX),
+      new Rule("(\\w+) (\\1)", "$1", Rule.REGEX),
+      new Rule("sa(i|y)th", "says", Rule.REGEX));
+
+  @Test
+  void testFindRules() {
+    RegexMatcher matcher = new RegexMatcher(rules);
+    BitSet found = matcher.findRules("And she was Great with child, and with child again.");
+    assertTrue(found.get(0), "found after the match of a longer pattern");
+    assertFalse(found.get(1), "only Regex rules are reported");
+    assertTrue(found.get(2), "in any case");
+    assertTrue(found.get(3), "back references are always tried");
+    assertFalse(found.get(4));
+    found = matcher.findRules("Thus SAITH the LORD");
+    assertEquals(2, found.cardinality());
+    assertTrue(found.get(4));
+    assertFalse(found.get(0) || found.get(2));
+  }
+
+  @Test
+  void testNoPatterns() {
+    RegexMatcher matcher = new RegexMatcher(Arrays.asList(new Rule("begat", "fathered", null)));
+    assertTrue(matcher.findRules("and isaac begat jacob").isEmpty());
+  }
+
+  @Test
+  void testGroups() {
+    /* Patterns with no text are always tried, whatever groups they have */
+    RegexMatcher matcher = new RegexMatcher(Arrays.asList(
+	new Rule("(the) (lord)", "the LORD", Rule.REGEX),
+	new Rule("sa(i|y)th", "says", Rule.REGEX),
+	new Rule("(?<word>spake)", "spoke", Rule.REGEX)));
+    assertEquals(bits(0, 1, 2), matcher.findRules("he saith"));
+    assertEquals(bits(0, 2), matcher.findRules("the lord spake"));
+  }
+
+  @Test
+  void testInlineFlags() {
+    RegexMatcher matcher = new RegexMatcher(Arrays.asList(
+	new Rule("(?-i)LORD", "Lord", Rule.REGEX),
+	new Rule("lord", "master", Rule.REGEX),
+	new Rule("\\Qa.b", "ab", Rule.REGEX),
+	new Rule("(?x)ye # old", "you", Rule.REGEX),
+	new Rule("thee", "you", Rule.REGEX)));
+    assertEquals(bits(1, 2, 3), matcher.findRules("my lord"), "case matters only to the first");
+    assertEquals(bits(0, 1, 2, 3), matcher.findRules("the LORD"));
+    assertEquals(bits(2, 3, 4), matcher.findRules("THEE"),
+	"patterns with no plain text are always tried");
+  }
+
+  @Test
+  void testSharedGroupName() {
+    /* Two rows may name their groups alike and the dictionary still loads */
+    RegexMatcher matcher = new RegexMatcher(Arrays.asList(
+	new Rule("\\b(?<w>\\w+)eth\\b", "${w}s", Rule.REGEX),
+	new Rule("\\b(?<w>\\w+)est\\b", "${w}", Rule.REGEX),
+	new Rule("\\b(?<w>\\w+)(?:ing)\\b", "${w}", Rule.REGEX)));
+    assertEquals(bits(0, 2), matcher.findRules("he sayeth"));
+    assertEquals(bits(1, 2), matcher.findRules("thou goest"));
+  }
+
+  @Test
+  void testRequiredText() {
+    assertEquals("with child", RegexMatcher.requiredText("(?<!great )with child"));
+    assertEquals("sa", RegexMatcher.requiredText("sa(i|y)th"));
+    assertEquals("lord", RegexMatcher.requiredText("(?-i)LORD"));
+    assertEquals("abc", RegexMatcher.requiredText("abcd?e{2}f*[gh]i"));
+    assertEquals("unto ", RegexMatcher.requiredText("\\bunto \\w+"));
+    assertEquals("ab", RegexMatcher.requiredText("ab+c"));
+    assertNull(RegexMatcher.requiredText("begat|bare"), "alternation");
+    assertNull(RegexMatcher.requiredText("(the) (lord)"), "only a space");
+    assertEquals("eth", RegexMatcher.requiredText("\\w+eth\\b"));
+    assertNull(RegexMatcher.requiredText("\\b(\\w+)(?:eth|est)\\b"), "only in a group");
+    assertNull(RegexMatcher.requiredText("(?x)ye # old"));
+    assertNull(RegexMatcher.requiredText("\\Qa.b"));
+    assertNull(RegexMatcher.requiredText("[(]x?"));
+  }
+
+  @Test
+  void testTextFound() {
+    /* Text found but the pattern does not match */
+    RegexMatcher matcher = new RegexMatcher(Arrays.asList(
+	new Rule("\\bunto (him|them)", "to", Rule.REGEX),
+	new Rule("(\\w+) unto \\1", "x", Rule.REGEX)));
+    assertEquals(bits(), matcher.findRules("he said unto me"));
+    assertEquals(bits(0), matcher.findRules("he said UNTO them"));
+    assertEquals(bits(1), matcher.findRules("deep unto deep"), "back references too");
+    assertEquals(bits(0), matcher.findRules((AsciiLine)AsciiLine.of(ByteBuffer.wrap(
+	"he said unto him".getBytes(StandardCharsets.US_ASCII)))));
+  }
+
+  private static BitSet bits(int... rules) {
+    BitSet bits = new BitSet();
+    for (int rule : rules) { bits.set(rule); }
+    return bits;
+  }
+}
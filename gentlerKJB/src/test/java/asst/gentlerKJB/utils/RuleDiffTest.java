@@ -0,0 +1,75 @@
+package asst.gentlerKJB.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class RuleDiffTest {
+  static final List<String> before = Arrays.asList(
+      "begat\tfathered\t",
+      "thee\tyou\t",
+      "honour\thonor\tNot mark",
+      "unto\tto\t");
+
+  @Test
+  void testChangedWords() {
+    assertTrue(RuleDiff.changedWords(before, before).isEmpty(), "same rules");
+    List<String> after = Arrays.asList(
+	"begat\tsired\t",
+	"thee\tyou\t",
+	"honour\thonor\tNot mark",
+	"unto\tto\t",
+	"ye\tyou all\t");
+    assertEquals(new HashSet<String>(Arrays.asList("begat", "ye")),
+	RuleDiff.changedWords(before, after), "modified and added");
+    after = Arrays.asList(
+	"thee\tyou\t",
+	"honour\thonor\tNot mark",
+	"you\tyou all\tOnly in MAT 1:1");
+    assertEquals(new HashSet<String>(Arrays.asList("begat", "unto", "you", "thee")),
+	RuleDiff.changedWords(before, after), "removed, added and what makes you");
+    after = Arrays.asList(
+	"thee\tyou\t",
+	"begat\tfathered\t",
+	"honour\thonor\tNot mark",
+	"unto\tto\t");
+    assertNull(RuleDiff.changedWords(before, after), "moved");
+    after = Arrays.asList(
+	"begat\tfathered\t",
+	"'s\ts\tNot mark",
+	"thee\tyou\t",
+	"honour\thonor\tNot mark",
+	"unto\tto\t");
+    assertEquals(new HashSet<String>(Arrays.asList("'s")),
+	RuleDiff.changedWords(before, after), "joins words but nothing to join");
+    after = Arrays.asList(
+	"begat\tfathered\t",
+	"'s\ts\tNot mark",
+	"thee\tyou\t",
+	"honour\thonor\tNot mark");
+    assertEquals(new HashSet<String>(Arrays.asList("'s", "unto")),
+	RuleDiff.changedWords(before, after), "added and removed");
+  }
+
+  @Test
+  void testSuffix() {
+    List<String> suffix = Arrays.asList(
+	"begat\tfathered\t",
+	"eth\ts\tSuffix except teeth");
+    assertTrue(RuleDiff.changedWords(suffix, suffix).isEmpty(), "same rules");
+    assertNull(RuleDiff.changedWords(before, suffix), "words a suffix makes cannot be listed");
+  }
+
+  @Test
+  void testRegex() {
+    List<String> regex = Arrays.asList(
+	"begat\tfathered\t",
+	"(?<!great )with child\tpregnant\tRegex");
+    assertTrue(RuleDiff.changedWords(regex, regex).isEmpty(), "same rules");
+    assertNull(RuleDiff.changedWords(before, regex), "text a pattern matches cannot be listed");
+  }
+}
@@ -0,0 +1,94 @@
+package asst.gentlerKJB.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+
+import asst.hssf.WorkbookManager;
+
+public class RuleSetTest {
+  public static final String[][] sheet = {
+      {"#Old word", "New word", "Verb"},
+      {"Begat ", "Fathered", null},
+      {null, null, null},
+      {"honour", "honor", "Not mark"},
+      {"you", "you all", "Only in MAT 1:1"},
+      {"stop", "", null},
+      {"never", "reached", null},
+  };
+
+  /** Build a workbook with a WordChanges sheet from an array of cells
+   * @param cells rows of old word, new word, verb
+   * @return workbook manager positioned on the sheet
+   */
+  public static WorkbookManager makeWorkbook(String[][] cells) {
+    WorkbookManager wm = new WorkbookManager();
+    wm.wb = new XSSFWorkbook();
+    Sheet s = wm.wb.createSheet("WordChanges");
+    for (int i = 0; i < cells.length; i++) {
+      Row row = s.createRow(i);
+      for (int j = 0; j < cells[i].length; j++) {
+	if (cells[i][j] != null) { row.createCell(j).setCellValue(cells[i][j]); }
+      }
+    }
+    wm.pickSheet("WordChanges");
+    return wm;
+  }
+
+  @Test
+  void testLoad() throws Exception {
+    WorkbookManager wm = makeWorkbook(sheet);
+    RuleSet rules = new RuleSet(wm);
+    wm.wb.close();
+    assertEquals(3, rules.size(), "comments and blank rows skipped, stop at empty new word");
+    assertEquals("begat", rules.get(0).oldWord);
+    assertEquals("fathered", rules.get(0).newWord);
+    assertFalse(rules.get(0).notMark || rules.get(0).onlyIn);
+    assertTrue(rules.get(1).notMark);
+    assertTrue(rules.get(2).onlyIn);
+    assertTrue(rules.matcher.findWords("and isaac begat jacob").get(0));
+  }
+
+  @Test
+  void testSuffixLeavesListedWords() throws Exception {
+    WorkbookManager wm = makeWorkbook(new String[][] {
+      {"doeth", "does", null}, {"-eth", "-s", "Suffix except teeth"}});
+    RuleSet rules = new RuleSet(wm);
+    wm.wb.close();
+    assertTrue(rules.get(1).exceptions.contains("teeth"));
+    assertTrue(rules.get(1).exceptions.contains("doeth"), "changed only by its own row");
+    assertTrue(rules.matcher.findWords("he walketh").get(1));
+    assertFalse(rules.matcher.findWords("eth").get(1));
+    assertEquals(Arrays.asList("walketh -> walks"), rules.suffixChanges(Arrays.asList(
+	"doeth -> does", "walketh -> walks", "teeth -> tes", "begat -> fathered")),
+	"a word with a row of its own is not changed by the suffix");
+  }
+
+  @Test
+  void testRegexRules() throws Exception {
+    WorkbookManager wm = makeWorkbook(new String[][] {
+      {"with child", "pregnant", null}, {"Beg(a|o)t", "fathered", "Regex"}});
+    RuleSet rules = new RuleSet(wm);
+    wm.wb.close();
+    assertNull(new RuleSet(makeWorkbook(sheet)).regexes);
+    assertFalse(rules.matcher.findWords("isaac begat jacob").get(1), "not a word");
+    assertTrue(rules.findRules("isaac begat jacob").get(1));
+    assertTrue(rules.findRules("she was with child").get(0));
+    assertFalse(rules.findRules("she was with child").get(1));
+  }
+
+  @Test
+  void testUnreadVerseList() throws Exception {
+    WorkbookManager wm = makeWorkbook(new String[][] {
+      {"begat", "fathered", "Only in MAT 1:2 MAT 1:3"}, {"bare", "bore", "Not in MAT 1:x"}});
+    RuleSet rules = new RuleSet(wm);
+    wm.wb.close();
+    assertEquals(2, rules.rules.size(), "the rows are loaded");
+    assertEquals(Arrays.asList("MAT 1:2 MAT 1:3"), rules.rules.get(0).scope.unread);
+  }
+}
@@ -0,0 +1,47 @@
+package asst.gentlerKJB.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import org.junit.jupiter.api.Test;
+
+import asst.gentlerKJB.GentlerKBJMain;
+import asst.hssf.WorkbookManager;
+
+public class RuleStatsTest {
+  @Test
+  void testCounts() throws Exception {
+    WorkbookManager wm = RuleSetTest.makeWorkbook(RuleSetTest.sheet);
+    RuleSet plain = new RuleSet(wm);
+    wm.wb.close();
+    RuleSet rules = plain.counting();
+    assertNull(plain.stats, "only the copy counts");
+    assertSame(plain.matcher, rules.matcher);
+
+    String[] lines = {
+	"MAT 1:1  Abraham begat Isaac, you honour and honour.",
+	"MAT 1:2  Isaac begat Jacob; and you [begat] not.",
+	"MAT 1:3  No rule changes this verse.",
+    };
+    ChangeLedger ledger = new ChangeLedger();
+    for (String line : lines) {
+      assertEquals(GentlerKBJMain.upgradeLine("40", line, plain, new ChangeLedger()),
+	  GentlerKBJMain.upgradeLine("40", line, rules, ledger), "counting changes nothing");
+    }
+    assertEquals(2, rules.stats.getTried(0), "begat is found in two verses");
+    assertEquals(2, rules.stats.getChangedVerses(0));
+    assertEquals(1, rules.stats.getChangedVerses(1), "honour changed in one verse");
+    assertEquals(2, rules.stats.getReplacements(1), "twice");
+    assertEquals(2, rules.stats.getTried(2), "you is found in two verses");
+    assertEquals(1, rules.stats.getChangedVerses(2), "but is only in MAT 1:1");
+
+    StringWriter sw = new StringWriter();
+    rules.stats.write(new PrintWriter(sw));
+    String[] csv = sw.toString().split("\\R");
+    assertEquals(4, csv.length, "header and one line per rule");
+    assertTrue(csv[0].startsWith("rule,oldWord,newWord,verb,tried"));
+    assertTrue(csv[3].startsWith("3,you,you all,Only in MAT 1:1,2,1,1,1,"), csv[3]);
+  }
+}
@@ -0,0 +1,75 @@
+package asst.gentlerKJB.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import asst.bible.VerseRef;
+
+class VerseScopeTest {
+
+  @BeforeAll
+  static void setUpBeforeClass() throws Exception {
+    VerseRef.registerBook("40MAT.TXT");
+    VerseRef.registerBook("42LUK.TXT");
+  }
+
+  private static int ref(String text) {
+    return VerseRef.parse(text);
+  }
+
+  @Test
+  void testVerses() {
+    VerseScope scope = new VerseScope(" MAT 1:1, LUK 2:5; 2:7");
+    assertTrue(scope.contains(ref("MAT 1:1")));
+    assertFalse(scope.contains(ref("MAT 1:18")), "MAT 1:1 is not a prefix of MAT 1:18");
+    assertTrue(scope.contains(ref("LUK 2:5")));
+    assertTrue(scope.contains(ref("LUK 2:7")), "book carried from the item before");
+    assertFalse(scope.contains(ref("MAT 2:7")));
+    assertFalse(scope.contains(VerseRef.NONE));
+  }
+
+  @Test
+  void testRanges() {
+    VerseScope scope = new VerseScope("MAT 26, MAT 5-7, MAT 1:18-25, MAT 9:30-11:2, LUK");
+    assertTrue(scope.contains(ref("MAT 26:73")), "whole chapter");
+    assertFalse(scope.contains(ref("MAT 27:1")));
+    assertTrue(scope.contains(ref("MAT 6:1")), "chapter range");
+    assertFalse(scope.contains(ref("MAT 8:1")));
+    assertTrue(scope.contains(ref("MAT 1:25")), "verse range");
+    assertFalse(scope.contains(ref("MAT 1:17")));
+    assertTrue(scope.contains(ref("MAT 9:38")), "rest of the first chapter");
+    assertTrue(scope.contains(ref("MAT 10:42")), "chapter between");
+    assertTrue(scope.contains(ref("MAT 11:2")), "start of the last chapter");
+    assertFalse(scope.contains(ref("MAT 11:3")));
+    assertFalse(scope.contains(ref("MAT 9:29")));
+    assertTrue(scope.contains(ref("LUK 24:53")), "whole book");
+  }
+
+  @Test
+  void testRules() {
+    PassingItems pi = new PassingItems("MAT 1:18  text", "w", "w");
+    pi.bkno = "40";
+    assertTrue(new Rule("a", "b", "Only in MAT 1:18").appliesTo(pi));
+    assertFalse(new Rule("a", "b", "Only in MAT 1:1").appliesTo(pi));
+    assertFalse(new Rule("a", "b", "Not in MAT 1").appliesTo(pi));
+    assertTrue(new Rule("a", "b", "Not in LUK").appliesTo(pi));
+    assertTrue(new Rule("a", "b", null).appliesTo(pi));
+    assertTrue(new Rule("a", "b", "Only in MAT 1:18 MAT 1:20").appliesTo(pi), "matched as text");
+  }
+
+  @Test
+  void testUnreadItems() {
+    VerseScope scope = new VerseScope("1:1, MAT 1:x, MAT 1:18 MAT 1:20, LUK 2:5., Matthew 5");
+    assertEquals(Arrays.asList("1:1", "MAT 1:x", "MAT 1:18 MAT 1:20"), scope.unread);
+    assertTrue(scope.contains(ref("MAT 1:18")), "found in the text of the item");
+    assertTrue(scope.contains(ref("MAT 1:20")));
+    assertFalse(scope.contains(ref("MAT 1:19")));
+    assertTrue(scope.contains(ref("LUK 2:5")), "full stop at the end");
+    assertFalse(scope.contains(ref("MAT 5:1")), "unknown book");
+    assertTrue(new VerseScope("MAT 1:18, LUK 2:5").unread.isEmpty());
+  }
+}
@@ -0,0 +1,42 @@
+package asst.gentlerKJB.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class WordIndexTest {
+  static final List<String> lines = Arrays.asList(
+      WordUpgradeUtilsTest.mat12,
+      WordUpgradeUtilsTest.jon1621,
+      WordUpgradeUtilsTest.honorable,
+      "no reference Mat");
+
+  @Test
+  void testFind() throws Exception {
+    WordIndex index = WordIndex.build(lines);
+    assertEquals(4, index.lineCount);
+    assertEquals(BitSet.valueOf(new long[] {1}), index.find("begat"), "case is folded");
+    assertEquals(BitSet.valueOf(new long[] {2}), index.find("in travail"), "every word");
+    assertTrue(index.find("travail begat").isEmpty(), "not every word");
+    assertTrue(index.find("hez").isEmpty(), "reference is not text");
+    assertEquals(BitSet.valueOf(new long[] {8}), index.find("mat"), "no reference");
+    assertEquals(4, index.find("'").cardinality(), "no words is every line");
+    assertEquals(Arrays.asList("lord", "s", "house"), WordIndex.words("LORD'S house"));
+
+    StringWriter sw = new StringWriter();
+    PrintWriter pw = new PrintWriter(sw);
+    index.write(pw);
+    pw.close();
+    WordIndex read = WordIndex.read(Arrays.asList(sw.toString().split("\\R")));
+    assertEquals(index.find("hath sorrow"), read.find("hath sorrow"));
+    assertEquals(4, read.lineCount);
+    assertThrows(IOException.class, () -> WordIndex.read(Arrays.asList("junk")));
+  }
+}
@@ -0,0 +1,96 @@
+package asst.gentlerKJB.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+
+import org.junit.jupiter.api.Test;
+
+class WordMatcherTest {
+  public static final String[] words = {
+      "mite", null, "with child", "great with child", "begat", "mite", "'s", ""
+  };
+
+  @Test
+  void testWordBoundaries() {
+    WordMatcher matcher = new WordMatcher(words);
+    BitSet found = matcher.findWords(WordUpgradeUtilsTest.smiteCheek.toLowerCase());
+    assertFalse(found.get(0), "mite is not a word in smite");
+    found = matcher.findWords(WordUpgradeUtilsTest.smiteMaybe.toLowerCase());
+    assertTrue(found.get(0), "mite is found after smite");
+    assertTrue(found.get(5), "duplicate words are both reported");
+    assertFalse(found.get(1), "null words are never reported");
+  }
+
+  @Test
+  void testOverlappingWords() {
+    WordMatcher matcher = new WordMatcher(words);
+    BitSet found = matcher.findWords("and she was great with child.");
+    assertTrue(found.get(2), "with child");
+    assertTrue(found.get(3), "great with child");
+    assertFalse(found.get(4), "begat");
+    found = matcher.findWords(WordUpgradeUtilsTest.mat12.toLowerCase());
+    assertTrue(found.get(4), "begat");
+    assertFalse(found.get(2), "with child");
+  }
+
+  @Test
+  void testOddWords() {
+    WordMatcher matcher = new WordMatcher(words);
+    /* \\b before ' needs a word character ahead of it, as with the regex */
+    assertTrue(matcher.findWords("god's word").get(6), "'s after a word");
+    assertFalse(matcher.findWords("the 's word").get(6), "'s after a space");
+    assertTrue(matcher.findWords("no words here").get(7), "empty words are always checked");
+  }
+
+  @Test
+  void testCaseFolding() {
+    WordMatcher matcher = new WordMatcher(new String[] {"begat", "naïve", "with child"});
+    BitSet found = matcher.findWords(WordUpgradeUtilsTest.mat12);
+    assertTrue(found.get(0), "Begat in the original text");
+    found = matcher.findWords("NAÏVE and WITH Child");
+    assertTrue(found.get(1), "non-ASCII letters are folded");
+    assertTrue(found.get(2), "phrase in mixed case");
+  }
+
+  @Test
+  void testAsciiBytes() {
+    WordMatcher matcher = new WordMatcher(words);
+    String[] lines = {WordUpgradeUtilsTest.smiteCheek, WordUpgradeUtilsTest.smiteMaybe,
+	"and she was Great With Child.", "god's word", "the 's word", ""};
+    for (String line : lines) {
+      AsciiLine ascii = new AsciiLine(ByteBuffer.wrap(line.getBytes(StandardCharsets.US_ASCII)),
+	  0, line.length());
+      assertEquals(matcher.findWords(line), matcher.findWords(ascii), line);
+    }
+  }
+
+  @Test
+  void testSuffixes() {
+    BitSet suffixes = new BitSet();
+    suffixes.set(0);
+    WordMatcher matcher = new WordMatcher(new String[] {"eth", "eth", "begat"}, suffixes);
+    BitSet found = matcher.findWords("he Knoweth all");
+    assertTrue(found.get(0), "ending of a longer word");
+    assertFalse(found.get(1), "not a whole word");
+    found = matcher.findWords("eth alone");
+    assertFalse(found.get(0), "not an ending");
+    assertTrue(found.get(1), "whole word");
+    assertFalse(matcher.findWords("ethan").get(0), "not at the end");
+    AsciiLine ascii = new AsciiLine(ByteBuffer.wrap("he knoweth".getBytes(StandardCharsets.US_ASCII)), 0, 10);
+    assertTrue(matcher.findWords(ascii).get(0), "bytes too");
+  }
+
+  @Test
+  void testFragments() {
+    WordMatcher matcher = WordMatcher.fragments(new String[] {"sa", "with child", "eth"});
+    BitSet found = matcher.findWords("Thus SAITH the LORD, with children");
+    assertTrue(found.get(0), "inside a word");
+    assertTrue(found.get(1), "at the start of a longer word");
+    assertFalse(found.get(2));
+    AsciiLine ascii = new AsciiLine(ByteBuffer.wrap("Bethel".getBytes(StandardCharsets.US_ASCII)), 0, 6);
+    assertTrue(matcher.findWords(ascii).get(2), "bytes too");
+  }
+}
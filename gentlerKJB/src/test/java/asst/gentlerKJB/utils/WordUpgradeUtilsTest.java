@@ -65,6 +65,25 @@ class WordUpgradeUtilsTest {
     assertEquals(17, indexMite, "mite should be found later");
   }
 
+  @Test
+  void testFindWordIndexBrackets() {
+    // Only the first stand alone occurrence counts, even if a later one is outside []
+    assertEquals(-1, WordUpgradeUtils.findWordIndex("a [thee] b thee", "thee"));
+    assertEquals(2, WordUpgradeUtils.findWordIndex("a thee [thee] b", "thee"));
+    // A ] with no [ after the word means the word is inside []
+    assertEquals(-1, WordUpgradeUtils.findWordIndex("a thee b] c", "thee"));
+    assertEquals(-1, WordUpgradeUtils.findWordIndex("thee", "thee b"));
+    // Phrases and words ending in punctuation
+    assertEquals(4, WordUpgradeUtils.findWordIndex("and with child.", "with child"));
+    assertEquals(-1, WordUpgradeUtils.findWordIndex("and with children", "with child"));
+    assertEquals(3, WordUpgradeUtils.findWordIndex("god's", "'s"));
+    assertEquals(-1, WordUpgradeUtils.findWordIndex("god 's", "'s"));
+    // Case is folded on the fly, the index is into the original text
+    assertEquals(8, WordUpgradeUtils.findWordIndex("Abraham Begat Isaac", "begat"));
+    assertEquals(4, WordUpgradeUtils.findWordIndex("The ÉCOLE", "école"));
+    assertEquals(-1, WordUpgradeUtils.findWordIndex("a [THEE] b thee", "thee"));
+  }
+
   @Test
   void testModernizeWord() {
     pi = new PassingItems(g11, "oldWord", "newWord");
@@ -91,9 +110,9 @@ class WordUpgradeUtilsTest {
     assertTrue(pi.isDirty);
     assertEquals(jon1621newest, pi.getEditedLine(), "anguish to is pain");
     String wordKey = pi.oldWord + " -> " + pi.newWord;
-    StringBuilder sb = WordUpgradeUtils.wordChanges.get(wordKey);
-    assertNotNull(sb);
-    assertEquals("43JOH 16:21_", sb.toString(), "John 16:21 changed");
+    String crefs = WordUpgradeUtils.ledger.getCrefs(wordKey);
+    assertNotNull(crefs);
+    assertEquals("43JOH 16:21_", crefs, "John 16:21 changed");
     pi = new PassingItems(smiteMaybe, "mite", "tiny amount");
     pi.bkno = "43";
     WordUpgradeUtils.modernizeWord(pi);
@@ -119,4 +138,68 @@ class WordUpgradeUtilsTest {
     assertTrue(pi.isDirty);
     assertEquals(honorablenew, pi.getEditedLine(), "upgrading honour");
   }
+
+  @Test
+  void testChangeSuffix() {
+    Rule rule = new Rule("-eth", "-s", "Suffix except sheweth, doeth");
+    assertTrue(rule.suffix);
+    assertEquals("eth", rule.oldWord);
+    assertEquals("s", rule.newWord);
+    assertTrue(rule.exceptions.contains("doeth"));
+    pi = new PassingItems("MAT 6:8  Knoweth he and walketh, [cometh] doeth; eth",
+	"w", "w");
+    pi.bkno = "40";
+    pi.ledger = new ChangeLedger();
+    WordUpgradeUtils.changeSuffix(pi, rule);
+    assertEquals(2, pi.edits);
+    assertEquals("MAT 6:8  Knows [Knoweth] he and walks [walketh], [cometh] doeth; eth",
+	pi.getEditedLine(), "every word but those in [] and the exceptions");
+    assertEquals("40MAT 6:8_", pi.ledger.getCrefs("knoweth -> knows"));
+    assertEquals("40MAT 6:8_", pi.ledger.getCrefs("walketh -> walks"));
+    assertThrows(IllegalArgumentException.class, () -> new Rule("-'s", "s", "Suffix"));
+  }
+
+  @Test
+  void testSuffixLeavesNames() {
+    /* None of these are exceptions of the rule */
+    Rule rule = new Rule("-eth", "-s", "Suffix");
+    String names = "LUK 1:26  he went to Nazareth with Seth, Japheth and Elizabeth,"
+	+ " the sons of Heth, and Beth-el; his teeth. Walketh he to Hazareth?";
+    pi = new PassingItems(names, "w", "w");
+    pi.bkno = "42";
+    pi.ledger = new ChangeLedger();
+    WordUpgradeUtils.changeSuffix(pi, rule);
+    assertEquals(names.replace("Walketh", "Walks [Walketh]"), pi.getEditedLine(),
+	"only the word which starts a sentence");
+    assertTrue(WordUpgradeUtils.startsSentence("  Nazareth", 2), "the verse starts with it");
+    assertFalse(WordUpgradeUtils.startsSentence("to Nazareth", 3));
+  }
+
+  @Test
+  void testChangePattern() {
+    Rule rule = new Rule("(?<!great )with child", "pregnant", Rule.REGEX);
+    assertTrue(rule.regex);
+    assertEquals("(?<!great )with child", rule.oldWord, "the pattern keeps its case");
+    pi = new PassingItems("MAT 1:18  she was great with child, With child of the Holy Ghost",
+	"w", "w");
+    pi.bkno = "40";
+    pi.ledger = new ChangeLedger();
+    WordUpgradeUtils.changePattern(pi, rule);
+    assertEquals(1, pi.edits);
+    assertEquals("MAT 1:18  she was great with child, Pregnant [With child] of the Holy Ghost",
+	pi.getEditedLine());
+    assertEquals("40MAT 1:18_", pi.ledger.getCrefs("with child -> pregnant"));
+    WordUpgradeUtils.changePattern(pi, rule);
+    assertEquals(1, pi.edits, "the first match is now in []");
+
+    rule = new Rule("sa(i|y)th", "sa$1d", Rule.REGEX);
+    pi = new PassingItems("MAT 6:8  Jesus saith, the sayth of the essaith", "w", "w");
+    WordUpgradeUtils.changePattern(pi, rule);
+    assertEquals("MAT 6:8  Jesus said [saith], the sayth of the essaith", pi.getEditedLine(),
+	"groups in the new word, first match only");
+    pi = new PassingItems("MAT 6:8  the essaith", "w", "w");
+    WordUpgradeUtils.changePattern(pi, rule);
+    assertEquals(0, pi.edits, "part of a longer word");
+    assertThrows(IllegalArgumentException.class, () -> new Rule("(unclosed", "x", Rule.REGEX));
+  }
 }